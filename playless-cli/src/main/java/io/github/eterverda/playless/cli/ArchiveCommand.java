@@ -0,0 +1,69 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+
+public class ArchiveCommand implements Command {
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("archive").help("moves published dists to archive, blobs are kept");
+
+        subparser.addArgument("-n", "--dry-run")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("prints what would be archived without changing repository");
+
+        Main.addRepoArgument(subparser);
+        DistQuery.addArgument(subparser, "+");
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+        final Collection<DistQuery> queries = DistQuery.parseAll(args.<String>getList("package"));
+        if (queries == null) {
+            return;
+        }
+
+        try {
+            final RepositoryIndex index = RepositoryIndex.open(repository);
+            final List<Dist> archived = new ArrayList<>(DistQuery.select(index, queries));
+            for (Dist dist : archived) {
+                System.out.println("- " + PublishCommand.describe(dist));
+            }
+            if (args.getBoolean("dry_run") || archived.isEmpty()) {
+                return;
+            }
+
+            // archived first, so that interrupted archive leaves dist in both instead of none
+            final RepositoryIndex archive = RepositoryIndex.openArchive(repository);
+            archive.commit(archived, Collections.<Dist>emptyList());
+            index.commit(Collections.<Dist>emptyList(), archived);
+            System.err.printf("index: %d archived, %d total\n", archived.size(), index.size());
+
+            PublishCommand.compactIfDue(index);
+            PublishCommand.compactIfDue(archive);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
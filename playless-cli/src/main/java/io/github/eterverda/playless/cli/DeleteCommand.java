@@ -0,0 +1,73 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+
+public class DeleteCommand implements Command {
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("delete").help("deletes dists from index and archive, blobs are kept");
+
+        subparser.addArgument("-n", "--dry-run")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("prints what would be deleted without changing repository");
+        subparser.addArgument("--no-archive")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("deletes published dists only leaving archive as is");
+
+        Main.addRepoArgument(subparser);
+        DistQuery.addArgument(subparser, "+");
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+        final Collection<DistQuery> queries = DistQuery.parseAll(args.<String>getList("package"));
+        if (queries == null) {
+            return;
+        }
+        final boolean dryRun = args.getBoolean("dry_run");
+
+        try {
+            delete(RepositoryIndex.open(repository), queries, dryRun, "");
+
+            if (!args.getBoolean("no_archive")) {
+                delete(RepositoryIndex.openArchive(repository), queries, dryRun, " (archived)");
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void delete(RepositoryIndex index, Collection<DistQuery> queries, boolean dryRun, String suffix) throws IOException {
+        final List<Dist> deleted = new ArrayList<>(DistQuery.select(index, queries));
+        for (Dist dist : deleted) {
+            System.out.println("- " + PublishCommand.describe(dist) + suffix);
+        }
+        if (dryRun || deleted.isEmpty()) {
+            return;
+        }
+        index.commit(Collections.<Dist>emptyList(), deleted);
+        PublishCommand.compactIfDue(index);
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.File;
+import java.io.IOException;
+
+import io.github.eterverda.playless.common.RepoDelta;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+
+public class DiffCommand implements Command {
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("diff").help("dumps changes of index since given commit, or whole index if they are compacted already");
+
+        subparser.addArgument("--since")
+                .type(Long.class).required(true)
+                .help("sequence number of commit client has index at");
+        subparser.addArgument("--pretty")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("pretty print json");
+
+        Main.addRepoArgument(subparser);
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        final long since = args.getLong("since");
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+
+        try {
+            final RepositoryIndex index = RepositoryIndex.open(repository);
+            if (since > index.getSeq()) {
+                System.err.println("No commit " + since + " yet, the last one is " + index.getSeq());
+                return;
+            }
+
+            final JsonRepoDumper dumper = new JsonRepoDumper(System.out);
+            dumper.setPrettyPrint(args.getBoolean("pretty"));
+
+            final RepoDelta diff = index.diff(since);
+            if (diff != null) {
+                dumper.writeDeltaDecorated(diff);
+            } else {
+                dumper.writeDecorated(index.getRepo());
+            }
+            System.out.println();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.inf.Argument;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.DistLookup;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Package argument of commands: {@code <application id>}, {@code <application id>:<version code>}
+ * or {@code <algorithm>:<fingerprint>}, each is looked up by its own secondary index.
+ */
+final class DistQuery {
+    @Nullable
+    private final String applicationId;
+    private final int versionCode;
+    @Nullable
+    private final Checksum fingerprint;
+
+    private DistQuery(@Nullable String applicationId, int versionCode, @Nullable Checksum fingerprint) {
+        this.applicationId = applicationId;
+        this.versionCode = versionCode;
+        this.fingerprint = fingerprint;
+    }
+
+    static Argument addArgument(Subparser parser, String nargs) {
+        return parser.addArgument("package").nargs(nargs)
+                .help("application id, <application id>:<version code> or <algorithm>:<fingerprint>");
+    }
+
+    @NotNull
+    static DistQuery parse(@NotNull String string) {
+        final int colon = string.indexOf(':');
+        if (colon < 0) {
+            return new DistQuery(string, -1, null);
+        }
+        final String prefix = string.substring(0, colon);
+        final String suffix = string.substring(colon + 1);
+        if (suffix.matches("[0-9]{1,9}")) {
+            return new DistQuery(prefix, Integer.parseInt(suffix), null);
+        }
+        try {
+            return new DistQuery(null, -1, new Checksum(prefix, suffix));
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown checksum algorithm " + prefix + " in " + string, e);
+        }
+    }
+
+    @NotNull
+    Set<Dist> select(@NotNull DistLookup lookup) throws IOException {
+        if (fingerprint != null) {
+            return lookup.byFingerprint(fingerprint);
+        }
+        assert applicationId != null;
+        if (versionCode >= 0) {
+            return lookup.byVersion(applicationId, versionCode);
+        }
+        return lookup.byApplicationId(applicationId);
+    }
+
+    /**
+     * @return dists selected by any query or every dist if there are no queries
+     */
+    @NotNull
+    static Set<Dist> select(@NotNull DistLookup lookup, @NotNull Collection<DistQuery> queries) throws IOException {
+        if (queries.isEmpty()) {
+            return lookup.all();
+        }
+        final Set<Dist> result = new LinkedHashSet<>();
+        for (DistQuery query : queries) {
+            result.addAll(query.select(lookup));
+        }
+        return result;
+    }
+
+    /**
+     * @return parsed queries or {@code null} if any is malformed, which is reported
+     */
+    @Nullable
+    static Collection<DistQuery> parseAll(@Nullable Collection<String> strings) {
+        final Set<DistQuery> result = new LinkedHashSet<>();
+        if (strings == null) {
+            return result;
+        }
+        for (String string : strings) {
+            try {
+                result.add(parse(string));
+
+            } catch (IllegalArgumentException e) {
+                System.err.println("Malformed package " + string + ": " + e.getMessage());
+                return null;
+            }
+        }
+        return result;
+    }
+}
@@ -6,26 +6,44 @@ import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.List;
 
 import io.github.eterverda.playless.common.Dist;
 import io.github.eterverda.playless.common.Link;
 import io.github.eterverda.playless.common.Repo;
-import io.github.eterverda.playless.common.util.DistFactories;
+import io.github.eterverda.playless.core.BlobStore;
+import io.github.eterverda.playless.core.CachingDistLoader;
+import io.github.eterverda.playless.core.DistLoader;
+import io.github.eterverda.playless.core.IconExtractor;
 import io.github.eterverda.playless.core.InitialDistFactory;
-import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.playless.core.ParallelDistLoader;
+import io.github.eterverda.playless.core.PlaylessRepositoryException;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.aapt.Aapt;
+import io.github.eterverda.playless.core.aapt.Aapt2DaemonPool;
+import io.github.eterverda.playless.core.aapt.ExecAapt;
+import io.github.eterverda.playless.core.json.SortingRepoDumper;
+import io.github.eterverda.playless.core.util.apk.ApkScanner;
 import io.github.eterverda.util.checksum.Checksum;
 
 public class DumpCommand implements Command {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private static final boolean POST_PROCESS = Boolean.valueOf("true");
 
     private static final String ICON_FILENAME = "icon.png";
 
+    private static final String CACHE_DIR = "dump-cache";
+
     public static Subparser addSubParser(ArgumentParser parser) {
         final Subparser subparser = parser.addSubparsers().addParser("dump").help("dumps apk info to stdout");
 
@@ -35,79 +53,193 @@ public class DumpCommand implements Command {
         subparser.addArgument("--pretty")
                 .action(Arguments.storeTrue()).setDefault(false)
                 .help("pretty print json");
-        subparser.addArgumentGroup("required arguments").addArgument("--aapt").required(true)
+        subparser.addArgument("--shards")
                 .type(Arguments.fileType())
-                .help("full path to aapt executable");
+                .help("writes manifest and a shard per application to directory instead of stdout");
+        addLoaderArguments(subparser);
+
+        subparser.addArgument("--no-cache")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("neither uses nor updates cache of apk info in repository");
+
+        subparser.addArgument("--extract-icons")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("writes icons to repository where their links point, each distinct icon once");
 
+        Main.addRepoArgument(subparser).help("path to repository keeping cache and icons (defaults to working dir, no cache outside of repository)");
         Main.addApksArgument(subparser).help("apk file to dump");
 
         return subparser;
     }
 
+    static void addLoaderArguments(Subparser subparser) {
+        subparser.addArgument("-j", "--jobs")
+                .type(Integer.class).choices(Arguments.range(1, Integer.MAX_VALUE)).setDefault(Runtime.getRuntime().availableProcessors())
+                .help("number of apks processed concurrently (defaults to number of processors)");
+        subparser.addArgument("--aapt")
+                .type(Arguments.fileType())
+                .help("full path to aapt executable (if omitted manifest is read in process, labels and icons are not resolved)");
+        subparser.addArgument("--aapt-daemon")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("keeps up to --jobs aapt2 daemons running instead of spawning aapt per apk (--aapt should be aapt2)");
+    }
+
+    /**
+     * @return {@code false} if loader arguments do not go together, which is reported to stderr
+     */
+    static boolean checkLoaderArguments(Namespace args) {
+        if (args.getBoolean("aapt_daemon") && args.get("aapt") == null) {
+            System.err.println("--aapt-daemon needs --aapt pointing to aapt2");
+            return false;
+        }
+        return true;
+    }
+
+    @Nullable
+    static Aapt newAapt(Namespace args) {
+        final File aaptFile = args.get("aapt");
+        final boolean aaptDaemon = args.getBoolean("aapt_daemon");
+        final int jobs = args.getInt("jobs");
+        return aaptFile == null ? null : aaptDaemon ? new Aapt2DaemonPool(aaptFile, jobs) : new ExecAapt(aaptFile);
+    }
+
     @Override
     public void main(Namespace args) {
-        final File aapt = args.get("aapt");
+        if (!checkLoaderArguments(args)) {
+            return;
+        }
         final boolean pretty = args.getBoolean("pretty");
         final boolean playful = args.getBoolean("playful");
+        final int jobs = args.getInt("jobs");
+        final boolean noCache = args.getBoolean("no_cache");
+        final File repoDir = args.get("repo");
+        final boolean extractIcons = args.getBoolean("extract_icons");
+        final File shardsDir = args.get("shards");
+
+        final Repository repository = findRepository(repoDir);
+        if (extractIcons && (repository == null || !POST_PROCESS)) {
+            System.err.println("No repository found in " + repoDir + " to extract icons to");
+            return;
+        }
+        final BlobStore blobs = extractIcons ? new BlobStore(repository.getRootDir()) : null;
+        final IconExtractor icons = blobs != null ? new IconExtractor(blobs) : null;
 
-        try {
+        try (Aapt aapt = newAapt(args)) {
 
             final InitialDistFactory factory = new InitialDistFactory(aapt);
 
-            final JsonRepoDumper dumper = new JsonRepoDumper(System.out);
-            dumper.setPrettyPrint(pretty);
-
-            final Repo.Editor repo = new Repo.Editor();
+            final DistLoader postProcessLoader = postProcessLoader(factory, icons);
+
+            final String variant = (aapt != null ? "aapt" : "manifest") + (icons != null ? "+icons" : "");
+            final CachingDistLoader cachingLoader = noCache || repository == null ? null :
+                    new CachingDistLoader(postProcessLoader, new File(repository.getInternalsDir(), CACHE_DIR), variant, blobs);
+            final DistLoader cachedLoader = cachingLoader != null ? cachingLoader : postProcessLoader;
+
+            final DistLoader loader = new DistLoader() {
+                @NotNull
+                @Override
+                public Dist load(@NotNull File apk) throws IOException {
+                    final Dist postProcess = cachedLoader.load(apk);
+                    return playful ? playProcess(postProcess) : postProcess;
+                }
+            };
+
+            final ParallelDistLoader parallelLoader = new ParallelDistLoader(loader, jobs);
+            final List<File> apks = args.getList("apk");
+
+            if (shardsDir != null) {
+                final Repo.Editor repo = new Repo.Editor();
+                for (Dist dist : parallelLoader.loadAll(apks)) {
+                    repo.dist(dist);
+                }
+                ShardCommand.writeShards(repo.build(), shardsDir, pretty);
+
+            } else {
+                final File tempDir = repository != null ? repository.getInternalsDir() : new File(System.getProperty("java.io.tmpdir"));
+                try (SortingRepoDumper dumper = new SortingRepoDumper(tempDir)) {
+                    dumper.setPrettyPrint(pretty);
+
+                    // loaded in batches, so that dists of no more than a batch and a run are in memory
+                    for (int from = 0; from < apks.size(); from += SortingRepoDumper.DEFAULT_RUN_SIZE) {
+                        final int to = Math.min(apks.size(), from + SortingRepoDumper.DEFAULT_RUN_SIZE);
+                        for (Dist dist : parallelLoader.loadAll(apks.subList(from, to))) {
+                            dumper.dist(dist);
+                        }
+                    }
+
+                    final Writer out = new OutputStreamWriter(System.out, UTF_8);
+                    dumper.writeDecorated(out);
+                    out.flush();
+                }
+                System.out.println();
+            }
 
-            for (File apk : args.<File>getList("apk")) {
-                final Dist preProcess = factory.load(apk);
-                final Dist postProcess = POST_PROCESS ? postProcess(preProcess) : preProcess;
-                final Dist playProcess = playful ? playProcess(postProcess) : postProcess;
+            if (cachingLoader != null) {
+                System.err.printf("cache: %d hits, %d misses\n", cachingLoader.getHits(), cachingLoader.getMisses());
+            }
+            if (icons != null) {
+                System.err.printf("icons: %d links, %d unique, %d written\n", icons.getIcons(), icons.getUnique(), icons.getWritten());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-                repo.dist(playProcess);
+    /**
+     * @param icons if not {@code null} icons are stored along with making links to them
+     */
+    @NotNull
+    static DistLoader postProcessLoader(final InitialDistFactory factory, @Nullable final IconExtractor icons) {
+        return new DistLoader() {
+            @NotNull
+            @Override
+            public Dist load(@NotNull File apk) throws IOException {
+                final ApkScanner scanner = new ApkScanner(apk);
+                scanner.setKeepEntryContents(icons != null);
+                final Dist preProcess = factory.load(scanner);
+                return POST_PROCESS ? postProcess(preProcess, scanner, icons) : preProcess;
             }
+        };
+    }
 
-            dumper.writeDecorated(repo.build());
+    @Nullable
+    static Repository findRepository(File repoDir) {
+        try {
+            return new Repository(repoDir);
 
-            System.out.println();
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (PlaylessRepositoryException e) {
+            return null;
         }
     }
 
-    private Dist postProcess(Dist dist) throws IOException {
+    static Dist postProcess(Dist dist, ApkScanner scanner, @Nullable IconExtractor icons) throws IOException {
         final Dist.Editor editor = dist.edit();
 
         for (Link link : dist.links) {
             final String rel = link.rel();
             final String href = link.href();
-            if (rel.startsWith(Dist.LINK_REL_ICON) && href.startsWith("zip:file:")) {
+            if (rel.startsWith(Dist.LINK_REL_ICON) && href.startsWith(InitialDistFactory.ZIP_FILE_PREFIX)) {
                 editor.unlink(link);
 
-                final int indexOfExclamation = href.lastIndexOf('!');
-
-                final File file = new File(href.substring(9, indexOfExclamation));
-                final String entryName = href.substring(indexOfExclamation + 2);
-
-                final ZipFile zip = new ZipFile(file);
-                final ZipEntry entry = zip.getEntry(entryName);
+                final String entryName = href.substring(href.lastIndexOf('!') + 2);
 
-                final Checksum fingerprint = DistFactories.loadFingerprint(zip, entry);
+                final Checksum fingerprint = scanner.getEntryFingerprint(entryName);
+                if (fingerprint == null) {
+                    throw new FileNotFoundException("No entry " + entryName + " in " + scanner.getFile());
+                }
 
-                editor.link(rel, makeUrl(fingerprint, ICON_FILENAME));
+                if (icons != null) {
+                    final byte[] content = scanner.getEntryContent(entryName);
+                    if (content == null) {
+                        throw new FileNotFoundException("No entry " + entryName + " in " + scanner.getFile());
+                    }
+                    icons.extract(fingerprint, content, ICON_FILENAME);
+                }
+                editor.link(rel, BlobStore.path(fingerprint, ICON_FILENAME));
 
             } else if (rel.equals(Dist.LINK_REL_DOWNLOAD)) {
                 editor.unlink(link);
-
-                final String applicationId = dist.applicationId;
-                final String version = dist.meta.containsKey(Dist.META_VERSION_NAME) ?
-                        dist.meta.get(Dist.META_VERSION_NAME) :
-                        Integer.toString(dist.version.versionCode);
-
-                final Checksum fingerprint = dist.version.fingerprint;
-                final String filename = applicationId + "-" + version + ".apk";
-
-                editor.link(rel, makeUrl(fingerprint, filename));
+                editor.link(rel, BlobStore.path(dist.version.fingerprint, downloadFilename(dist)));
             }
         }
 
@@ -137,8 +269,11 @@ public class DumpCommand implements Command {
     }
 
     @NotNull
-    private static String makeUrl(Checksum fingerprint, String filename) {
-        final String encodedValue = InstallCommand.base32(fingerprint);
-        return ".playless/" + encodedValue.substring(0, 2) + "/" + encodedValue.substring(2) + "/" + filename;
+    static String downloadFilename(Dist dist) {
+        final String version = dist.meta.containsKey(Dist.META_VERSION_NAME) ?
+                dist.meta.get(Dist.META_VERSION_NAME) :
+                Integer.toString(dist.version.versionCode);
+
+        return dist.applicationId + "-" + version + ".apk";
     }
 }
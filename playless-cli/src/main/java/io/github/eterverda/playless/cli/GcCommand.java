@@ -0,0 +1,73 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.core.BlobCollector;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+
+public class GcCommand implements Command {
+    private static final long DEFAULT_GRACE_PERIOD = TimeUnit.HOURS.toSeconds(1);
+
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("gc").help("removes blobs no dist refers to");
+
+        subparser.addArgument("-n", "--dry-run")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("prints unreferenced blobs without removing them");
+        subparser.addArgument("--grace-period")
+                .type(Long.class).setDefault(DEFAULT_GRACE_PERIOD)
+                .help("keeps blobs stored less than that many seconds ago, they may belong to commit in progress (defaults to an hour)");
+        subparser.addArgument("--no-archive")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("removes blobs of archived dists as well");
+        subparser.addArgument("-j", "--jobs")
+                .type(Integer.class).choices(Arguments.range(1, Integer.MAX_VALUE)).setDefault(Runtime.getRuntime().availableProcessors())
+                .help("number of directories swept concurrently (defaults to number of processors)");
+
+        Main.addRepoArgument(subparser);
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        final boolean dryRun = args.getBoolean("dry_run");
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+
+        final BlobCollector collector = new BlobCollector(repository.getRootDir());
+        try {
+            collector.mark(RepositoryIndex.read(repository, RepositoryIndex.NAME).all());
+            if (!args.getBoolean("no_archive")) {
+                collector.mark(RepositoryIndex.read(repository, RepositoryIndex.ARCHIVE_NAME).all());
+            }
+
+            collector.sweep(args.getInt("jobs"), TimeUnit.SECONDS.toMillis(args.getLong("grace_period")), !dryRun, new BlobCollector.Listener() {
+                @Override
+                public void unreferenced(@NotNull String path, long size) {
+                    System.out.println("- " + path);
+                }
+            });
+            System.err.printf("gc: %d blobs, %d unreferenced (%d bytes) %s, %d kept within grace period\n",
+                    collector.getBlobs(), collector.getUnreferenced(), collector.getUnreferencedBytes(),
+                    dryRun ? "found" : "removed", collector.getYoung());
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,47 +1,92 @@
 package io.github.eterverda.playless.cli;
 
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 
-import org.apache.commons.codec.binary.Base32;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import io.github.eterverda.playless.common.util.DistFactories;
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.BlobStore;
+import io.github.eterverda.playless.core.DistLoader;
+import io.github.eterverda.playless.core.IconExtractor;
+import io.github.eterverda.playless.core.InitialDistFactory;
+import io.github.eterverda.playless.core.ParallelDistLoader;
 import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.aapt.Aapt;
+import io.github.eterverda.playless.core.util.apk.ApkScanner;
 import io.github.eterverda.util.checksum.Checksum;
 
 public class InstallCommand implements Command {
     public static Subparser addSubParser(ArgumentParser parser) {
         final Subparser subparser = parser.addSubparsers().addParser("install").help("installs artifact to playless repository");
+        subparser.addArgument("--copy")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("always copies files instead of hard linking them when repository is on the same file system");
+        DumpCommand.addLoaderArguments(subparser);
+        Main.addRepoArgument(subparser);
         Main.addApksArgument(subparser);
         return subparser;
     }
 
     @Override
     public void main(Namespace args) {
-        for (File file : args.<File>getList("apk")) {
-            try {
-                install(file);
-            } catch (IOException e) {
+        if (!DumpCommand.checkLoaderArguments(args)) {
+            return;
+        }
+        final int jobs = args.getInt("jobs");
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+
+        final BlobStore blobs = new BlobStore(repository.getRootDir());
+        blobs.setLinking(!args.getBoolean("copy"));
+
+        final IconExtractor icons = new IconExtractor(blobs);
+
+        try (Aapt aapt = DumpCommand.newAapt(args)) {
+            final InitialDistFactory factory = new InitialDistFactory(aapt);
+
+            final DistLoader loader = new DistLoader() {
+                @NotNull
+                @Override
+                public Dist load(@NotNull File apk) throws IOException {
+                    return install(blobs, factory, icons, apk);
+                }
+            };
+
+            final Map<File, IOException> failures = new LinkedHashMap<>();
+            new ParallelDistLoader(loader, jobs).loadAll(args.<File>getList("apk"), failures);
+            for (IOException e : failures.values()) {
                 e.printStackTrace();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
-    public void install(File file) throws IOException {
-        final Checksum fingerprint = DistFactories.loadFingerprint(file);
-        final String base32 = base32(fingerprint);
-        System.out.printf("+ blob %s (file:%s)\n", base32, file.getAbsolutePath());
-    }
+    /**
+     * Stores apk itself and its icons where links of dist dumped with the same aapt point.
+     */
+    static Dist install(BlobStore blobs, InitialDistFactory factory, IconExtractor icons, File file) throws IOException {
+        final ApkScanner scanner = new ApkScanner(file);
+        scanner.setKeepEntryContents(true);
+        final Dist dist = DumpCommand.postProcess(factory.load(scanner), scanner, icons);
+
+        final Checksum fingerprint = dist.version.fingerprint;
+        assert fingerprint != null;
+        final boolean stored = blobs.store(file, fingerprint, DumpCommand.downloadFilename(dist));
+        System.out.printf("%s blob %s (file:%s)\n", stored ? "+" : "=", BlobStore.base32(fingerprint), file.getAbsolutePath());
 
-    @NotNull
-    static String base32(Checksum fingerprint) {
-        final Base32 base32 = new Base32();
-        final byte[] value = fingerprint.getValue();
-        return base32.encodeToString(value).toLowerCase();
+        return dist;
     }
 }
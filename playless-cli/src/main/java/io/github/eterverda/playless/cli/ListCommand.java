@@ -0,0 +1,66 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.DistComparator;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+
+public class ListCommand implements Command {
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("list").help("lists published and archived dists");
+
+        subparser.addArgument("--no-archive")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("lists published dists only");
+
+        Main.addRepoArgument(subparser);
+        DistQuery.addArgument(subparser, "*");
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+        final Collection<DistQuery> queries = DistQuery.parseAll(args.<String>getList("package"));
+        if (queries == null) {
+            return;
+        }
+
+        try {
+            print(DistQuery.select(RepositoryIndex.read(repository, RepositoryIndex.NAME), queries), "");
+
+            if (!args.getBoolean("no_archive")) {
+                print(DistQuery.select(RepositoryIndex.read(repository, RepositoryIndex.ARCHIVE_NAME), queries), " (archived)");
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void print(Collection<Dist> dists, String suffix) {
+        final List<Dist> sorted = new ArrayList<>(dists);
+        Collections.sort(sorted, DistComparator.INSTANCE);
+        for (Dist dist : sorted) {
+            System.out.println(PublishCommand.describe(dist) + suffix);
+        }
+    }
+}
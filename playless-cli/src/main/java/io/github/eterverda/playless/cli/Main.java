@@ -25,8 +25,26 @@ public final class Main {
 
         InstallCommand.addSubParser(parser).setDefault(COMMAND, InstallCommand.class);
 
+        PublishCommand.addSubParser(parser).setDefault(COMMAND, PublishCommand.class);
+
+        ListCommand.addSubParser(parser).setDefault(COMMAND, ListCommand.class);
+
+        ArchiveCommand.addSubParser(parser).setDefault(COMMAND, ArchiveCommand.class);
+
+        DeleteCommand.addSubParser(parser).setDefault(COMMAND, DeleteCommand.class);
+
+        DiffCommand.addSubParser(parser).setDefault(COMMAND, DiffCommand.class);
+
+        ShardCommand.addSubParser(parser).setDefault(COMMAND, ShardCommand.class);
+
+        GcCommand.addSubParser(parser).setDefault(COMMAND, GcCommand.class);
+
+        ServeCommand.addSubParser(parser).setDefault(COMMAND, ServeCommand.class);
+
         InitCommand.addSubParser(parser).setDefault(COMMAND, InitCommand.class);
 
+        WatchCommand.addSubParser(parser).setDefault(COMMAND, WatchCommand.class);
+
         try {
             main(parser.parseArgs(args));
 
@@ -0,0 +1,201 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.BlobStore;
+import io.github.eterverda.playless.core.DistLoader;
+import io.github.eterverda.playless.core.IconExtractor;
+import io.github.eterverda.playless.core.InitialDistFactory;
+import io.github.eterverda.playless.core.ParallelDistLoader;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+import io.github.eterverda.playless.core.aapt.Aapt;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class PublishCommand implements Command {
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("publish").help("stores apks in repository and adds them to index in one commit");
+
+        DumpCommand.addLoaderArguments(subparser);
+
+        subparser.addArgument("-n", "--dry-run")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("prints what would be published without changing repository");
+        subparser.addArgument("-f", "--force")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("replaces published dists with the same application id and version code");
+        subparser.addArgument("--copy")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("always copies files instead of hard linking them when repository is on the same file system");
+
+        Main.addRepoArgument(subparser);
+        Main.addApksArgument(subparser).help("apk file to publish");
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        if (!DumpCommand.checkLoaderArguments(args)) {
+            return;
+        }
+        final int jobs = args.getInt("jobs");
+        final boolean dryRun = args.getBoolean("dry_run");
+        final boolean force = args.getBoolean("force");
+        final File repoDir = args.get("repo");
+
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+
+        final BlobStore blobs = new BlobStore(repository.getRootDir());
+        blobs.setLinking(!args.getBoolean("copy"));
+
+        try (Aapt aapt = DumpCommand.newAapt(args)) {
+            // cuts off interrupted commit before anything else
+            final RepositoryIndex index = RepositoryIndex.open(repository);
+
+            final DistLoader postProcessLoader = DumpCommand.postProcessLoader(new InitialDistFactory(aapt), dryRun ? null : new IconExtractor(blobs));
+            final DistLoader loader = dryRun ? postProcessLoader : new DistLoader() {
+                @NotNull
+                @Override
+                public Dist load(@NotNull File apk) throws IOException {
+                    final Dist dist = postProcessLoader.load(apk);
+                    final Checksum fingerprint = dist.version.fingerprint;
+                    assert fingerprint != null;
+                    blobs.store(apk, fingerprint, DumpCommand.downloadFilename(dist));
+                    return dist;
+                }
+            };
+
+            // blobs are stored outside of commit, blob of aborted commit is just unreferenced
+            final List<Dist> dists = new ParallelDistLoader(loader, jobs).loadAll(args.<File>getList("apk"));
+
+            // prepared again if index is changed by concurrent publisher before it is committed
+            final Publication publication = new Publication(index, dists, force);
+            final boolean committed;
+            if (dryRun) {
+                committed = false;
+                publication.prepare(new ArrayList<Dist>(), new ArrayList<Dist>());
+
+            } else {
+                committed = index.commit(publication);
+            }
+            for (String line : publication.lines) {
+                System.out.println(line);
+            }
+            if (publication.rejected != null) {
+                System.err.println("Already published " + describe(publication.rejected) + ", use --force to replace it");
+                return;
+            }
+            if (!committed) {
+                return;
+            }
+            System.err.printf("index: %d added, %d removed, %d total\n", publication.added, publication.removed, index.size());
+
+            compactIfDue(index);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static void compactIfDue(RepositoryIndex index) throws IOException {
+        if (index.isCompactionDue()) {
+            index.compact();
+            System.err.println("index: compacted");
+        }
+    }
+
+    /**
+     * Adds dists not published yet, those replacing published ones only if forced.
+     */
+    static final class Publication implements RepositoryIndex.Transaction {
+        private final RepositoryIndex index;
+        private final List<Dist> dists;
+        private final boolean force;
+
+        final List<String> lines = new ArrayList<>();
+        Dist rejected;
+        int added;
+        int removed;
+
+        Publication(RepositoryIndex index, List<Dist> dists, boolean force) {
+            this.index = index;
+            this.dists = dists;
+            this.force = force;
+        }
+
+        @Override
+        public boolean prepare(@NotNull Collection<Dist> added, @NotNull Collection<Dist> removed) {
+            lines.clear();
+            rejected = null;
+
+            final List<Dist> pendingAdded = new ArrayList<>(dists.size());
+            for (Dist dist : dists) {
+                final Set<Dist> published = index.byVersion(dist.applicationId, dist.version.versionCode);
+                if (published.contains(dist) || pendingAdded.contains(dist)) {
+                    lines.add("= " + describe(dist));
+                    continue;
+                }
+                final Dist pending = findConflict(pendingAdded, dist);
+                final Dist conflict = pending != null ? pending : findConflict(published, dist);
+                if (conflict != null && !force) {
+                    rejected = conflict;
+                    return false;
+                }
+                if (pending != null) {
+                    pendingAdded.remove(pending);
+
+                } else if (conflict != null) {
+                    lines.add("- " + describe(conflict));
+                    removed.add(conflict);
+                }
+                lines.add("+ " + describe(dist));
+                pendingAdded.add(dist);
+            }
+            added.addAll(pendingAdded);
+
+            this.added = added.size();
+            this.removed = removed.size();
+            return !added.isEmpty() || !removed.isEmpty();
+        }
+    }
+
+    /**
+     * Splits of one release share version code, so they conflict only if their filters match too.
+     *
+     * @return dist with the same application id, version code and filter but otherwise different
+     */
+    @Nullable
+    private static Dist findConflict(@NotNull Iterable<Dist> dists, @NotNull Dist dist) {
+        for (Dist other : dists) {
+            if (other.applicationId.equals(dist.applicationId) && other.version.playfulEquals(dist.version)
+                    && other.filter.playfulEquals(dist.filter)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    static String describe(@NotNull Dist dist) {
+        return dist.applicationId + " " + dist.version.versionCode + " " + dist.version.fingerprint;
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.http.RepositoryServer;
+
+public class ServeCommand implements Command {
+    private static final int DEFAULT_PORT = 8080;
+
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("serve").help("serves index and blobs of repository over http");
+
+        subparser.addArgument("-p", "--port")
+                .type(Integer.class).setDefault(DEFAULT_PORT)
+                .help("port to listen on (defaults to " + DEFAULT_PORT + ")");
+        subparser.addArgument("--bind")
+                .setDefault("0.0.0.0")
+                .help("address to listen on (defaults to all addresses)");
+        subparser.addArgument("-t", "--threads")
+                .type(Integer.class).setDefault(Runtime.getRuntime().availableProcessors() * 4)
+                .help("number of requests served concurrently (defaults to four per processor)");
+
+        Main.addRepoArgument(subparser);
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+
+        try {
+            final InetSocketAddress address = new InetSocketAddress(args.getString("bind"), args.getInt("port"));
+            final RepositoryServer server = new RepositoryServer(repository, address, args.getInt("threads"));
+            server.start();
+            System.err.println("serving " + repository.getRootDir() + " at http://" + address.getHostString() + ":" + server.getAddress().getPort() + "/");
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
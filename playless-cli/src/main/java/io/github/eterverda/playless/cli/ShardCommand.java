@@ -0,0 +1,59 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.File;
+import java.io.IOException;
+
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+import io.github.eterverda.playless.core.json.ShardedRepoDumper;
+
+public class ShardCommand implements Command {
+    private static final String SHARDS_DIR = "shards";
+
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("shard").help("writes index as manifest and a shard per application, so that clients fetch only their shard");
+
+        subparser.addArgument("-o", "--output")
+                .type(Arguments.fileType())
+                .help("directory to write to (defaults to shards in repository)");
+        subparser.addArgument("--pretty")
+                .action(Arguments.storeTrue()).setDefault(false)
+                .help("pretty print json");
+
+        Main.addRepoArgument(subparser);
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        final File repoDir = args.get("repo");
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+        final File output = args.get("output");
+
+        try {
+            final Repo repo = RepositoryIndex.open(repository).getRepo();
+            writeShards(repo, output != null ? output : new File(repository.getRootDir(), SHARDS_DIR), args.getBoolean("pretty"));
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static void writeShards(Repo repo, File dir, boolean pretty) throws IOException {
+        final ShardedRepoDumper dumper = new ShardedRepoDumper(dir);
+        dumper.setPrettyPrint(pretty);
+        dumper.write(repo);
+        System.err.printf("shards: %d written, %d unchanged, %d deleted\n", dumper.getWritten(), dumper.getUnchanged(), dumper.getDeleted());
+    }
+}
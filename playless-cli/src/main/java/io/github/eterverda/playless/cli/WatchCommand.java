@@ -0,0 +1,305 @@
+package io.github.eterverda.playless.cli;
+
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.json.ByteJsonReader;
+import io.github.eterverda.playless.common.json.JsonDistFactory;
+import io.github.eterverda.playless.core.BlobStore;
+import io.github.eterverda.playless.core.CachingDistLoader;
+import io.github.eterverda.playless.core.DirectoryWatcher;
+import io.github.eterverda.playless.core.DistLoader;
+import io.github.eterverda.playless.core.InitialDistFactory;
+import io.github.eterverda.playless.core.ParallelDistLoader;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+import io.github.eterverda.playless.core.aapt.Aapt;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class WatchCommand implements Command {
+    private static final String APK_SUFFIX = ".apk";
+
+    private static final String CACHE_DIR = "watch-cache";
+
+    private static final String SOURCES_DIR = "watch-sources";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static Subparser addSubParser(ArgumentParser parser) {
+        final Subparser subparser = parser.addSubparsers().addParser("watch").help("keeps repository index up to date with apks in directory");
+
+        DumpCommand.addLoaderArguments(subparser);
+
+        subparser.addArgument("--quiet-period")
+                .type(Long.class).setDefault(2000L)
+                .help("milliseconds without changes in directory before apks are ingested (defaults to 2000)");
+
+        Main.addRepoArgument(subparser);
+        subparser.addArgument("dir")
+                .type(Arguments.fileType().verifyIsDirectory())
+                .help("directory to watch for apk files");
+
+        return subparser;
+    }
+
+    @Override
+    public void main(Namespace args) {
+        if (!DumpCommand.checkLoaderArguments(args)) {
+            return;
+        }
+        final int jobs = args.getInt("jobs");
+        final long quietPeriod = args.getLong("quiet_period");
+        final File repoDir = args.get("repo");
+        final File dir;
+        try {
+            // sources are keyed by paths in it, they must not depend on how it is typed
+            dir = args.<File>get("dir").getCanonicalFile();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        final Repository repository = DumpCommand.findRepository(repoDir);
+        if (repository == null) {
+            System.err.println("No repository found in " + repoDir);
+            return;
+        }
+
+        // compaction rewrites the whole base, it must not delay ingestion
+        final ExecutorService compactor = Executors.newSingleThreadExecutor();
+
+        try (Aapt aapt = DumpCommand.newAapt(args);
+             DirectoryWatcher watcher = new DirectoryWatcher(dir, APK_SUFFIX, quietPeriod)) {
+
+            final DistLoader postProcessLoader = DumpCommand.postProcessLoader(new InitialDistFactory(aapt), null);
+            final DistLoader cachingLoader = new CachingDistLoader(postProcessLoader,
+                    new File(repository.getInternalsDir(), CACHE_DIR), aapt != null ? "aapt" : "manifest");
+
+            // watched files are often overwritten in place, which would change hard linked blob
+            final BlobStore blobs = new BlobStore(repository.getRootDir());
+            blobs.setLinking(false);
+
+            final DistLoader loader = new DistLoader() {
+                @NotNull
+                @Override
+                public Dist load(@NotNull File apk) throws IOException {
+                    final Dist dist = cachingLoader.load(apk);
+                    final Checksum fingerprint = dist.version.fingerprint;
+                    assert fingerprint != null;
+                    blobs.store(apk, fingerprint, DumpCommand.downloadFilename(dist));
+                    return dist;
+                }
+            };
+
+            final RepositoryIndex index = RepositoryIndex.open(repository);
+            final File sourcesFile = new File(new File(repository.getInternalsDir(), SOURCES_DIR),
+                    Checksum.sha1(dir.getPath().getBytes(UTF_8)).getStringValue());
+            final Ingestion ingestion = new Ingestion(index, new ParallelDistLoader(loader, jobs), compactor, sourcesFile);
+
+            // files changed or deleted while nobody was watching replace their dists too
+            ingestion.restore();
+
+            // watcher is registered already, nothing dropped while listing is missed
+            ingestion.ingest(ingestion.withKnown(watcher.list()));
+
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                final Collection<File> files = watcher.take();
+                if (files != null) {
+                    ingestion.ingest(files);
+
+                } else {
+                    System.err.println("events lost, listing " + dir);
+                    ingestion.ingest(ingestion.withKnown(watcher.list()));
+                }
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } finally {
+            compactor.shutdown();
+        }
+    }
+
+    /**
+     * Remembers which dist came from which file, so changed or deleted file replaces exactly its
+     * own dist in index. Sources are saved before every commit along with dists being replaced,
+     * and restored ones are kept only if they are in index, so that watcher started again knows
+     * sources of whatever it has committed.
+     */
+    private static final class Ingestion {
+        private final RepositoryIndex index;
+        private final ParallelDistLoader loader;
+        private final ExecutorService compactor;
+        private final File sourcesFile;
+
+        private final Map<File, Dist> sources = new HashMap<>();
+
+        /**
+         * Restored dists of the same file as another one, they are removed by the next commit.
+         */
+        private final List<Dist> stale = new ArrayList<>();
+
+        Ingestion(RepositoryIndex index, ParallelDistLoader loader, ExecutorService compactor, File sourcesFile) {
+            this.index = index;
+            this.loader = loader;
+            this.compactor = compactor;
+            this.sourcesFile = sourcesFile;
+        }
+
+        void restore() throws IOException {
+            if (!sourcesFile.isFile()) {
+                return;
+            }
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(sourcesFile), UTF_8))) {
+                String path;
+                String json;
+                while ((path = in.readLine()) != null && (json = in.readLine()) != null) {
+                    final Dist dist = JsonDistFactory.getInstance().load(new ByteJsonReader(json.getBytes(UTF_8)));
+                    if (!index.contains(dist)) {
+                        // never committed or removed since
+                        continue;
+                    }
+                    final Dist other = sources.put(new File(path), dist);
+                    if (other != null && !other.equals(dist)) {
+                        stale.add(other);
+                    }
+                }
+
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IOException("Malformed " + sourcesFile, e);
+            }
+        }
+
+        /**
+         * Writes sources, then dists of files being replaced, each one as line of path and line of
+         * dist.
+         */
+        private void save(Map<File, Dist> replaced) throws IOException {
+            final File dir = sourcesFile.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+            final File temp = File.createTempFile(sourcesFile.getName(), ".tmp", dir);
+            try {
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF_8))) {
+                    for (Map<File, Dist> map : Arrays.asList(sources, replaced)) {
+                        for (Map.Entry<File, Dist> entry : map.entrySet()) {
+                            out.write(entry.getKey().getPath());
+                            out.write('\n');
+                            new JsonRepoDumper(out).write(entry.getValue());
+                            out.write('\n');
+                        }
+                    }
+                }
+                Files.move(temp.toPath(), sourcesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            } finally {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+
+        Collection<File> withKnown(Collection<File> files) {
+            final Set<File> result = new LinkedHashSet<>(sources.keySet());
+            result.addAll(files);
+            return result;
+        }
+
+        void ingest(Collection<File> files) throws IOException {
+            final List<File> present = new ArrayList<>();
+            final List<Dist> removed = new ArrayList<>(stale);
+            final Map<File, Dist> replaced = new HashMap<>();
+            for (File file : files) {
+                final Dist old = sources.remove(file);
+                if (old != null) {
+                    removed.add(old);
+                    replaced.put(file, old);
+                }
+                if (file.isFile()) {
+                    present.add(file);
+                } else if (old != null) {
+                    System.out.println("- " + file);
+                }
+            }
+
+            final Map<File, IOException> failures = new LinkedHashMap<>();
+            final List<Dist> dists = loader.loadAll(present, failures);
+            present.removeAll(failures.keySet());
+
+            final List<Dist> added = new ArrayList<>(dists.size());
+            for (int i = 0; i < dists.size(); i++) {
+                final Dist dist = dists.get(i);
+                sources.put(present.get(i), dist);
+                if (!removed.remove(dist)) {
+                    added.add(dist);
+                    System.out.println("+ " + present.get(i));
+                }
+            }
+            // identical apk may still be provided by another file
+            removed.removeAll(sources.values());
+
+            for (Map.Entry<File, IOException> failure : failures.entrySet()) {
+                // most likely file is still being written, next change of it is ingested again
+                System.err.println("! " + failure.getKey() + ": " + failure.getValue());
+            }
+
+            // saved first, dists of commit interrupted after that are not in index and are dropped
+            save(replaced);
+            if (!added.isEmpty() || !removed.isEmpty()) {
+                index.commit(added, removed);
+                stale.clear();
+                System.err.printf("index: %d added, %d removed, %d total\n", added.size(), removed.size(), index.size());
+            }
+            if (index.isCompactionDue()) {
+                compactor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (index.isCompactionDue() && index.compact()) {
+                                System.err.println("index: compacted");
+                            }
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.eterverda.playless.cli;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.PlaylessRepositoryException;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class PublishCommandTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RepositoryIndex index;
+
+    private final Dist arm = split("armeabi-v7a");
+    private final Dist x86 = split("x86");
+
+    @Before
+    public void setUp() throws IOException, PlaylessRepositoryException {
+        index = RepositoryIndex.open(Repository.init(folder.getRoot()));
+    }
+
+    @Test
+    public void splitsOfOneReleaseDoNotConflict() throws IOException {
+        for (boolean force : new boolean[]{false, true}) {
+            final PublishCommand.Publication publication = new PublishCommand.Publication(index, Arrays.asList(arm, x86), force);
+
+            Assert.assertTrue(index.commit(publication));
+            Assert.assertNull(publication.rejected);
+            Assert.assertEquals(2, publication.added);
+            Assert.assertEquals(0, publication.removed);
+            Assert.assertEquals(new HashSet<>(Arrays.asList(arm, x86)), index.getRepo().dists);
+
+            index.commit(Collections.<Dist>emptyList(), Arrays.asList(arm, x86));
+        }
+    }
+
+    @Test
+    public void rebuiltSplitConflicts() throws IOException {
+        index.commit(Arrays.asList(arm, x86), Collections.<Dist>emptyList());
+        final Dist rebuilt = split("x86", "rebuilt");
+
+        final PublishCommand.Publication rejected = new PublishCommand.Publication(index, Collections.singletonList(rebuilt), false);
+        Assert.assertFalse(index.commit(rejected));
+        Assert.assertEquals(x86, rejected.rejected);
+
+        final PublishCommand.Publication forced = new PublishCommand.Publication(index, Collections.singletonList(rebuilt), true);
+        Assert.assertTrue(index.commit(forced));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(arm, rebuilt)), index.getRepo().dists);
+    }
+
+    private static Dist split(String nativeCode) {
+        return split(nativeCode, "");
+    }
+
+    private static Dist split(String nativeCode, String build) {
+        final Dist.Editor dist = new Dist.Editor();
+        dist.applicationId("com.example");
+        dist.versionCode(1);
+        dist.fingerprint(Checksum.sha1((nativeCode + build).getBytes(UTF_8)));
+        dist.minSdkVersion(9);
+        dist.nativeCode(nativeCode);
+        dist.link("download", "com.example1-" + nativeCode + ".apk");
+        return dist.build();
+    }
+}
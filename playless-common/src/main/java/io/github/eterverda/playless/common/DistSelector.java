@@ -0,0 +1,19 @@
+package io.github.eterverda.playless.common;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Selects dists by fields read before the rest of dist, so that dists not selected are skipped
+ * without being built.
+ */
+public interface DistSelector {
+    /**
+     * @return whether dists of application may be selected, asked as soon as application id is read
+     */
+    boolean selectsApplication(@NotNull String applicationId);
+
+    /**
+     * @return whether dist is selected, asked once version code is read too
+     */
+    boolean selectsVersion(@NotNull String applicationId, int versionCode);
+}
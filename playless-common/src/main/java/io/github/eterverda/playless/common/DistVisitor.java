@@ -0,0 +1,20 @@
+package io.github.eterverda.playless.common;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Receives repository while it is read, so that dists are processed one at a time and never held
+ * all together. Properties of repository are delivered in order they are written, and those are
+ * written before dists.
+ */
+public interface DistVisitor {
+    void seq(long seq) throws IOException;
+
+    void meta(@NotNull String key, @NotNull String value) throws IOException;
+
+    void link(@NotNull Link link) throws IOException;
+
+    void dist(@NotNull Dist dist) throws IOException;
+}
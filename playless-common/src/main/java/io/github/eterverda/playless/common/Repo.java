@@ -23,15 +23,21 @@ public final class Repo {
     public final Set<Link> links;
     @NotNull
     public final Map<String, String> meta;
+    /**
+     * Sequence number of the last commit applied, {@code 0} for repository never committed to.
+     */
+    public final long seq;
 
     protected Repo(
             @NotNull Set<Dist> dists,
             @NotNull Set<Link> links,
-            @NotNull Map<String, String> meta) {
+            @NotNull Map<String, String> meta,
+            long seq) {
 
         this.dists = dists;
         this.links = links;
         this.meta = meta;
+        this.seq = seq;
     }
 
     @NotNull
@@ -40,10 +46,11 @@ public final class Repo {
     }
 
     @NotThreadSafe
-    public static final class Editor {
+    public static final class Editor implements DistVisitor {
         private Set<Dist> dists;
         private Set<Link> links;
         private Map<String, String> meta;
+        private long seq;
 
         public Editor() {
             dists = Collections.emptySet();
@@ -55,6 +62,7 @@ public final class Repo {
             dists = repo.dists;
             links = repo.links;
             meta = repo.meta;
+            seq = repo.seq;
         }
 
         public Repo build() {
@@ -62,14 +70,21 @@ public final class Repo {
             links = unmodifiableSet(links);
             meta = unmodifiableMap(meta);
 
-            return new Repo(dists, links, meta);
+            return new Repo(dists, links, meta, seq);
         }
 
+        @Override
         public void dist(@NotNull Dist dist) {
             dists = modifiableLinkedHashSet(dists);
             dists.add(dist);
         }
 
+        public void undist(@NotNull Dist dist) {
+            dists = modifiableLinkedHashSet(dists);
+            dists.remove(dist);
+        }
+
+        @Override
         public void link(@NotNull Link link) {
             links = modifiableTreeSet(links);
             links.add(link);
@@ -84,11 +99,17 @@ public final class Repo {
             links.remove(link);
         }
 
+        @Override
         public void meta(@NotNull String key, @NotNull String value) {
             meta = modifiableTreeMap(meta);
             meta.put(key, value);
         }
 
+        @Override
+        public void seq(long seq) {
+            this.seq = seq;
+        }
+
         @NotNull
         static <T> TreeSet<T> modifiableTreeSet(@NotNull Set<T> set) {
             return set instanceof TreeSet ? (TreeSet<T>) set : new TreeSet<>(set);
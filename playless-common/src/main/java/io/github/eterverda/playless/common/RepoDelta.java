@@ -0,0 +1,63 @@
+package io.github.eterverda.playless.common;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Dists removed and added by commits after {@link #since} up to {@link #seq}. Single commit is
+ * written to index log as delta without {@link #since}, changes of many commits are merged into
+ * diff which brings repository at {@link #since} to {@link #seq}.
+ */
+@Immutable
+@ThreadSafe
+public final class RepoDelta {
+    public static final long UNKNOWN = -1;
+
+    public final long since;
+    public final long seq;
+    @NotNull
+    public final Set<Dist> added;
+    @NotNull
+    public final Set<Dist> removed;
+
+    public RepoDelta(long since, long seq, @NotNull Set<Dist> added, @NotNull Set<Dist> removed) {
+        this.since = since;
+        this.seq = seq;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /**
+     * Removes and then adds dists, sequence number is updated if known.
+     */
+    public void apply(@NotNull Repo.Editor result) {
+        for (Dist dist : removed) {
+            result.undist(dist);
+        }
+        for (Dist dist : added) {
+            result.dist(dist);
+        }
+        if (seq != UNKNOWN) {
+            result.seq(seq);
+        }
+    }
+
+    /**
+     * Applies diff to repository at the sequence number it is made since.
+     *
+     * @throws IllegalArgumentException if repository is at other sequence number
+     */
+    @NotNull
+    public Repo applyTo(@NotNull Repo repo) {
+        if (since != UNKNOWN && since != repo.seq) {
+            throw new IllegalArgumentException("Diff since " + since + " cannot be applied to repository at " + repo.seq);
+        }
+        final Repo.Editor result = repo.edit();
+        apply(result);
+        return result.build();
+    }
+}
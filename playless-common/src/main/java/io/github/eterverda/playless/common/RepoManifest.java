@@ -0,0 +1,131 @@
+package io.github.eterverda.playless.common;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Root of sharded repository: links and meta of repository and a shard per application, so that
+ * client fetches manifest and then just the shard of application it cares about. Shard is
+ * repository document with dists of single application, it is verified by its checksum.
+ */
+@Immutable
+@ThreadSafe
+public final class RepoManifest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NotNull
+    public final Map<String, Shard> shards;
+    @NotNull
+    public final Set<Link> links;
+    @NotNull
+    public final Map<String, String> meta;
+    public final long seq;
+
+    protected RepoManifest(
+            @NotNull Map<String, Shard> shards,
+            @NotNull Set<Link> links,
+            @NotNull Map<String, String> meta,
+            long seq) {
+
+        this.shards = shards;
+        this.links = links;
+        this.meta = meta;
+        this.seq = seq;
+    }
+
+    @Nullable
+    public Shard shard(@NotNull String applicationId) {
+        return shards.get(applicationId);
+    }
+
+    /**
+     * @return file name of shard named by hash of application id, so that it is safe for any id
+     */
+    @NotNull
+    public static String shardFilename(@NotNull String applicationId) {
+        return Checksum.sha1(applicationId.getBytes(UTF_8)).getStringValue() + ".json";
+    }
+
+    @Immutable
+    @ThreadSafe
+    public static final class Shard {
+        @NotNull
+        public final String applicationId;
+        @NotNull
+        public final String href;
+        @NotNull
+        public final Checksum checksum;
+        public final long size;
+
+        public Shard(@NotNull String applicationId, @NotNull String href, @NotNull Checksum checksum, long size) {
+            this.applicationId = applicationId;
+            this.href = href;
+            this.checksum = checksum;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Shard)) {
+                return false;
+            }
+            final Shard that = (Shard) o;
+            return size == that.size &&
+                    applicationId.equals(that.applicationId) &&
+                    href.equals(that.href) &&
+                    checksum.equals(that.checksum);
+        }
+
+        @Override
+        public int hashCode() {
+            return applicationId.hashCode() ^ checksum.hashCode();
+        }
+    }
+
+    @NotThreadSafe
+    public static final class Editor {
+        private Map<String, Shard> shards = Collections.emptyMap();
+        private Set<Link> links = Collections.emptySet();
+        private Map<String, String> meta = Collections.emptyMap();
+        private long seq;
+
+        @NotNull
+        public RepoManifest build() {
+            shards = Repo.Editor.unmodifiableMap(shards);
+            links = Repo.Editor.unmodifiableSet(links);
+            meta = Repo.Editor.unmodifiableMap(meta);
+
+            return new RepoManifest(shards, links, meta, seq);
+        }
+
+        public void shard(@NotNull Shard shard) {
+            shards = Repo.Editor.modifiableTreeMap(shards);
+            shards.put(shard.applicationId, shard);
+        }
+
+        public void link(@NotNull Link link) {
+            links = Repo.Editor.modifiableTreeSet(links);
+            links.add(link);
+        }
+
+        public void meta(@NotNull String key, @NotNull String value) {
+            meta = Repo.Editor.modifiableTreeMap(meta);
+            meta.put(key, value);
+        }
+
+        public void seq(long seq) {
+            this.seq = seq;
+        }
+    }
+}
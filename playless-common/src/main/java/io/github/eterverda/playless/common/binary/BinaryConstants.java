@@ -0,0 +1,36 @@
+package io.github.eterverda.playless.common.binary;
+
+/**
+ * Layout of binary index, all numbers are big endian.
+ * <pre>
+ * header       magic, version, flags, string count, dist count, string table offset,
+ *              dist table offset, repo offset, fingerprint table offset
+ * string table string count offsets, each pointing to varint length and UTF-8 bytes
+ * dist table   dist count fixed width records: application id string, version code, timestamp,
+ *              flags, offset of variable part
+ * variable     checksums (algorithm string, varint length, raw bytes), filter varints and
+ *              string sets, links and meta of each dist
+ * repo         links and meta of repository, sequence number of the last commit as long
+ * fingerprints count and indexes of dists having fingerprint ordered by it
+ * </pre>
+ * Strings are stored once and referred to by their varint index. Sets are varint count followed
+ * by elements. Dists are ordered by application id and version code, so both are looked up by
+ * binary search over dist table, and fingerprints are looked up the same way over fingerprint
+ * table.
+ */
+public class BinaryConstants {
+    public static final int MAGIC = 0x504c4958; // PLIX
+    /**
+     * Version 1 had neither fingerprint table offset in header nor sequence number in repo.
+     */
+    public static final short VERSION_2 = 2;
+
+    public static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 4 + 4 + 4 + 4;
+
+    public static final int DIST_RECORD_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    // dist record flags
+    public static final int FLAG_DEBUG = 1;
+    public static final int FLAG_FINGERPRINT = 1 << 1;
+    public static final int FLAG_SIGNATURES = 1 << 2;
+}
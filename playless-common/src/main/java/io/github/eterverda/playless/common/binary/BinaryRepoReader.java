@@ -0,0 +1,369 @@
+package io.github.eterverda.playless.common.binary;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.util.checksum.Checksum;
+
+import static io.github.eterverda.playless.common.binary.BinaryConstants.DIST_RECORD_SIZE;
+import static io.github.eterverda.playless.common.binary.BinaryConstants.FLAG_DEBUG;
+import static io.github.eterverda.playless.common.binary.BinaryConstants.FLAG_FINGERPRINT;
+import static io.github.eterverda.playless.common.binary.BinaryConstants.FLAG_SIGNATURES;
+import static io.github.eterverda.playless.common.binary.BinaryConstants.HEADER_SIZE;
+import static io.github.eterverda.playless.common.binary.BinaryConstants.MAGIC;
+import static io.github.eterverda.playless.common.binary.BinaryConstants.VERSION_2;
+
+/**
+ * Reads binary index lazily: only the header is read upfront, dists are decoded one at a time on
+ * request and each string is decoded once. Fixed width fields like application id and version
+ * code can be read without decoding the rest of dist.
+ */
+@NotThreadSafe
+public final class BinaryRepoReader {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NotNull
+    private final ByteBuffer buffer;
+
+    private final int distCount;
+    private final int stringTableOffset;
+    private final int distTableOffset;
+    private final int repoOffset;
+    private final int fingerprintTableOffset;
+
+    @NotNull
+    private final ByteBuffer cursor;
+
+    @NotNull
+    private final String[] strings;
+
+    /**
+     * Position of next varint read by {@link #readVarint()}.
+     */
+    private int at;
+
+    public BinaryRepoReader(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.cursor = buffer.duplicate();
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Expected binary playless repository");
+        }
+        final short version = buffer.getShort(4);
+        if (version != VERSION_2) {
+            throw new IllegalArgumentException("Unsupported binary playless repository version " + version);
+        }
+        final int stringCount = buffer.getInt(8);
+        distCount = buffer.getInt(12);
+        stringTableOffset = buffer.getInt(16);
+        distTableOffset = buffer.getInt(20);
+        repoOffset = buffer.getInt(24);
+        fingerprintTableOffset = buffer.getInt(28);
+
+        if (stringCount < 0 || distCount < 0 ||
+                (long) stringTableOffset + 4L * stringCount > buffer.limit() ||
+                (long) distTableOffset + (long) DIST_RECORD_SIZE * distCount > buffer.limit() ||
+                repoOffset > buffer.limit() ||
+                fingerprintTableOffset < 0 || (long) fingerprintTableOffset + 4L > buffer.limit() ||
+                (long) fingerprintTableOffset + 4L + 4L * buffer.getInt(fingerprintTableOffset) > buffer.limit()) {
+            throw new IllegalArgumentException("Malformed binary playless repository header");
+        }
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Maps the whole file to memory, file may be closed right after that.
+     */
+    @NotNull
+    public static BinaryRepoReader map(@NotNull File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            return new BinaryRepoReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    public int size() {
+        return distCount;
+    }
+
+    @NotNull
+    public String applicationId(int index) {
+        return string(buffer.getInt(record(index)));
+    }
+
+    public int versionCode(int index) {
+        return buffer.getInt(record(index) + 4);
+    }
+
+    @NotNull
+    public Dist dist(int index) {
+        final int record = record(index);
+        final int flags = buffer.getInt(record + 16);
+
+        final Dist.Editor result = new Dist.Editor();
+        result.applicationId(string(buffer.getInt(record)));
+        result.versionCode(buffer.getInt(record + 4));
+        result.timestamp(buffer.getLong(record + 8));
+        result.debug((flags & FLAG_DEBUG) != 0);
+
+        at = buffer.getInt(record + 20);
+        try {
+            if ((flags & FLAG_FINGERPRINT) != 0) {
+                result.fingerprint(readChecksum());
+            }
+            if ((flags & FLAG_SIGNATURES) != 0) {
+                result.signatures(readChecksum());
+            }
+            readFilter(result);
+
+            for (int i = readVarint(); i > 0; i--) {
+                result.link(readString(), readString());
+            }
+            for (int i = readVarint(); i > 0; i--) {
+                result.meta(readString(), readString());
+            }
+
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed dist " + index + " in binary playless repository", e);
+        }
+        return result.build();
+    }
+
+    /**
+     * @return dists of application decoding nothing but them and application ids on the way
+     */
+    @NotNull
+    public List<Dist> byApplicationId(@NotNull String applicationId) {
+        final List<Dist> result = new ArrayList<>();
+        for (int i = lowerBound(applicationId, Integer.MIN_VALUE); i < distCount && applicationId(i).equals(applicationId); i++) {
+            result.add(dist(i));
+        }
+        return result;
+    }
+
+    @NotNull
+    public List<Dist> byVersion(@NotNull String applicationId, int versionCode) {
+        final List<Dist> result = new ArrayList<>();
+        for (int i = lowerBound(applicationId, versionCode); i < distCount && versionCode(i) == versionCode && applicationId(i).equals(applicationId); i++) {
+            result.add(dist(i));
+        }
+        return result;
+    }
+
+    @NotNull
+    public List<Dist> byFingerprint(@NotNull Checksum fingerprint) {
+        final int count = buffer.getInt(fingerprintTableOffset);
+
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (fingerprint(middle).compareTo(fingerprint) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        final List<Dist> result = new ArrayList<>();
+        for (int i = low; i < count && fingerprint(i).equals(fingerprint); i++) {
+            result.add(dist(buffer.getInt(fingerprintTableOffset + 4 + 4 * i)));
+        }
+        return result;
+    }
+
+    /**
+     * @return every dist, links and meta of repository
+     */
+    @NotNull
+    public Repo load() {
+        final Repo.Editor result = new Repo.Editor();
+        for (int i = 0; i < distCount; i++) {
+            result.dist(dist(i));
+        }
+
+        at = repoOffset;
+        try {
+            for (int i = readVarint(); i > 0; i--) {
+                result.link(new Link(readString(), readString()));
+            }
+            for (int i = readVarint(); i > 0; i--) {
+                result.meta(readString(), readString());
+            }
+            result.seq(buffer.getLong(at));
+
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed binary playless repository", e);
+        }
+        return result.build();
+    }
+
+    /**
+     * @return sequence number of the last commit applied to repository
+     */
+    public long seq() {
+        at = repoOffset;
+        try {
+            for (int i = 2 * readVarint(); i > 0; i--) {
+                readVarint();
+            }
+            for (int i = 2 * readVarint(); i > 0; i--) {
+                readVarint();
+            }
+            return buffer.getLong(at);
+
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed binary playless repository", e);
+        }
+    }
+
+    /**
+     * @return index of the first dist not ordered before given application id and version code
+     */
+    private int lowerBound(@NotNull String applicationId, int versionCode) {
+        int low = 0;
+        int high = distCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int applicationIds = applicationId(middle).compareTo(applicationId);
+            if (applicationIds < 0 || applicationIds == 0 && versionCode(middle) < versionCode) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return fingerprint of dist at given position of fingerprint table
+     */
+    @NotNull
+    private Checksum fingerprint(int position) {
+        final int index = buffer.getInt(fingerprintTableOffset + 4 + 4 * position);
+        at = buffer.getInt(record(index) + 20);
+        try {
+            return readChecksum();
+
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed dist " + index + " in binary playless repository", e);
+        }
+    }
+
+    private void readFilter(@NotNull Dist.Editor result) {
+        result.minSdkVersion(readVarint());
+        result.maxSdkVersion(readVarint());
+        result.requiresSmallestWidthDp(readVarint());
+        result.usesGlEs(readVarint());
+
+        for (int i = readVarint(); i > 0; i--) {
+            result.supportsScreen(readString());
+        }
+        for (int i = readVarint(); i > 0; i--) {
+            result.compatibleScreen(readString());
+        }
+        for (int i = readVarint(); i > 0; i--) {
+            result.supportsGlTexture(readString());
+        }
+        for (int i = readVarint(); i > 0; i--) {
+            result.usesFeature(readString());
+        }
+        for (int i = readVarint(); i > 0; i--) {
+            result.usesLibrary(readString());
+        }
+        for (int i = readVarint(); i > 0; i--) {
+            result.nativeCode(readString());
+        }
+        for (int i = readVarint(); i > 0; i--) {
+            result.usesConfiguration(readVarint(), readVarint(), readVarint(), readVarint(), readVarint());
+        }
+    }
+
+    @NotNull
+    private Checksum readChecksum() {
+        final String algorithm = readString();
+        final int length = readVarint();
+        final byte[] value = readBytes(at, length);
+        at += length;
+        try {
+            return new Checksum(algorithm, value);
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @NotNull
+    private String readString() {
+        return string(readVarint());
+    }
+
+    /**
+     * Unsigned LEB128, negative ints take five bytes.
+     */
+    private int readVarint() {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get(at++);
+            result |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at " + (at - 5));
+    }
+
+    @NotNull
+    private String string(int index) {
+        final String cached = strings[index];
+        if (cached != null) {
+            return cached;
+        }
+        final int savedAt = at;
+        at = buffer.getInt(stringTableOffset + 4 * index);
+        final int length = readVarint();
+        final byte[] bytes = readBytes(at, length);
+        at = savedAt;
+
+        final String result = new String(bytes, UTF_8);
+        strings[index] = result;
+        return result;
+    }
+
+    @NotNull
+    private byte[] readBytes(int position, int length) {
+        final byte[] result = new byte[length];
+        cursor.position(position);
+        cursor.get(result);
+        return result;
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= distCount) {
+            throw new IndexOutOfBoundsException("Dist " + index + " of " + distCount);
+        }
+        return distTableOffset + DIST_RECORD_SIZE * index;
+    }
+}
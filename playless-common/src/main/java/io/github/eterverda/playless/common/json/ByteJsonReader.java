@@ -0,0 +1,659 @@
+package io.github.eterverda.playless.common.json;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * {@link JsonReader} parsing UTF-8 right from bytes, no {@link java.io.Reader} decodes them to
+ * chars first. Names of {@link JsonConstants} are matched in bytes and the constants themselves
+ * are returned, so that known names are read without allocation. Like gson, it throws
+ * {@link IllegalStateException} when value of other type is read and {@link EOFException} when
+ * input ends too early, malformed input is thrown as {@link IllegalArgumentException}.
+ */
+@NotThreadSafe
+public final class ByteJsonReader implements JsonReader {
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_BEGIN_OBJECT = 1;
+    private static final int PEEKED_END_OBJECT = 2;
+    private static final int PEEKED_BEGIN_ARRAY = 3;
+    private static final int PEEKED_END_ARRAY = 4;
+    private static final int PEEKED_NAME = 5;
+    private static final int PEEKED_STRING = 6;
+    private static final int PEEKED_NUMBER = 7;
+    private static final int PEEKED_TRUE = 8;
+    private static final int PEEKED_FALSE = 9;
+    private static final int PEEKED_NULL = 10;
+    private static final int PEEKED_END_DOCUMENT = 11;
+
+    private static final String[] TOKENS = {
+            null, "BEGIN_OBJECT", "END_OBJECT", "BEGIN_ARRAY", "END_ARRAY", "NAME",
+            "STRING", "NUMBER", "BOOLEAN", "BOOLEAN", "NULL", "END_DOCUMENT"};
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    /**
+     * Open addressing table of known names by their hash code, which is the same for bytes of
+     * ascii string.
+     */
+    private static final String[] NAMES = new String[128];
+
+    static {
+        for (String name : new String[]{
+                JsonConstants.DECOR_PLAYLESS_REPOSITORY_V1, JsonConstants.DECOR_PLAYLESS_DELTA_V1,
+                JsonConstants.DECOR_PLAYLESS_MANIFEST_V1, JsonConstants.DISTRIBUTIONS, JsonConstants.SEQ,
+                JsonConstants.ADDED, JsonConstants.REMOVED, JsonConstants.SINCE, JsonConstants.SHARDS,
+                JsonConstants.CHECKSUM, JsonConstants.SIZE, JsonConstants.APPLICATION_ID,
+                JsonConstants.FILTER, JsonConstants.MIN_SDK_VERSION, JsonConstants.MAX_SDK_VERSION,
+                JsonConstants.REQUIRES_SMALLEST_WIDTH_DP, JsonConstants.USES_GL_ES,
+                JsonConstants.SUPPORTS_SCREENS, JsonConstants.COMPATIBLE_SCREENS,
+                JsonConstants.SUPPORTS_GL_TEXTURES, JsonConstants.USES_FEATURES,
+                JsonConstants.USES_LIBRARIES, JsonConstants.NATIVE_CODE, JsonConstants.USES_CONFIGURATIONS,
+                JsonConstants.FIVE_WAY_NAV, JsonConstants.HARD_KEYBOARD, JsonConstants.KEYBOARD_TYPE,
+                JsonConstants.NAVIGATION, JsonConstants.TOUCH_SCREEN, JsonConstants.VERSION,
+                JsonConstants.VERSION_CODE, JsonConstants.TIMESTAMP, JsonConstants.SIGNATURES,
+                JsonConstants.FINGERPRINT, JsonConstants.DEBUG, JsonConstants.LINKS, JsonConstants.REL,
+                JsonConstants.HREF, JsonConstants.META}) {
+
+            int i = name.hashCode() & NAMES.length - 1;
+            while (NAMES[i] != null) {
+                i = i + 1 & NAMES.length - 1;
+            }
+            NAMES[i] = name;
+        }
+    }
+
+    @NotNull
+    private final ByteBuffer buffer;
+    @Nullable
+    private final byte[] array;
+    private final int arrayOffset;
+    private final int limit;
+
+    private int pos;
+
+    private int peeked = PEEKED_NONE;
+    private int numberStart;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    private char[] chars = new char[64];
+
+    /**
+     * Reads from position to limit of buffer, buffer itself is not changed.
+     */
+    public ByteJsonReader(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.array = buffer.hasArray() ? buffer.array() : null;
+        this.arrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        this.limit = buffer.limit();
+        this.pos = buffer.position();
+        stack[0] = EMPTY_DOCUMENT;
+
+        // byte order mark
+        if (limit - pos >= 3 && byteAt(pos) == (byte) 0xef && byteAt(pos + 1) == (byte) 0xbb && byteAt(pos + 2) == (byte) 0xbf) {
+            pos += 3;
+        }
+    }
+
+    public ByteJsonReader(@NotNull byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Maps the whole file to memory, file may be closed right after that.
+     */
+    @NotNull
+    public static ByteJsonReader map(@NotNull File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            return new ByteJsonReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(PEEKED_BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(PEEKED_END_ARRAY);
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(PEEKED_BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(PEEKED_END_OBJECT);
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        final int p = peek();
+        return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY && p != PEEKED_END_DOCUMENT;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(PEEKED_NAME);
+        final String result = readString(true);
+        peeked = PEEKED_NONE;
+        return result;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        final int p = peek();
+        final int result;
+        if (p == PEEKED_NUMBER) {
+            result = parseInt(numberStart, pos);
+        } else if (p == PEEKED_STRING) {
+            result = parseInt(readString(false));
+        } else {
+            throw unexpected("NUMBER", p);
+        }
+        peeked = PEEKED_NONE;
+        return result;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        final int p = peek();
+        final String result;
+        if (p == PEEKED_STRING) {
+            result = readString(false);
+        } else if (p == PEEKED_NUMBER) {
+            result = ascii(numberStart, pos);
+        } else {
+            throw unexpected("STRING", p);
+        }
+        peeked = PEEKED_NONE;
+        return result;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        final int p = peek();
+        if (p != PEEKED_TRUE && p != PEEKED_FALSE) {
+            throw unexpected("BOOLEAN", p);
+        }
+        peeked = PEEKED_NONE;
+        return p == PEEKED_TRUE;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case PEEKED_BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case PEEKED_BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case PEEKED_END_ARRAY:
+                case PEEKED_END_OBJECT:
+                    stackSize--;
+                    depth--;
+                    break;
+                case PEEKED_NAME:
+                case PEEKED_STRING:
+                    skipString();
+                    break;
+                case PEEKED_END_DOCUMENT:
+                    throw new IllegalStateException("Expected a value but was END_DOCUMENT at " + pos);
+                default:
+                    // number and literals are consumed by peek
+                    break;
+            }
+            peeked = PEEKED_NONE;
+        } while (depth > 0);
+    }
+
+    private void expect(int token) throws IOException {
+        final int p = peek();
+        if (p != token) {
+            throw unexpected(TOKENS[token], p);
+        }
+    }
+
+    @NotNull
+    private IllegalStateException unexpected(@NotNull String expected, int token) {
+        return new IllegalStateException("Expected " + expected + " but was " + TOKENS[token] + " at " + pos);
+    }
+
+    @NotNull
+    private IllegalArgumentException syntaxError(@NotNull String message) {
+        return new IllegalArgumentException(message + " at " + pos);
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private int peek() throws IOException {
+        final int p = peeked;
+        return p != PEEKED_NONE ? p : doPeek();
+    }
+
+    private int doPeek() throws IOException {
+        final int top = stack[stackSize - 1];
+        switch (top) {
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                break;
+
+            case NONEMPTY_ARRAY: {
+                final int c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = PEEKED_END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Unterminated array");
+                }
+                break;
+            }
+
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                stack[stackSize - 1] = DANGLING_NAME;
+                if (top == NONEMPTY_OBJECT) {
+                    final int c = nextNonWhitespace();
+                    if (c == '}') {
+                        return peeked = PEEKED_END_OBJECT;
+                    }
+                    if (c != ',') {
+                        throw syntaxError("Unterminated object");
+                    }
+                }
+                final int c = nextNonWhitespace();
+                if (c == '"') {
+                    return peeked = PEEKED_NAME;
+                }
+                if (c == '}' && top == EMPTY_OBJECT) {
+                    return peeked = PEEKED_END_OBJECT;
+                }
+                throw syntaxError("Expected name");
+            }
+
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                break;
+
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+
+            case NONEMPTY_DOCUMENT:
+                if (skipWhitespace() == limit) {
+                    return peeked = PEEKED_END_DOCUMENT;
+                }
+                throw syntaxError("Expected end of document");
+
+            default:
+                throw new IllegalStateException("JsonReader is closed");
+        }
+
+        final int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return peeked = PEEKED_BEGIN_OBJECT;
+            case '[':
+                return peeked = PEEKED_BEGIN_ARRAY;
+            case '"':
+                return peeked = PEEKED_STRING;
+            case ']':
+                if (top == EMPTY_ARRAY) {
+                    return peeked = PEEKED_END_ARRAY;
+                }
+                throw syntaxError("Unexpected value");
+            case 't':
+                literal("rue");
+                return peeked = PEEKED_TRUE;
+            case 'f':
+                literal("alse");
+                return peeked = PEEKED_FALSE;
+            case 'n':
+                literal("ull");
+                return peeked = PEEKED_NULL;
+            default:
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw syntaxError("Unexpected character");
+                }
+                numberStart = pos - 1;
+                while (pos < limit && isNumberPart(byteAt(pos))) {
+                    pos++;
+                }
+                return peeked = PEEKED_NUMBER;
+        }
+    }
+
+    private static boolean isNumberPart(byte b) {
+        return b >= '0' && b <= '9' || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    private void literal(@NotNull String rest) throws IOException {
+        final int length = rest.length();
+        if (limit - pos < length) {
+            throw new EOFException("End of input at " + pos);
+        }
+        for (int i = 0; i < length; i++) {
+            if (byteAt(pos + i) != rest.charAt(i)) {
+                throw syntaxError("Unexpected literal");
+            }
+        }
+        pos += length;
+    }
+
+    private int skipWhitespace() {
+        while (pos < limit) {
+            final byte b = byteAt(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private int nextNonWhitespace() throws EOFException {
+        if (skipWhitespace() == limit) {
+            throw new EOFException("End of input at " + pos);
+        }
+        return byteAt(pos++) & 0xff;
+    }
+
+    private byte byteAt(int index) {
+        final byte[] array = this.array;
+        return array != null ? array[arrayOffset + index] : buffer.get(index);
+    }
+
+    /**
+     * Reads string after its opening quote. Ascii strings without escapes are copied as they are,
+     * and names of them are looked up in {@link #NAMES} first.
+     */
+    @NotNull
+    private String readString(boolean name) throws IOException {
+        final int start = pos;
+        int hash = 0;
+        int i = start;
+        while (true) {
+            if (i == limit) {
+                throw new EOFException("Unterminated string at " + start);
+            }
+            final byte b = byteAt(i);
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\' || b < 0) {
+                return decodeString(start);
+            }
+            hash = 31 * hash + b;
+            i++;
+        }
+        pos = i + 1;
+
+        final int length = i - start;
+        if (name) {
+            final String known = known(hash, start, length);
+            if (known != null) {
+                return known;
+            }
+        }
+        return ascii(start, i);
+    }
+
+    @Nullable
+    private String known(int hash, int start, int length) {
+        for (int i = hash & NAMES.length - 1; NAMES[i] != null; i = i + 1 & NAMES.length - 1) {
+            final String name = NAMES[i];
+            if (name.length() == length && matches(name, start)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(@NotNull String name, int start) {
+        final int length = name.length();
+        for (int i = 0; i < length; i++) {
+            if (byteAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private String ascii(int start, int end) {
+        final int length = end - start;
+        final char[] chars = chars(length);
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) byteAt(start + i);
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Reads string with escapes or multi byte characters. Malformed UTF-8 sequence is decoded to
+     * replacement character, just like {@link java.io.InputStreamReader} does.
+     */
+    @NotNull
+    private String decodeString(int start) throws IOException {
+        int i = start;
+        int length = 0;
+        while (true) {
+            if (i == limit) {
+                throw new EOFException("Unterminated string at " + start);
+            }
+            final int b = byteAt(i++) & 0xff;
+            if (b == '"') {
+                break;
+            }
+            char[] chars = chars(length + 2);
+            if (b == '\\') {
+                if (i == limit) {
+                    throw new EOFException("Unterminated string at " + start);
+                }
+                final int escaped = byteAt(i++);
+                switch (escaped) {
+                    case 'u':
+                        if (limit - i < 4) {
+                            throw new EOFException("Unterminated escape at " + i);
+                        }
+                        chars[length++] = (char) (hex(i) << 12 | hex(i + 1) << 8 | hex(i + 2) << 4 | hex(i + 3));
+                        i += 4;
+                        break;
+                    case 'b':
+                        chars[length++] = '\b';
+                        break;
+                    case 'f':
+                        chars[length++] = '\f';
+                        break;
+                    case 'n':
+                        chars[length++] = '\n';
+                        break;
+                    case 'r':
+                        chars[length++] = '\r';
+                        break;
+                    case 't':
+                        chars[length++] = '\t';
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                    case '\'':
+                        chars[length++] = (char) escaped;
+                        break;
+                    default:
+                        pos = i;
+                        throw syntaxError("Invalid escape");
+                }
+
+            } else if (b < 0x80) {
+                chars[length++] = (char) b;
+
+            } else {
+                final int more;
+                int codePoint;
+                if (b >= 0xc2 && b <= 0xdf) {
+                    more = 1;
+                    codePoint = b & 0x1f;
+                } else if (b >= 0xe0 && b <= 0xef) {
+                    more = 2;
+                    codePoint = b & 0x0f;
+                } else if (b >= 0xf0 && b <= 0xf4) {
+                    more = 3;
+                    codePoint = b & 0x07;
+                } else {
+                    more = 0;
+                    codePoint = -1;
+                }
+                for (int k = 0; k < more && codePoint >= 0; k++) {
+                    final int next = i < limit ? byteAt(i) : 0;
+                    if ((next & 0xc0) != 0x80) {
+                        codePoint = -1;
+                        break;
+                    }
+                    codePoint = codePoint << 6 | next & 0x3f;
+                    i++;
+                }
+                if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT ||
+                        codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE ||
+                        more == 2 && codePoint < 0x800 || more == 3 && codePoint < 0x10000) {
+                    chars[length++] = '\ufffd';
+                } else if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    chars[length++] = Character.highSurrogate(codePoint);
+                    chars[length++] = Character.lowSurrogate(codePoint);
+                } else {
+                    chars[length++] = (char) codePoint;
+                }
+            }
+        }
+        pos = i;
+        return new String(chars, 0, length);
+    }
+
+    private int hex(int index) {
+        final byte b = byteAt(index);
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        pos = index;
+        throw syntaxError("Invalid escape");
+    }
+
+    private void skipString() throws EOFException {
+        int i = pos;
+        while (true) {
+            if (i >= limit) {
+                throw new EOFException("Unterminated string at " + pos);
+            }
+            final byte b = byteAt(i++);
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                i++;
+            }
+        }
+        pos = i;
+    }
+
+    private int parseInt(int start, int end) {
+        int i = start;
+        final boolean negative = byteAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("Expected an int but was " + ascii(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            final byte b = byteAt(i);
+            if (b < '0' || b > '9' || value > Integer.MAX_VALUE) {
+                // fraction, exponent or overflow
+                return parseInt(ascii(start, end));
+            }
+            value = value * 10 + (b - '0');
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Expected an int but was " + ascii(start, end));
+        }
+        return (int) value;
+    }
+
+    private static int parseInt(@NotNull String value) {
+        try {
+            return Integer.parseInt(value);
+
+        } catch (NumberFormatException ignore) {
+            final double d = Double.parseDouble(value);
+            final int result = (int) d;
+            if (result != d) {
+                throw new NumberFormatException("Expected an int but was " + value);
+            }
+            return result;
+        }
+    }
+
+    @NotNull
+    private char[] chars(int length) {
+        if (chars.length < length) {
+            chars = Arrays.copyOf(chars, Math.max(length, chars.length * 2));
+        }
+        return chars;
+    }
+}
@@ -3,9 +3,24 @@ package io.github.eterverda.playless.common.json;
 public class JsonConstants {
     // DECOR
     public static final String DECOR_PLAYLESS_REPOSITORY_V1 = "playless-repository-v1";
+    public static final String DECOR_PLAYLESS_DELTA_V1 = "playless-delta-v1";
+    public static final String DECOR_PLAYLESS_MANIFEST_V1 = "playless-manifest-v1";
 
     // root elements
     public static final String DISTRIBUTIONS = "distributions";
+    public static final String SEQ = "seq";
+
+    // delta root elements
+    public static final String ADDED = "added";
+    public static final String REMOVED = "removed";
+    public static final String SINCE = "since";
+
+    // manifest root elements
+    public static final String SHARDS = "shards";
+
+    // shard elements
+    public static final String CHECKSUM = "checksum";
+    public static final String SIZE = "size";
 
     // root distribution elements
     public static final String APPLICATION_ID = "applicationId";
@@ -1,13 +1,18 @@
 package io.github.eterverda.playless.common.json;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import io.github.eterverda.playless.common.Dist;
-import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.DistSelector;
+import io.github.eterverda.playless.common.DistVisitor;
+import io.github.eterverda.playless.common.Link;
 import io.github.eterverda.playless.common.util.TimestampUtils;
 import io.github.eterverda.util.checksum.Checksum;
 
@@ -18,25 +23,89 @@ public class JsonDistFactory {
         return INSTANCE;
     }
 
+    private static final DistVisitor SKIP = new DistVisitor() {
+        @Override
+        public void seq(long seq) {
+        }
+
+        @Override
+        public void meta(@NotNull String key, @NotNull String value) {
+        }
+
+        @Override
+        public void link(@NotNull Link link) {
+        }
+
+        @Override
+        public void dist(@NotNull Dist dist) {
+        }
+    };
+
+    /**
+     * Reads just dists of repository document, other properties of repository are skipped.
+     */
     @NotNull
     public Dist[] loadDecorated(JsonReader in) throws IOException {
-        final Repo repo = JsonRepoFactory.getInstance().loadDecorated(in);
-        final Set<Dist> dists = repo.dists;
+        return loadDecorated(in, null);
+    }
+
+    /**
+     * Reads just dists of repository document selected by selector, dists not selected are
+     * skipped as soon as selector rejects them.
+     */
+    @NotNull
+    public Dist[] loadDecorated(JsonReader in, @Nullable DistSelector selector) throws IOException {
+        final List<Dist> dists = new ArrayList<>();
+        final Iterator<Dist> iterator = JsonRepoFactory.getInstance().iterateDecorated(in, selector, SKIP);
+        try {
+            while (iterator.hasNext()) {
+                dists.add(iterator.next());
+            }
+
+        } catch (JsonDistIterator.IterationException e) {
+            throw e.getCause();
+        }
         return dists.toArray(new Dist[dists.size()]);
     }
 
     @NotNull
     public Dist load(JsonReader in) throws IOException {
+        //noinspection ConstantConditions
+        return load(in, null);
+    }
+
+    /**
+     * Reads dist if selector selects it, or just skips it otherwise. Selector is asked as soon as
+     * application id and version are read, and they are written before the rest of dist.
+     *
+     * @return {@code null} if dist is not selected
+     */
+    @Nullable
+    public Dist load(JsonReader in, @Nullable DistSelector selector) throws IOException {
         final Dist.Editor result = new Dist.Editor();
+        String applicationId = null;
+        int versionCode = 0;
+        boolean versioned = false;
 
         in.beginObject();
         while (in.hasNext()) {
             switch (in.nextName()) {
                 case JsonConstants.APPLICATION_ID:
-                    result.applicationId(in.nextString());
+                    applicationId = in.nextString();
+                    result.applicationId(applicationId);
+                    if (selector != null && (!selector.selectsApplication(applicationId) ||
+                            versioned && !selector.selectsVersion(applicationId, versionCode))) {
+                        skipRest(in);
+                        return null;
+                    }
                     break;
                 case JsonConstants.VERSION:
-                    loadVersion(in, result);
+                    versionCode = loadVersion(in, result);
+                    versioned = true;
+                    if (selector != null && applicationId != null && !selector.selectsVersion(applicationId, versionCode)) {
+                        skipRest(in);
+                        return null;
+                    }
                     break;
                 case JsonConstants.FILTER:
                     loadFilter(in, result);
@@ -54,16 +123,34 @@ public class JsonDistFactory {
         }
         in.endObject();
 
+        if (selector != null && !versioned && applicationId != null && !selector.selectsVersion(applicationId, versionCode)) {
+            return null;
+        }
+
         return result.build();
     }
 
-    private void loadVersion(JsonReader in, Dist.Editor result) throws IOException {
+    private static void skipRest(JsonReader in) throws IOException {
+        while (in.hasNext()) {
+            in.nextName();
+            in.skipValue();
+        }
+        in.endObject();
+    }
+
+    /**
+     * @return version code read
+     */
+    private int loadVersion(JsonReader in, Dist.Editor result) throws IOException {
+        int versionCode = 0;
+
         in.beginObject();
 
         while (in.hasNext()) {
             switch (in.nextName()) {
                 case JsonConstants.VERSION_CODE:
-                    result.versionCode(in.nextInt());
+                    versionCode = in.nextInt();
+                    result.versionCode(versionCode);
                     break;
                 case JsonConstants.TIMESTAMP:
                     result.timestamp(TimestampUtils.zulu(in.nextString()));
@@ -84,6 +171,8 @@ public class JsonDistFactory {
         }
 
         in.endObject();
+
+        return versionCode;
     }
 
     private void loadFilter(JsonReader in, Dist.Editor result) throws IOException {
@@ -101,7 +190,7 @@ public class JsonDistFactory {
                     result.requiresSmallestWidthDp(in.nextInt());
                     break;
                 case JsonConstants.USES_GL_ES:
-                    result.usesGlEs(Integer.parseInt(in.nextString().substring(2)));
+                    result.usesGlEs(Integer.parseInt(in.nextString().substring(2), 0x10));
                     break;
                 case JsonConstants.SUPPORTS_SCREENS:
                     loadSupportsScreens(in, result);
@@ -240,7 +329,7 @@ public class JsonDistFactory {
         in.endObject();
     }
 
-    private static Checksum createChecksum(String checksumStr) {
+    static Checksum createChecksum(String checksumStr) {
         try {
             final int indexOfColon = checksumStr.indexOf(':');
             final String algorithm = checksumStr.substring(0, indexOfColon);
@@ -0,0 +1,144 @@
+package io.github.eterverda.playless.common.json;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.DistSelector;
+import io.github.eterverda.playless.common.DistVisitor;
+
+/**
+ * Dists of repository document read one at a time, see {@link JsonRepoFactory#iterate}. Dist is
+ * read ahead by {@link #hasNext()}, dists not selected are skipped there. Reader is consumed to
+ * the end of document once iteration is over. Failure of reader is thrown as
+ * {@link IterationException}.
+ */
+@NotThreadSafe
+public final class JsonDistIterator implements Iterator<Dist> {
+    private static final int PROPERTIES = 0;
+    private static final int DISTS = 1;
+    private static final int DONE = 2;
+
+    private final JsonReader in;
+    @Nullable
+    private final DistSelector selector;
+    private final DistVisitor visitor;
+    private final boolean decorated;
+
+    private int state = -1;
+    @Nullable
+    private Dist next;
+
+    JsonDistIterator(JsonReader in, @Nullable DistSelector selector, DistVisitor visitor, boolean decorated) {
+        this.in = in;
+        this.selector = selector;
+        this.visitor = visitor;
+        this.decorated = decorated;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && state != DONE) {
+            try {
+                next = advance();
+
+            } catch (IOException e) {
+                state = DONE;
+                throw new IterationException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Dist next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Dist result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return next dist selected or {@code null} at the end of document
+     */
+    @Nullable
+    private Dist advance() throws IOException {
+        if (state < 0) {
+            in.beginObject();
+            state = PROPERTIES;
+        }
+        while (true) {
+            if (state == DISTS) {
+                while (in.hasNext()) {
+                    final Dist result = JsonDistFactory.getInstance().load(in, selector);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                in.endArray();
+                state = PROPERTIES;
+            }
+            if (!in.hasNext()) {
+                in.endObject();
+                if (decorated) {
+                    in.endObject();
+                }
+                state = DONE;
+                return null;
+            }
+            switch (in.nextName()) {
+                case JsonConstants.DISTRIBUTIONS:
+                    in.beginArray();
+                    state = DISTS;
+                    break;
+
+                case JsonConstants.LINKS:
+                    JsonRepoFactory.loadLinks(in, visitor);
+                    break;
+
+                case JsonConstants.META:
+                    JsonRepoFactory.loadMeta(in, visitor);
+                    break;
+
+                case JsonConstants.SEQ:
+                    visitor.seq(Long.parseLong(in.nextString()));
+                    break;
+
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Unchecked wrapper of {@link IOException} thrown by reader, as {@link Iterator} cannot throw
+     * checked exceptions.
+     */
+    public static final class IterationException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        IterationException(@NotNull IOException cause) {
+            super(cause);
+        }
+
+        @NotNull
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package io.github.eterverda.playless.common.json;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.DistSelector;
+import io.github.eterverda.playless.common.DistVisitor;
 import io.github.eterverda.playless.common.Link;
 import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.RepoDelta;
+import io.github.eterverda.playless.common.RepoManifest;
+import io.github.eterverda.util.checksum.Checksum;
 
 public class JsonRepoFactory {
     public static final JsonRepoFactory INSTANCE = new JsonRepoFactory();
@@ -32,20 +39,204 @@ public class JsonRepoFactory {
     @NotNull
     public Repo load(JsonReader in) throws IOException {
         final Repo.Editor result = new Repo.Editor();
+        visit(in, result);
+        return result.build();
+    }
 
+    /**
+     * Reads repository document passing every dist to visitor as soon as it is read.
+     */
+    public void visitDecorated(JsonReader in, DistVisitor visitor) throws IOException {
+        in.beginObject();
+        final String decor = in.nextName();
+        if (!decor.equals(JsonConstants.DECOR_PLAYLESS_REPOSITORY_V1)) {
+            throw new IllegalArgumentException("Expected " + JsonConstants.DECOR_PLAYLESS_REPOSITORY_V1);
+        }
+
+        visit(in, visitor);
+
+        in.endObject();
+    }
+
+    public void visit(JsonReader in, DistVisitor visitor) throws IOException {
         in.beginObject();
         while (in.hasNext()) {
             switch (in.nextName()) {
                 case JsonConstants.DISTRIBUTIONS:
-                    loadDists(in, result);
+                    visitDists(in, visitor);
                     break;
 
                 case JsonConstants.LINKS:
-                    loadLinks(in, result);
+                    loadLinks(in, visitor);
                     break;
 
                 case JsonConstants.META:
-                    loadMeta(in, result);
+                    loadMeta(in, visitor);
+                    break;
+
+                case JsonConstants.SEQ:
+                    visitor.seq(Long.parseLong(in.nextString()));
+                    break;
+
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+    }
+
+    /**
+     * Iterates dists of repository document reading them one at a time. Properties of repository
+     * are passed to visitor as they are met, so those written before dists are there once the
+     * first dist is got.
+     */
+    @NotNull
+    public JsonDistIterator iterateDecorated(JsonReader in, DistVisitor visitor) throws IOException {
+        return iterateDecorated(in, null, visitor);
+    }
+
+    /**
+     * Iterates just dists selected by selector, others are skipped without being built.
+     */
+    @NotNull
+    public JsonDistIterator iterateDecorated(JsonReader in, @Nullable DistSelector selector, DistVisitor visitor) throws IOException {
+        in.beginObject();
+        final String decor = in.nextName();
+        if (!decor.equals(JsonConstants.DECOR_PLAYLESS_REPOSITORY_V1)) {
+            throw new IllegalArgumentException("Expected " + JsonConstants.DECOR_PLAYLESS_REPOSITORY_V1);
+        }
+
+        return new JsonDistIterator(in, selector, visitor, true);
+    }
+
+    @NotNull
+    public JsonDistIterator iterate(JsonReader in, DistVisitor visitor) {
+        return iterate(in, null, visitor);
+    }
+
+    @NotNull
+    public JsonDistIterator iterate(JsonReader in, @Nullable DistSelector selector, DistVisitor visitor) {
+        return new JsonDistIterator(in, selector, visitor, false);
+    }
+
+    /**
+     * Applies delta written after repository document to it. Removed dists are removed before
+     * added ones are added no matter in which order they are written.
+     */
+    public void loadDeltaDecorated(JsonReader in, Repo.Editor result) throws IOException {
+        loadDeltaDecorated(in).apply(result);
+    }
+
+    /**
+     * Applies diff made since cached repository, so that only changes are transferred and parsed.
+     *
+     * @throws IllegalArgumentException if diff is made since other sequence number
+     */
+    @NotNull
+    public Repo applyDeltaDecorated(JsonReader in, Repo cached) throws IOException {
+        return loadDeltaDecorated(in).applyTo(cached);
+    }
+
+    @NotNull
+    public RepoDelta loadDeltaDecorated(JsonReader in) throws IOException {
+        in.beginObject();
+        final String decor = in.nextName();
+        if (!decor.equals(JsonConstants.DECOR_PLAYLESS_DELTA_V1)) {
+            throw new IllegalArgumentException("Expected " + JsonConstants.DECOR_PLAYLESS_DELTA_V1);
+        }
+
+        final RepoDelta result = loadDelta(in);
+
+        in.endObject();
+
+        return result;
+    }
+
+    @NotNull
+    public RepoDelta loadDelta(JsonReader in) throws IOException {
+        final Repo.Editor added = new Repo.Editor();
+        final Repo.Editor removed = new Repo.Editor();
+        long since = RepoDelta.UNKNOWN;
+        long seq = RepoDelta.UNKNOWN;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case JsonConstants.ADDED:
+                    loadDists(in, added);
+                    break;
+
+                case JsonConstants.REMOVED:
+                    loadDists(in, removed);
+                    break;
+
+                case JsonConstants.SINCE:
+                    since = Long.parseLong(in.nextString());
+                    break;
+
+                case JsonConstants.SEQ:
+                    seq = Long.parseLong(in.nextString());
+                    break;
+
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+
+        return new RepoDelta(since, seq, added.build().dists, removed.build().dists);
+    }
+
+    @NotNull
+    public RepoManifest loadManifestDecorated(JsonReader in) throws IOException {
+        in.beginObject();
+        final String decor = in.nextName();
+        if (!decor.equals(JsonConstants.DECOR_PLAYLESS_MANIFEST_V1)) {
+            throw new IllegalArgumentException("Expected " + JsonConstants.DECOR_PLAYLESS_MANIFEST_V1);
+        }
+
+        final RepoManifest result = loadManifest(in);
+
+        in.endObject();
+
+        return result;
+    }
+
+    @NotNull
+    public RepoManifest loadManifest(JsonReader in) throws IOException {
+        final RepoManifest.Editor result = new RepoManifest.Editor();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case JsonConstants.SHARDS:
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        result.shard(loadShard(in));
+                    }
+                    in.endArray();
+                    break;
+
+                case JsonConstants.LINKS:
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        result.link(loadLink(in));
+                    }
+                    in.endArray();
+                    break;
+
+                case JsonConstants.META:
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        result.meta(in.nextName(), in.nextString());
+                    }
+                    in.endObject();
+                    break;
+
+                case JsonConstants.SEQ:
+                    result.seq(Long.parseLong(in.nextString()));
                     break;
 
                 default:
@@ -59,27 +250,31 @@ public class JsonRepoFactory {
     }
 
     public void loadDists(JsonReader in, Repo.Editor result) throws IOException {
+        visitDists(in, result);
+    }
+
+    private void visitDists(JsonReader in, DistVisitor visitor) throws IOException {
         final JsonDistFactory factory = JsonDistFactory.getInstance();
 
         in.beginArray();
         while (in.hasNext()) {
-            result.dist(factory.load(in));
+            visitor.dist(factory.load(in));
         }
         in.endArray();
     }
 
-
-    private void loadLinks(JsonReader in, Repo.Editor result) throws IOException {
+    static void loadLinks(JsonReader in, DistVisitor visitor) throws IOException {
         in.beginArray();
         while (in.hasNext()) {
-            result.link(loadLink(in));
+            visitor.link(loadLink(in));
         }
         in.endArray();
     }
-    private void loadMeta(JsonReader in, Repo.Editor result) throws IOException {
+
+    static void loadMeta(JsonReader in, DistVisitor visitor) throws IOException {
         in.beginObject();
         while (in.hasNext()) {
-            result.meta(in.nextName(), in.nextString());
+            visitor.meta(in.nextName(), in.nextString());
         }
         in.endObject();
     }
@@ -114,4 +309,49 @@ public class JsonRepoFactory {
 
         return new Link(rel, href);
     }
+
+    @NotNull
+    static RepoManifest.Shard loadShard(JsonReader in) throws IOException {
+        String applicationId = null;
+        String href = null;
+        Checksum checksum = null;
+        long size = -1;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case JsonConstants.APPLICATION_ID:
+                    applicationId = in.nextString();
+                    break;
+                case JsonConstants.HREF:
+                    href = in.nextString();
+                    break;
+                case JsonConstants.CHECKSUM:
+                    checksum = JsonDistFactory.createChecksum(in.nextString());
+                    break;
+                case JsonConstants.SIZE:
+                    size = Long.parseLong(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+
+        if (applicationId == null) {
+            throw new IllegalArgumentException("applicationId not found for shard");
+        }
+        if (href == null) {
+            throw new IllegalArgumentException("href not found for shard " + applicationId);
+        }
+        if (checksum == null) {
+            throw new IllegalArgumentException("checksum not found for shard " + applicationId);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("size not found for shard " + applicationId);
+        }
+
+        return new RepoManifest.Shard(applicationId, href, checksum, size);
+    }
 }
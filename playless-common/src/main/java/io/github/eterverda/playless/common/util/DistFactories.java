@@ -3,7 +3,6 @@ package io.github.eterverda.playless.common.util;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.ZipEntry;
@@ -17,8 +16,7 @@ public final class DistFactories {
 
     @NotNull
     public static Checksum loadFingerprint(@NotNull File file) throws IOException {
-        final FileInputStream in = new FileInputStream(file);
-        return checksum(in);
+        return Checksum.sha1(file);
     }
 
     @NotNull
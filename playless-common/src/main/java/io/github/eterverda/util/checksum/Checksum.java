@@ -6,8 +6,12 @@ import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
@@ -18,7 +22,7 @@ import static io.github.eterverda.util.checksum.ChecksumUtils.hexToBytes;
 
 @Immutable
 @ThreadSafe
-public final class Checksum {
+public final class Checksum implements Comparable<Checksum> {
     public static final String ALGORITHM_SHA_1 = "SHA-1";
 
     @NotNull
@@ -43,6 +47,15 @@ public final class Checksum {
         }
     }
 
+    public Checksum(@NotNull String algorithm, @NotNull byte[] value) throws NoSuchAlgorithmException {
+        this.algorithm = canonicalAlgorithm(algorithm);
+        this.value = value.clone();
+
+        if (value.length != digestLength(this.algorithm)) {
+            throw new IllegalArgumentException("Unexpected digest length " + value.length + " for algorithm " + algorithm);
+        }
+    }
+
     private Checksum(@SuppressWarnings("unused") boolean safe, @NotNull String algorithm, @NotNull byte[] value) {
         this.algorithm = algorithm;
         this.value = value;
@@ -95,6 +108,26 @@ public final class Checksum {
         return result;
     }
 
+    /**
+     * Orders by algorithm and then by value as unsigned bytes.
+     */
+    @Override
+    public int compareTo(@NotNull Checksum that) {
+        final int algorithms = algorithm.compareTo(that.algorithm);
+        if (algorithms != 0) {
+            return algorithms;
+        }
+        final byte[] a = value;
+        final byte[] b = that.value;
+        final int length = a.length < b.length ? a.length : b.length;
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+        }
+        return a.length - b.length;
+    }
+
     @Override
     public int hashCode() {
         return (value[0] & 0xff) << 24 | (value[1] & 0xff) << 16 | (value[2] & 0xff) << 8 | (value[3] & 0xff);
@@ -125,6 +158,23 @@ public final class Checksum {
         return new Checksum(true, canonicalAlgorithm(algorithm), digest(algorithm, in));
     }
 
+    public static Checksum make(String algorithm, FileChannel channel) throws NoSuchAlgorithmException, IOException {
+        return new Checksum(true, canonicalAlgorithm(algorithm), digest(algorithm, channel));
+    }
+
+    /**
+     * Completes digest computation and wraps its result. Digest is reset after this call.
+     */
+    @NotNull
+    public static Checksum make(@NotNull MessageDigest digest) {
+        final String algorithm = digest.getAlgorithm();
+        try {
+            return new Checksum(true, canonicalAlgorithm(algorithm), digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(algorithm + " should be available as there is a digest for it");
+        }
+    }
+
     @NotNull
     public static Checksum sha1(@NotNull byte[] data) {
         try {
@@ -143,6 +193,29 @@ public final class Checksum {
         }
     }
 
+    @NotNull
+    public static Checksum sha1(@NotNull FileChannel channel) throws IOException {
+        try {
+            return make(ALGORITHM_SHA_1, channel);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-1 should be always available");
+        }
+    }
+
+    @NotNull
+    public static Checksum sha1(@NotNull File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            return sha1(in.getChannel());
+
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
     public static Checksum xor(Checksum a, Checksum b) {
         if (a == null) {
             return b;
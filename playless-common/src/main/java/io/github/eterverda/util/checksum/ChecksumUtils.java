@@ -7,6 +7,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
@@ -18,7 +20,17 @@ import static io.github.eterverda.util.checksum.Checksum.ALGORITHM_SHA_1;
 public final class ChecksumUtils {
     public static final String SHORT_ALGORITHM_SHA1 = "sha1";
 
+    /**
+     * Files smaller than that are not worth mapping, larger ones are read through direct buffer
+     * so that address space is not exhausted until mapped regions are collected.
+     */
+    private static final long MIN_MAPPED_SIZE = 64 * 1024;
+    private static final long MAX_MAPPED_SIZE = 256 * 1024 * 1024;
+
+    private static final int DIRECT_BUF_SIZE = 1024 * 1024;
+
     private static AtomicReference<byte[]> BUF = new AtomicReference<>();
+    private static AtomicReference<ByteBuffer> DIRECT_BUF = new AtomicReference<>();
     private static AtomicReference<MessageDigest> DIGEST = new AtomicReference<>();
 
     private ChecksumUtils() {
@@ -54,6 +66,39 @@ public final class ChecksumUtils {
         return result;
     }
 
+    /**
+     * Digests whole content of channel regardless of its position. Medium sized files are memory
+     * mapped, others are read through pooled direct buffer, so that no data is copied to heap.
+     */
+    @NotNull
+    public static byte[] digest(@NotNull String algorithm, @NotNull FileChannel channel) throws NoSuchAlgorithmException, IOException {
+        final MessageDigest digest = obtainDigest(algorithm);
+
+        final long size = channel.size();
+        if (size >= MIN_MAPPED_SIZE && size <= MAX_MAPPED_SIZE) {
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+
+        } else {
+            final ByteBuffer buf = obtainDirectBuf();
+
+            long position = 0;
+            int len;
+            while ((len = channel.read(buf, position)) != -1) {
+                position += len;
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+
+            releaseDirectBuf(buf);
+        }
+
+        final byte[] result = digest.digest();
+
+        releaseDigest(digest);
+        return result;
+    }
+
     public static int digestLength(@NotNull String algorithm) throws NoSuchAlgorithmException {
         final MessageDigest digest = obtainDigest(algorithm);
 
@@ -188,6 +233,12 @@ public final class ChecksumUtils {
         return oldBuf != null ? oldBuf : new byte[8192];
     }
 
+    @NotNull
+    private static ByteBuffer obtainDirectBuf() {
+        final ByteBuffer oldBuf = DIRECT_BUF.getAndSet(null);
+        return oldBuf != null ? oldBuf : ByteBuffer.allocateDirect(DIRECT_BUF_SIZE);
+    }
+
     @NotNull
     private static MessageDigest obtainDigest(String algorithm) throws NoSuchAlgorithmException {
         final MessageDigest oldDigest = DIGEST.getAndSet(null);
@@ -198,6 +249,13 @@ public final class ChecksumUtils {
         BUF.set(buf);
     }
 
+    private static void releaseDirectBuf(@Nullable ByteBuffer buf) {
+        if (buf != null) {
+            buf.clear();
+        }
+        DIRECT_BUF.set(buf);
+    }
+
     private static void releaseDigest(@Nullable MessageDigest digest) {
         DIGEST.set(digest);
     }
@@ -0,0 +1,46 @@
+package io.github.eterverda.playless.common.json;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+public class ByteJsonReaderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void knownNamesAreConstants() throws IOException {
+        final ByteJsonReader reader = new ByteJsonReader(("{\"" + JsonConstants.VERSION_CODE + "\":1}").getBytes(UTF_8));
+        reader.beginObject();
+        Assert.assertSame(JsonConstants.VERSION_CODE, reader.nextName());
+    }
+
+    @Test
+    public void malformedUtf8IsReplaced() throws IOException {
+        final ByteJsonReader reader = new ByteJsonReader(new byte[]{'"', 'a', (byte) 0xc3, 'b', (byte) 0xff, '"'});
+        Assert.assertEquals("a\ufffdb\ufffd", reader.nextString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void otherTypeIsIllegalState() throws IOException {
+        new ByteJsonReader("[]".getBytes(UTF_8)).beginObject();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedIsIllegalArgument() throws IOException {
+        final ByteJsonReader reader = new ByteJsonReader("{\"a\" 1}".getBytes(UTF_8));
+        reader.beginObject();
+        reader.nextName();
+        reader.nextInt();
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedIsEof() throws IOException {
+        final ByteJsonReader reader = new ByteJsonReader("{\"a\":\"b".getBytes(UTF_8));
+        reader.beginObject();
+        reader.nextName();
+        reader.nextString();
+    }
+}
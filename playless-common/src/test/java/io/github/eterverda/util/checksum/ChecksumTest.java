@@ -2,16 +2,25 @@ package io.github.eterverda.util.checksum;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Random;
 
 import io.github.eterverda.junit.HashCodeAssert;
 
 public class ChecksumTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private static final String ALGORITHM_MD5 = "MD5";
 
     private static final byte[] EMPTY = {};
@@ -38,6 +47,28 @@ public class ChecksumTest {
         Assert.assertArrayEquals(EMPTY_SHA_1, checksum.getValue());
     }
 
+    @Test
+    public void testEmptyFileValue() throws IOException {
+        final Checksum checksum = Checksum.sha1(write(EMPTY));
+
+        Assert.assertArrayEquals(EMPTY_SHA_1, checksum.getValue());
+    }
+
+    @Test
+    public void testSomeFileValue() throws IOException {
+        final Checksum checksum = Checksum.sha1(write(SOME));
+
+        Assert.assertArrayEquals(SOME_SHA_1, checksum.getValue());
+    }
+
+    @Test
+    public void testMappedFileEqualsStream() throws IOException {
+        final byte[] data = new byte[1024 * 1024 + 17];
+        new Random(0).nextBytes(data);
+
+        Assert.assertEquals(Checksum.sha1(new ByteArrayInputStream(data)), Checksum.sha1(write(data)));
+    }
+
     @Test
     public void testSomeValue() {
         final Checksum checksum = Checksum.sha1(SOME);
@@ -68,6 +99,18 @@ public class ChecksumTest {
         Assert.assertEquals(stream, array);
     }
 
+    @Test
+    public void testSomeDigestEqualsSomeByteArray() throws NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(SOME);
+
+        final Checksum fromDigest = Checksum.make(digest);
+        final Checksum array = Checksum.sha1(SOME);
+
+        HashCodeAssert.assertEqualsHashCode(array, fromDigest);
+        Assert.assertEquals(SOME_SHA_1_STRING, fromDigest.toString());
+    }
+
     @Test
     public void testEmptyNotEqualsSome() {
         final Checksum empty = Checksum.sha1(EMPTY);
@@ -156,4 +199,12 @@ public class ChecksumTest {
     public static Checksum md5(InputStream in) throws IOException, NoSuchAlgorithmException {
         return Checksum.make(ALGORITHM_MD5, in);
     }
+
+    private File write(byte[] data) throws IOException {
+        final File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
 }
@@ -0,0 +1,108 @@
+package io.github.eterverda.playless.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.util.apk.ApkScanner;
+
+/**
+ * Time of interpreting one {@code aapt dump badging} output depending on number of localized
+ * labels, dispatching tokenizer versus matching of every regular expression against every line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BadgingDistFactoryBenchmark {
+    private static final String HEAD = "" +
+            "package: name='com.example.camera' versionCode='42' versionName='4.2-beta' platformBuildVersionName='5.0.1-1624448'\n" +
+            "sdkVersion:'9'\n" +
+            "maxSdkVersion:'21'\n" +
+            "targetSdkVersion:'21'\n" +
+            "uses-configuration: reqTouchScreen='3' reqKeyboardType='2' reqHardKeyboard='-1'\n" +
+            "uses-permission: name='android.permission.CAMERA'\n" +
+            "uses-permission: name='android.permission.ACCESS_FINE_LOCATION'\n" +
+            "uses-permission: name='android.permission.INTERNET'\n" +
+            "application-label:'Camera'\n";
+
+    private static final String TAIL = "" +
+            "application-icon-160:'res/drawable-mdpi-v4/icon.png'\n" +
+            "application-icon-240:'res/drawable-hdpi-v4/icon.png'\n" +
+            "application-icon-320:'res/drawable-xhdpi-v4/icon.png'\n" +
+            "application-icon-480:'res/drawable-xxhdpi-v4/icon.png'\n" +
+            "application: label='Camera' icon='res/drawable-mdpi-v4/icon.png'\n" +
+            "uses-library:'com.google.android.maps'\n" +
+            "launchable-activity: name='com.example.camera.CameraActivity'  label='' icon=''\n" +
+            "feature-group: label=''\n" +
+            "  uses-gl-es: '0x20000'\n" +
+            "  uses-feature-not-required: name='android.hardware.camera.autofocus'\n" +
+            "  uses-feature: name='android.hardware.camera'\n" +
+            "  uses-implied-feature: name='android.hardware.camera' reason='requested android.permission.CAMERA permission'\n" +
+            "  uses-feature: name='android.hardware.location'\n" +
+            "  uses-implied-feature: name='android.hardware.location' reason='requested android.permission.ACCESS_FINE_LOCATION permission'\n" +
+            "  uses-feature: name='android.hardware.location.gps'\n" +
+            "  uses-implied-feature: name='android.hardware.location.gps' reason='requested android.permission.ACCESS_FINE_LOCATION permission'\n" +
+            "  uses-feature: name='android.hardware.touchscreen'\n" +
+            "  uses-implied-feature: name='android.hardware.touchscreen' reason='default feature for all apps'\n" +
+            "supports-gl-texture:'GL_OES_compressed_ETC1_RGB8_texture'\n" +
+            "main\n" +
+            "other-activities\n" +
+            "supports-screens: 'small' 'normal' 'large' 'xlarge'\n" +
+            "supports-any-density: 'true'\n" +
+            "requires-smallest-width:'320'\n" +
+            "compatible-screens:'300/240','400/240'\n" +
+            "densities: '160' '240' '320' '480'\n" +
+            "native-code: 'armeabi-v7a' 'x86'\n";
+
+    @Param({"0", "100", "400"})
+    public int labels;
+
+    private final File file = new File("bench.apk");
+    private String badging;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder builder = new StringBuilder(HEAD);
+        final StringBuilder locales = new StringBuilder("locales: '--_--'");
+        for (int i = 0; i < labels; i++) {
+            final String locale = String.format(Locale.US, "%c%c-r%c%c", 'a' + i % 26, 'a' + i / 26 % 26, 'A' + i % 26, 'A' + i / 26 % 26);
+            builder.append("application-label-").append(locale).append(":'Camera ").append(locale).append("'\n");
+            locales.append(" '").append(locale).append('\'');
+        }
+        builder.append(TAIL).append(locales).append('\n');
+        badging = builder.toString();
+    }
+
+    @Benchmark
+    public Dist.Editor dispatch() throws IOException {
+        final Dist.Editor dist = new Dist.Editor();
+        BadgingDistFactory.loadTo(dist, new ApkScanner(file), new BufferedReader(new StringReader(badging)));
+        return dist;
+    }
+
+    @Benchmark
+    public Dist.Editor regex() throws IOException {
+        final Dist.Editor dist = new Dist.Editor();
+        new RegexBadgingDistFactory(new ApkScanner(file), dist).load(new BufferedReader(new StringReader(badging)));
+        return dist;
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.eterverda.playless.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.binary.BinaryRepoReader;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.binary.BinaryRepoDumper;
+import io.github.eterverda.playless.core.json.GsonJsonReader;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Loading the same repository from json and from binary index, both fully and just looking up
+ * version codes of a single application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BinaryRepoReaderBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1000", "10000"})
+    public int dists;
+
+    private File jsonFile;
+    private File binaryFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Repo.Editor repo = new Repo.Editor();
+        for (int i = 0; i < dists; i++) {
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId("com.example.app" + i / 10);
+            dist.versionCode(i % 10);
+            dist.timestamp(1400000000000L + i * 1000L);
+            dist.fingerprint(Checksum.sha1(new byte[]{(byte) i, (byte) (i >> 8)}));
+            dist.signatures(Checksum.sha1(new byte[]{(byte) (i / 10)}));
+            dist.minSdkVersion(9);
+            dist.usesGlEs(0x20000);
+            dist.supportsScreen("normal");
+            dist.supportsScreen("large");
+            dist.usesFeature("android.hardware.touchscreen");
+            dist.nativeCode("armeabi-v7a");
+            dist.link("download", "com.example.app" + i + ".apk");
+            repo.dist(dist.build());
+        }
+
+        jsonFile = File.createTempFile("playless-bench", ".json");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(jsonFile), UTF_8)) {
+            new JsonRepoDumper(out).writeDecorated(repo.build());
+        }
+        binaryFile = File.createTempFile("playless-bench", ".bin");
+        try (FileOutputStream out = new FileOutputStream(binaryFile)) {
+            new BinaryRepoDumper(out).write(repo.build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        jsonFile.delete();
+        //noinspection ResultOfMethodCallIgnored
+        binaryFile.delete();
+    }
+
+    @Benchmark
+    public Repo json() throws IOException {
+        try (Reader in = new InputStreamReader(new FileInputStream(jsonFile), UTF_8)) {
+            return JsonRepoFactory.getInstance().loadDecorated(new GsonJsonReader(new com.google.gson.stream.JsonReader(in)));
+        }
+    }
+
+    @Benchmark
+    public Repo binary() throws IOException {
+        return BinaryRepoReader.map(binaryFile).load();
+    }
+
+    @Benchmark
+    public int binaryLookup() throws IOException {
+        final BinaryRepoReader reader = BinaryRepoReader.map(binaryFile);
+        int result = 0;
+        for (int i = 0; i < reader.size(); i++) {
+            if (reader.applicationId(i).equals("com.example.app7")) {
+                result += reader.versionCode(i);
+            }
+        }
+        return result;
+    }
+}
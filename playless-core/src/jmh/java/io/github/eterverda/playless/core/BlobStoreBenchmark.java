@@ -0,0 +1,121 @@
+package io.github.eterverda.playless.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Time of storing a file into empty repository, stream pumped through heap buffer as a baseline
+ * versus {@link BlobStore} copying through channels or hard linking. Divide size by score to get
+ * throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BlobStoreBenchmark {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    @Param({"1", "100", "1024"})
+    public int megabytes;
+
+    private File file;
+    private Checksum fingerprint;
+    private File repoDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("playless-bench", ".apk");
+
+        final Random random = new Random(0);
+        final byte[] chunk = new byte[CHUNK_SIZE];
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < megabytes; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+        fingerprint = Checksum.sha1(file);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpRepo() throws IOException {
+        repoDir = Files.createTempDirectory(file.getParentFile().toPath(), "playless-bench").toFile();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownRepo() throws IOException {
+        Files.walkFileTree(repoDir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Benchmark
+    public File stream() throws IOException {
+        final File blob = new File(repoDir, "blob.apk");
+        try (FileInputStream in = new FileInputStream(file);
+             FileOutputStream out = new FileOutputStream(blob)) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return blob;
+    }
+
+    @Benchmark
+    public boolean copy() throws IOException {
+        final BlobStore blobs = new BlobStore(repoDir);
+        blobs.setLinking(false);
+        return blobs.store(file, fingerprint, "blob.apk");
+    }
+
+    @Benchmark
+    public boolean link() throws IOException {
+        return new BlobStore(repoDir).store(file, fingerprint, "blob.apk");
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.eterverda.playless.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Time of computing sha1 of a file (page cache is warm after the first iteration), stream pumped
+ * through small heap buffer versus file channel either mapped or read through direct buffer.
+ * Divide size by score to get throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChecksumBenchmark {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    @Param({"1", "100", "1024"})
+    public int megabytes;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("playless-bench", ".apk");
+
+        final Random random = new Random(0);
+        final byte[] chunk = new byte[CHUNK_SIZE];
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < megabytes; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Benchmark
+    public Checksum stream() throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return Checksum.sha1(in);
+        }
+    }
+
+    @Benchmark
+    public Checksum channel() throws IOException {
+        return Checksum.sha1(file);
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.DistSelector;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.json.JsonDistFactory;
+import io.github.eterverda.playless.core.json.GsonJsonReader;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Picking update of a single application from the whole repository, by building every dist and
+ * by skipping dists not selected. Run with {@code -prof gc} to compare allocation per index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DistSelectorBenchmark {
+    private static final String APPLICATION_ID = "com.example.app7";
+
+    @Param({"10000", "100000"})
+    public int dists;
+
+    private String json;
+
+    private final DistSelector selector = new DistSelector() {
+        @Override
+        public boolean selectsApplication(@NotNull String applicationId) {
+            return applicationId.equals(APPLICATION_ID);
+        }
+
+        @Override
+        public boolean selectsVersion(@NotNull String applicationId, int versionCode) {
+            return versionCode > 5 && applicationId.equals(APPLICATION_ID);
+        }
+    };
+
+    @Setup
+    public void setUp() throws IOException {
+        final Repo.Editor repo = new Repo.Editor();
+        for (int i = 0; i < dists; i++) {
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId("com.example.app" + i / 10);
+            dist.versionCode(i % 10);
+            dist.timestamp(1400000000000L + i * 1000L);
+            dist.fingerprint(Checksum.sha1(new byte[]{(byte) i, (byte) (i >> 8), (byte) (i >> 16)}));
+            dist.signatures(Checksum.sha1(new byte[]{(byte) (i / 10)}));
+            dist.minSdkVersion(9);
+            dist.usesGlEs(0x20000);
+            dist.supportsScreen("normal");
+            dist.supportsScreen("large");
+            dist.usesFeature("android.hardware.touchscreen");
+            dist.nativeCode("armeabi-v7a");
+            dist.link("download", "com.example.app" + i + ".apk");
+            dist.meta("label", "Example " + i / 10);
+            repo.dist(dist.build());
+        }
+
+        final StringWriter out = new StringWriter();
+        new JsonRepoDumper(out).writeDecorated(repo.build());
+        json = out.toString();
+    }
+
+    @Benchmark
+    public Dist[] all() throws IOException {
+        return JsonDistFactory.getInstance().loadDecorated(json());
+    }
+
+    @Benchmark
+    public Dist[] selected() throws IOException {
+        return JsonDistFactory.getInstance().loadDecorated(json(), selector);
+    }
+
+    private GsonJsonReader json() {
+        return new GsonJsonReader(new com.google.gson.stream.JsonReader(new StringReader(json)));
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.eterverda.playless.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.json.ByteJsonReader;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.json.GsonJsonReader;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Loading json index through gson adapter and through byte reader, both from bytes in memory
+ * and from memory mapped file. Android adapter needs {@code android.util.JsonReader}, which is
+ * there on device only, so it is not measured here. Dists loaded per second are {@code dists}
+ * times operations per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonReaderBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"10000"})
+    public int dists;
+
+    private byte[] bytes;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Repo.Editor repo = new Repo.Editor();
+        for (int i = 0; i < dists; i++) {
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId("com.example.app" + i / 10);
+            dist.versionCode(i % 10);
+            dist.timestamp(1400000000000L + i * 1000L);
+            dist.fingerprint(Checksum.sha1(new byte[]{(byte) i, (byte) (i >> 8), (byte) (i >> 16)}));
+            dist.signatures(Checksum.sha1(new byte[]{(byte) (i / 10)}));
+            dist.minSdkVersion(9);
+            dist.usesGlEs(0x20000);
+            dist.supportsScreen("normal");
+            dist.supportsScreen("large");
+            dist.usesFeature("android.hardware.touchscreen");
+            dist.nativeCode("armeabi-v7a");
+            dist.link("download", "com.example.app" + i + ".apk");
+            dist.meta("label", "Example " + i / 10);
+            repo.dist(dist.build());
+        }
+
+        file = File.createTempFile("playless-bench", ".json");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            new JsonRepoDumper(out).writeDecorated(repo.build());
+        }
+        bytes = Files.readAllBytes(file.toPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Benchmark
+    public Repo gson() throws IOException {
+        final InputStreamReader in = new InputStreamReader(new ByteArrayInputStream(bytes), UTF_8);
+        return JsonRepoFactory.getInstance().loadDecorated(new GsonJsonReader(new com.google.gson.stream.JsonReader(in)));
+    }
+
+    @Benchmark
+    public Repo bytes() throws IOException {
+        return JsonRepoFactory.getInstance().loadDecorated(new ByteJsonReader(bytes));
+    }
+
+    @Benchmark
+    public Repo mapped() throws IOException {
+        return JsonRepoFactory.getInstance().loadDecorated(ByteJsonReader.map(file));
+    }
+}
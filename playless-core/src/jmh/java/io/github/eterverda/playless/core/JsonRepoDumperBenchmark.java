@@ -0,0 +1,91 @@
+package io.github.eterverda.playless.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Writing repository to stream the way {@code playless dump} writes it to stdout, both compact
+ * and pretty printed. Dists written per second are {@code dists} times operations per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonRepoDumperBenchmark {
+    @Param({"10000"})
+    public int dists;
+
+    @Param({"false", "true"})
+    public boolean pretty;
+
+    private Repo repo;
+
+    @Setup
+    public void setUp() {
+        final Repo.Editor repo = new Repo.Editor();
+        for (int i = 0; i < dists; i++) {
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId("com.example.app" + i / 10);
+            dist.versionCode(i % 10);
+            dist.timestamp(1400000000000L + i * 1000L);
+            dist.fingerprint(Checksum.sha1(new byte[]{(byte) i, (byte) (i >> 8), (byte) (i >> 16)}));
+            dist.signatures(Checksum.sha1(new byte[]{(byte) (i / 10)}));
+            dist.minSdkVersion(9);
+            dist.usesGlEs(0x20000);
+            dist.supportsScreen("normal");
+            dist.supportsScreen("large");
+            dist.usesFeature("android.hardware.touchscreen");
+            dist.nativeCode("armeabi-v7a");
+            dist.link("download", "com.example.app" + i + ".apk");
+            dist.meta("label", "Example " + i / 10);
+            repo.dist(dist.build());
+        }
+        this.repo = repo.build();
+    }
+
+    @Benchmark
+    public long dump() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        final JsonRepoDumper dumper = new JsonRepoDumper(out);
+        dumper.setPrettyPrint(pretty);
+        dumper.writeDecorated(repo);
+        return out.count;
+    }
+
+    /**
+     * Sink counting bytes written, like stdout redirected to {@code /dev/null}.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
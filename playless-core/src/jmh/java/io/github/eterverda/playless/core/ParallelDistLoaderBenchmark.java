@@ -0,0 +1,99 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.util.DistFactories;
+
+/**
+ * Wall-clock time of loading a batch of 40 files (same as grade&times;abi matrix of a large
+ * release) depending on number of jobs. Each file is hashed the same way real apks are, so the
+ * benchmark is CPU and IO bound like ingestion without aapt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParallelDistLoaderBenchmark {
+    private static final int FILES = 40;
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int jobs;
+
+    private File dir;
+    private List<File> files;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = File.createTempFile("playless-bench", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+
+        final Random random = new Random(0);
+        final byte[] data = new byte[FILE_SIZE];
+
+        files = new ArrayList<>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            random.nextBytes(data);
+
+            final File file = new File(dir, "bench-" + i + ".apk");
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(data);
+            }
+            files.add(file);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : files) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    @Benchmark
+    public List<Dist> loadAll() throws IOException {
+        return new ParallelDistLoader(HashingDistLoader.INSTANCE, jobs).loadAll(files);
+    }
+
+    private static final class HashingDistLoader implements DistLoader {
+        static final DistLoader INSTANCE = new HashingDistLoader();
+
+        @NotNull
+        @Override
+        public Dist load(@NotNull File file) throws IOException {
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId(file.getName());
+            dist.timestamp(file.lastModified());
+            dist.fingerprint(DistFactories.loadFingerprint(file));
+            return dist.build();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.eterverda.playless.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.http.RepositoryServer;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Load test of {@link RepositoryServer} on localhost: concurrent clients downloading whole apk,
+ * resuming it from the middle, fetching gzipped index and revalidating it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(8)
+@Fork(1)
+public class RepositoryServerBenchmark {
+    @Param({"1048576", "16777216"})
+    public int apkSize;
+
+    private File rootDir;
+    private RepositoryServer server;
+
+    private URL apkUrl;
+    private URL indexUrl;
+    private String indexEtag;
+
+    @Setup
+    public void setUp() throws IOException, PlaylessRepositoryException {
+        rootDir = Files.createTempDirectory("playless-bench").toFile();
+        final Repository repository = Repository.init(rootDir);
+
+        final byte[] apk = new byte[apkSize];
+        new Random(apkSize).nextBytes(apk);
+        final Checksum fingerprint = Checksum.sha1(apk);
+        new BlobStore(rootDir).store(apk, fingerprint, "app.apk");
+
+        final List<Dist> dists = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId("com.example.app" + i / 10);
+            dist.versionCode(i % 10);
+            dist.fingerprint(Checksum.sha1(new byte[]{(byte) i, (byte) (i >> 8)}));
+            dist.link("download", BlobStore.path(fingerprint, "app.apk"));
+            dists.add(dist.build());
+        }
+        RepositoryIndex.open(repository).commit(dists, Collections.<Dist>emptyList());
+
+        server = new RepositoryServer(repository, new InetSocketAddress("127.0.0.1", 0), 16);
+        server.start();
+
+        final InetSocketAddress address = server.getAddress();
+        apkUrl = new URL("http", address.getHostString(), address.getPort(), "/" + BlobStore.path(fingerprint, "app.apk"));
+        indexUrl = new URL("http", address.getHostString(), address.getPort(), "/" + RepositoryIndex.FILENAME);
+        indexEtag = ((HttpURLConnection) indexUrl.openConnection()).getHeaderField("ETag");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+        Files.walkFileTree(rootDir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    public long apk() throws IOException {
+        return fetch((HttpURLConnection) apkUrl.openConnection());
+    }
+
+    @Benchmark
+    public long resumedApk() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) apkUrl.openConnection();
+        connection.setRequestProperty("Range", "bytes=" + apkSize / 2 + "-");
+        return fetch(connection);
+    }
+
+    @Benchmark
+    public long gzippedIndex() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) indexUrl.openConnection();
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return fetch(connection);
+    }
+
+    @Benchmark
+    public long revalidatedIndex() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) indexUrl.openConnection();
+        connection.setRequestProperty("If-None-Match", indexEtag);
+        return fetch(connection);
+    }
+
+    private static long fetch(HttpURLConnection connection) throws IOException {
+        if (connection.getResponseCode() == 304) {
+            return 0;
+        }
+        final byte[] buffer = new byte[64 * 1024];
+        long result = 0;
+        try (InputStream in = connection.getInputStream()) {
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                result += count;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,287 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.util.apk.ApkScanner;
+
+/**
+ * Fills {@link Dist.Editor} from {@code aapt dump badging} output. Every line is dispatched by its
+ * key (the part before colon) to a single parser, values are tokenized without regular expressions.
+ */
+final class BadgingDistFactory {
+    private static final String KEY_LABEL = "application-label";
+    private static final String KEY_ICON = "application-icon";
+
+    private final Dist.Editor dist;
+    private final ApkScanner scanner;
+    private final Map<String, String> labels = new HashMap<>();
+
+    private BadgingDistFactory(@NotNull Dist.Editor dist, @NotNull ApkScanner scanner) {
+        this.dist = dist;
+        this.scanner = scanner;
+    }
+
+    static void loadTo(@NotNull Dist.Editor dist, @NotNull ApkScanner scanner, @NotNull BufferedReader in) throws IOException {
+        new BadgingDistFactory(dist, scanner).load(in);
+    }
+
+    private void load(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            loadLine(line);
+        }
+        loadLabels();
+    }
+
+    private void loadLine(String line) {
+        int start = 0;
+        while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        final int colon = line.indexOf(':', start);
+        final String key = colon == -1 ? line.substring(start) : line.substring(start, colon);
+        final int at = colon + 1;
+
+        switch (key) {
+            case "package":
+                final String applicationId = attribute(line, at, "name");
+                if (applicationId != null) {
+                    dist.applicationId(applicationId);
+                }
+                final String versionCode = attribute(line, at, "versionCode");
+                if (versionCode != null) {
+                    dist.versionCode(parseInt(versionCode, 10, 0));
+                }
+                final String versionName = attribute(line, at, "versionName");
+                if (versionName != null) {
+                    dist.meta(Dist.META_VERSION_NAME, versionName);
+                }
+                break;
+
+            case "sdkVersion":
+                final int minSdkVersion = parseInt(quoted(line, at), 10, 0);
+                if (minSdkVersion > 0) {
+                    dist.minSdkVersion(minSdkVersion);
+                }
+                break;
+
+            case "maxSdkVersion":
+                final int maxSdkVersion = parseInt(quoted(line, at), 10, 0);
+                if (maxSdkVersion > 0) {
+                    dist.maxSdkVersion(maxSdkVersion);
+                }
+                break;
+
+            case "application-debuggable":
+                dist.debug(true);
+                break;
+
+            case "uses-feature":
+                final String attributeFeature = attribute(line, at, "name");
+                final String feature = attributeFeature != null ? attributeFeature : quoted(line, at);
+                if (feature != null) {
+                    dist.usesFeature(feature);
+                }
+                break;
+
+            case "uses-gl-es":
+                final String glEs = quoted(line, at);
+                if (glEs != null && glEs.startsWith("0x")) {
+                    dist.usesGlEs(parseInt(glEs.substring(2), 0x10, 0));
+                }
+                break;
+
+            case "uses-configuration":
+                dist.usesConfiguration(
+                        parseInt(attribute(line, at, "reqFiveWayNav"), 10, 0),
+                        parseInt(attribute(line, at, "reqHardKeyboard"), 10, 0),
+                        parseInt(attribute(line, at, "reqKeyboardType"), 10, 0),
+                        parseInt(attribute(line, at, "reqNavigation"), 10, 0),
+                        parseInt(attribute(line, at, "reqTouchScreen"), 10, 0));
+                break;
+
+            case "supports-screens":
+                for (String supportsScreen : list(line, at)) {
+                    dist.supportsScreen(supportsScreen);
+                }
+                break;
+
+            case "requires-smallest-width":
+                final int requiresSmallestWidthDp = parseInt(quoted(line, at), 10, 0);
+                if (requiresSmallestWidthDp > 0) {
+                    dist.requiresSmallestWidthDp(requiresSmallestWidthDp);
+                }
+                break;
+
+            case "compatible-screens":
+                for (String compatibleScreen : list(line, at)) {
+                    dist.compatibleScreen(readableScreen(compatibleScreen));
+                }
+                break;
+
+            case "supports-gl-texture":
+                final String texture = quoted(line, at);
+                if (texture != null) {
+                    dist.supportsGlTexture(texture);
+                }
+                break;
+
+            case "uses-library":
+                final String library = quoted(line, at);
+                if (library != null) {
+                    dist.usesLibrary(library);
+                }
+                break;
+
+            case "native-code":
+                for (String code : list(line, at)) {
+                    dist.nativeCode(code);
+                }
+                break;
+
+            default:
+                if (key.startsWith(KEY_LABEL)) {
+                    loadLabel(key.substring(KEY_LABEL.length()), quoted(line, at));
+
+                } else if (key.startsWith(KEY_ICON)) {
+                    loadIcon(key.substring(KEY_ICON.length()), quoted(line, at));
+                }
+                break;
+        }
+    }
+
+    private void loadLabel(String qualifier, String value) {
+        if (value != null && isQualifier(qualifier)) {
+            labels.put(Dist.META_LABEL + qualifier, value);
+        }
+    }
+
+    private void loadIcon(String qualifier, String value) {
+        if (value == null || !isQualifier(qualifier)) {
+            return;
+        }
+        if (qualifier.contains("-65535")) { // skip scalable icons while they're unsupported
+            return;
+        }
+        dist.link(Dist.LINK_REL_ICON + qualifier, InitialDistFactory.ZIP_FILE_PREFIX + scanner.getFile().getAbsolutePath() + "!/" + value);
+        scanner.requestEntry(value);
+    }
+
+    private void loadLabels() {
+        final String defLabelValue = labels.get(Dist.META_LABEL);
+        for (Map.Entry<String, String> l : labels.entrySet()) {
+            final String key = l.getKey();
+            final String value = l.getValue();
+            if (defLabelValue == null || key.equals(Dist.META_LABEL) || !value.equals(defLabelValue)) {
+                dist.meta(key, value);
+            }
+        }
+    }
+
+    /**
+     * @return whether string is empty or consists of {@code -<alnum>} parts like {@code -ru-rRU}
+     */
+    private static boolean isQualifier(String string) {
+        final int length = string.length();
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c == '-') {
+                if (i + 1 == length || string.charAt(i + 1) == '-') {
+                    return false;
+                }
+            } else if (i == 0 || !Character.isLetterOrDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return value between first quote after {@code from} and last quote of line, {@code null}
+     * if there are no two quotes
+     */
+    @Nullable
+    static String quoted(@NotNull String line, int from) {
+        final int open = line.indexOf('\'', from);
+        final int close = line.lastIndexOf('\'');
+        return open == -1 || close <= open ? null : line.substring(open + 1, close);
+    }
+
+    /**
+     * @return value of {@code name='value'} attribute after {@code from}, {@code null} if there
+     * is no such attribute
+     */
+    @Nullable
+    static String attribute(@NotNull String line, int from, @NotNull String name) {
+        int at = from;
+        while ((at = line.indexOf(name, at)) != -1) {
+            final int open = at + name.length();
+            final boolean separated = at == from || Character.isWhitespace(line.charAt(at - 1));
+            if (separated && line.startsWith("='", open)) {
+                final int close = line.indexOf('\'', open + 2);
+                return close == -1 ? null : line.substring(open + 2, close);
+            }
+            at = open;
+        }
+        return null;
+    }
+
+    /**
+     * @return quoted values after {@code from} separated either by spaces or commas
+     */
+    @NotNull
+    static List<String> list(@NotNull String line, int from) {
+        final List<String> result = new ArrayList<>();
+        int at = from;
+        int open;
+        while ((open = line.indexOf('\'', at)) != -1) {
+            final int close = line.indexOf('\'', open + 1);
+            if (close == -1) {
+                break;
+            }
+            result.add(line.substring(open + 1, close));
+            at = close + 1;
+        }
+        return result;
+    }
+
+    private static int parseInt(@Nullable String string, int radix, int defaultValue) {
+        if (string == null || string.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(string, radix);
+
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    @NotNull
+    private static String readableScreen(@NotNull String screen) {
+        final int slash = screen.indexOf('/');
+        final String size = slash == -1 ? screen : screen.substring(0, slash);
+        final String density = slash == -1 ? "" : screen.substring(slash);
+        switch (size) {
+            case "200":
+                return "small" + density;
+            case "300":
+                return "normal" + density;
+            case "400":
+                return "large" + density;
+            case "500":
+                return "xlarge" + density;
+            default:
+                return screen;
+        }
+    }
+}
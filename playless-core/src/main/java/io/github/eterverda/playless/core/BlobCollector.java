@@ -0,0 +1,257 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Mark and sweep of {@link BlobStore}: blobs linked from dists or named by their fingerprints are
+ * marked, then every {@code <xx>} directory of store is swept by its own worker and blobs not
+ * marked are removed.
+ * <p>
+ * Blob is stored before dist referring to it is committed, so blobs younger than grace period
+ * are kept. Hard link keeps modification time of its source, so age of blob is counted from the
+ * latest of its own and its directory modification time, the latter is updated when blob is
+ * linked or moved in, and when existing blob is reused by {@link BlobStore}. The directory is
+ * checked once again right before blob is removed, and store checks blob once again after it
+ * has touched the directory. Directories left empty are removed too, store makes directory again
+ * if it is removed right after store has made it.
+ */
+@NotThreadSafe
+public final class BlobCollector {
+    private static final String BLOB_PREFIX = BlobStore.DIR + "/";
+
+    @NotNull
+    private final File rootDir;
+
+    private final Set<String> markedPaths = new HashSet<>();
+    private final Set<String> markedDirs = new HashSet<>();
+
+    private final AtomicLong blobs = new AtomicLong();
+    private final AtomicLong young = new AtomicLong();
+    private final AtomicLong unreferenced = new AtomicLong();
+    private final AtomicLong unreferencedBytes = new AtomicLong();
+
+    public BlobCollector(@NotNull File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    public interface Listener {
+        /**
+         * Called from worker threads for every unreferenced blob older than grace period.
+         *
+         * @param path path relative to repository root
+         */
+        void unreferenced(@NotNull String path, long size);
+    }
+
+    public void mark(@NotNull Iterable<Dist> dists) {
+        for (Dist dist : dists) {
+            mark(dist);
+        }
+    }
+
+    public void mark(@NotNull Dist dist) {
+        final Checksum fingerprint = dist.version.fingerprint;
+        if (fingerprint != null) {
+            final String dir = BlobStore.path(fingerprint, "");
+            markedDirs.add(dir.substring(BLOB_PREFIX.length(), dir.length() - 1));
+        }
+        for (Link link : dist.links) {
+            final String href = link.href();
+            if (href.startsWith(BLOB_PREFIX)) {
+                markedPaths.add(href.substring(BLOB_PREFIX.length()));
+            }
+        }
+    }
+
+    /**
+     * @param graceMillis blobs modified later than that long ago are kept
+     * @param remove      whether to remove unreferenced blobs or just report them
+     */
+    public void sweep(int jobs, long graceMillis, final boolean remove, @Nullable final Listener listener) throws IOException {
+        final File storeDir = new File(rootDir, BlobStore.DIR);
+        final File[] dirs = storeDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        final long deadline = System.currentTimeMillis() - graceMillis;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, jobs));
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(dirs.length);
+            for (final File dir : dirs) {
+                if (!isBlobDir(dir)) {
+                    continue;
+                }
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        sweep(dir.toPath(), deadline, remove, listener);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                get(future);
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public long getBlobs() {
+        return blobs.get();
+    }
+
+    public long getYoung() {
+        return young.get();
+    }
+
+    public long getUnreferenced() {
+        return unreferenced.get();
+    }
+
+    public long getUnreferencedBytes() {
+        return unreferencedBytes.get();
+    }
+
+    private void sweep(@NotNull final Path top, final long deadline, final boolean remove, @Nullable final Listener listener) throws IOException {
+        final String prefix = top.getFileName().toString() + "/";
+
+        Files.walkFileTree(top, new SimpleFileVisitor<Path>() {
+            private long dirModified;
+            // as seen lately, removing blob changes it too
+            private long dirSeen;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(top)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (top.relativize(dir).getNameCount() != 1) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dirModified = attrs.lastModifiedTime().toMillis();
+                dirSeen = dirModified;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final Path relative = top.relativize(file);
+                if (relative.getNameCount() != 2 || !attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                blobs.incrementAndGet();
+
+                final String dir = prefix + relative.getName(0);
+                final String path = dir + "/" + relative.getName(1);
+                if (markedDirs.contains(dir) || markedPaths.contains(path)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (Math.max(attrs.lastModifiedTime().toMillis(), dirModified) > deadline || remove && isReused(file)) {
+                    young.incrementAndGet();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                unreferenced.incrementAndGet();
+                unreferencedBytes.addAndGet(attrs.size());
+                if (listener != null) {
+                    listener.unreferenced(BLOB_PREFIX + path, attrs.size());
+                }
+                if (remove) {
+                    try {
+                        Files.delete(file);
+                        dirSeen = Files.getLastModifiedTime(file.getParent()).toMillis();
+
+                    } catch (NoSuchFileException ignore) {
+                        // removed concurrently
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            /**
+             * @return whether store has touched directory of blob since it was seen
+             */
+            private boolean isReused(Path file) throws IOException {
+                final long modified = Files.getLastModifiedTime(file.getParent()).toMillis();
+                return modified != dirSeen && modified > deadline;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                if (remove) {
+                    try {
+                        Files.delete(dir);
+
+                    } catch (DirectoryNotEmptyException | NoSuchFileException ignore) {
+                        // still has blobs
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @return whether directory is {@code <xx>} of {@link BlobStore}, that is two base32 letters
+     */
+    private static boolean isBlobDir(@NotNull File dir) {
+        return dir.isDirectory() && dir.getName().matches("[a-z2-7]{2}");
+    }
+
+    private static void get(@NotNull Future<Void> future) throws IOException {
+        try {
+            future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.commons.codec.binary.Base32;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Content addressed files of repository, each one at {@code .playless/<xx>/<rest>/<filename>}
+ * where {@code <xx><rest>} is base32 of its fingerprint. Blob is never rewritten once it exists.
+ */
+@ThreadSafe
+public final class BlobStore {
+    public static final String DIR = ".playless";
+
+    @NotNull
+    private final File rootDir;
+
+    private volatile boolean linking = true;
+
+    public BlobStore(@NotNull File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    /**
+     * Hard links are made if possible. Source files should then never be rewritten in place,
+     * replacing them is fine.
+     */
+    public void setLinking(boolean linking) {
+        this.linking = linking;
+    }
+
+    /**
+     * @return path of blob relative to repository root, which is also its url in repository
+     */
+    @NotNull
+    public static String path(@NotNull Checksum fingerprint, @NotNull String filename) {
+        final String encodedValue = base32(fingerprint);
+        return DIR + "/" + encodedValue.substring(0, 2) + "/" + encodedValue.substring(2) + "/" + filename;
+    }
+
+    @NotNull
+    public static String base32(@NotNull Checksum fingerprint) {
+        final Base32 base32 = new Base32();
+        final byte[] value = fingerprint.getValue();
+        return base32.encodeToString(value).toLowerCase();
+    }
+
+    @NotNull
+    public File getFile(@NotNull Checksum fingerprint, @NotNull String filename) {
+        return new File(rootDir, path(fingerprint, filename));
+    }
+
+    public boolean contains(@NotNull Checksum fingerprint, @NotNull String filename) {
+        return getFile(fingerprint, filename).isFile();
+    }
+
+    /**
+     * @param path path relative to repository root, as {@link #path} makes it
+     */
+    public boolean contains(@NotNull String path) {
+        return path.startsWith(DIR + "/") && new File(rootDir, path).isFile();
+    }
+
+    /**
+     * Blob already existing is reused, and its directory is touched, so that
+     * {@link BlobCollector} takes blob for young one until it is referenced again.
+     *
+     * @param fingerprint fingerprint of source, it is trusted and not verified
+     * @return {@code false} if blob already exists
+     */
+    public boolean store(@NotNull File source, @NotNull Checksum fingerprint, @NotNull String filename) throws IOException {
+        final File file = getFile(fingerprint, filename);
+        if (reuse(file)) {
+            return false;
+        }
+        final File dir = mkdirs(file.getParentFile());
+        if (linking) {
+            try {
+                Files.createLink(file.toPath(), source.toPath());
+                return true;
+
+            } catch (FileAlreadyExistsException e) {
+                return false;
+
+            } catch (IOException | UnsupportedOperationException ignore) {
+                // other file system or no hard links at all, copy then
+            }
+        }
+        final File temp = createTempFile(filename, dir);
+        try {
+            try (FileInputStream in = new FileInputStream(source);
+                 FileOutputStream out = new FileOutputStream(temp)) {
+                transfer(in.getChannel(), out.getChannel());
+            }
+            return move(temp, file);
+
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    /**
+     * Blob already existing is reused just like {@link #store(File, Checksum, String)} does.
+     *
+     * @return {@code false} if blob already exists
+     */
+    public boolean store(@NotNull byte[] content, @NotNull Checksum fingerprint, @NotNull String filename) throws IOException {
+        final File file = getFile(fingerprint, filename);
+        if (reuse(file)) {
+            return false;
+        }
+        final File temp = createTempFile(filename, mkdirs(file.getParentFile()));
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                final FileChannel channel = out.getChannel();
+                final ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return move(temp, file);
+
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    /**
+     * Touches directory of existing blob, blob itself may be hard link to file it must not touch.
+     * Blob is checked again after that, as collector may have removed it before it was touched.
+     *
+     * @return whether blob exists and is young for collector
+     */
+    private static boolean reuse(@NotNull File file) throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        final File dir = file.getParentFile();
+        if (!dir.setLastModified(System.currentTimeMillis())) {
+            // directory of another owner, adding file to it updates its time all the same
+            //noinspection ResultOfMethodCallIgnored
+            File.createTempFile("touch", ".tmp", dir).delete();
+        }
+        return file.isFile();
+    }
+
+    private static void transfer(@NotNull FileChannel in, @NotNull FileChannel out) throws IOException {
+        final long size = in.size();
+        long position = 0;
+        // transferTo may move less than asked, e.g. at most 2G at once on Linux
+        while (position < size) {
+            final long transferred = in.transferTo(position, size - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Cannot transfer beyond " + position + " of " + size);
+            }
+            position += transferred;
+        }
+    }
+
+    private static boolean move(@NotNull File temp, @NotNull File file) throws IOException {
+        if (file.isFile()) {
+            // concurrent store of the same blob won
+            return false;
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Makes directory again if {@link BlobCollector} has removed it as empty right after it was
+     * made, so that blob is never stored into directory being removed. Hard link failing the same
+     * way falls back to copy, so it ends up here too.
+     */
+    @NotNull
+    private static File createTempFile(@NotNull String filename, @NotNull File dir) throws IOException {
+        try {
+            return File.createTempFile(filename, ".tmp", dir);
+
+        } catch (IOException e) {
+            if (dir.isDirectory()) {
+                throw e;
+            }
+            return File.createTempFile(filename, ".tmp", mkdirs(dir));
+        }
+    }
+
+    @NotNull
+    private static File mkdirs(@NotNull File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.json.JsonDistFactory;
+import io.github.eterverda.playless.core.json.GsonJsonReader;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Keeps dists produced by another loader in a directory, one file per canonical path of apk.
+ * Cached dist is returned as long as apk has the same size, modification time and file key (inode
+ * where available), so unchanged apks are neither read nor hashed. If loader stores icons, cached
+ * dist is also valid only while its icons are still in store, as icons referenced by no index are
+ * removed by {@link BlobCollector}.
+ */
+@ThreadSafe
+public class CachingDistLoader implements DistLoader {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NotNull
+    private final DistLoader loader;
+    @NotNull
+    private final File dir;
+    @NotNull
+    private final String variant;
+    @Nullable
+    private final BlobStore icons;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * @param variant distinguishes dists of differently configured loaders sharing the same dir
+     */
+    public CachingDistLoader(@NotNull DistLoader loader, @NotNull File dir, @NotNull String variant) {
+        this(loader, dir, variant, null);
+    }
+
+    /**
+     * @param icons store where loader puts icons linked from dists
+     */
+    public CachingDistLoader(@NotNull DistLoader loader, @NotNull File dir, @NotNull String variant, @Nullable BlobStore icons) {
+        this.loader = loader;
+        this.dir = dir;
+        this.variant = variant;
+        this.icons = icons;
+    }
+
+    @NotNull
+    @Override
+    public Dist load(@NotNull File file) throws IOException {
+        final File canonicalFile = file.getCanonicalFile();
+        final String identity = identity(canonicalFile);
+        final File entry = new File(dir, Checksum.sha1((variant + '\n' + canonicalFile.getPath()).getBytes(UTF_8)).getStringValue());
+
+        final Dist cached = read(entry, identity);
+        if (cached != null && hasIcons(cached)) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        final Dist dist = loader.load(file);
+        write(entry, identity, dist);
+        return dist;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private boolean hasIcons(@NotNull Dist dist) {
+        if (icons == null) {
+            return true;
+        }
+        for (Link link : dist.links) {
+            if (link.rel().startsWith(Dist.LINK_REL_ICON) && !icons.contains(link.href())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private static String identity(@NotNull File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        return attributes.size() + " " + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) + " " + attributes.fileKey();
+    }
+
+    @Nullable
+    private static Dist read(@NotNull File entry, @NotNull String identity) {
+        if (!entry.isFile()) {
+            return null;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(entry), UTF_8))) {
+            if (!identity.equals(in.readLine())) {
+                return null;
+            }
+            return JsonDistFactory.getInstance().load(new GsonJsonReader(new com.google.gson.stream.JsonReader(in)));
+
+        } catch (IOException | RuntimeException e) {
+            // broken entry is the same as missing one, it is overwritten
+            return null;
+        }
+    }
+
+    private void write(@NotNull File entry, @NotNull String identity, @NotNull Dist dist) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        final File temp = File.createTempFile(entry.getName(), ".tmp", dir);
+        try {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(temp), UTF_8)) {
+                out.write(identity + '\n');
+                new JsonRepoDumper(out).write(dist);
+            }
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects files with given suffix created, modified or deleted in a single directory. Events are
+ * debounced: a batch is returned only after directory was quiet for given period, so a burst of
+ * files, or a file still being copied, makes a single batch.
+ */
+@NotThreadSafe
+public final class DirectoryWatcher implements Closeable {
+    @NotNull
+    private final File dir;
+    @NotNull
+    private final String suffix;
+    private final long quietMillis;
+
+    @NotNull
+    private final WatchService watchService;
+
+    public DirectoryWatcher(@NotNull File dir, @NotNull String suffix, long quietMillis) throws IOException {
+        if (quietMillis < 0) {
+            throw new IllegalArgumentException("Expected non-negative quiet period, got " + quietMillis);
+        }
+        this.dir = dir;
+        this.suffix = suffix;
+        this.quietMillis = quietMillis;
+
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            dir.toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until at least one matching file changes and then until there are no events for
+     * quiet period.
+     *
+     * @return changed files, which may not exist anymore, or {@code null} if events were lost and
+     * directory should be listed again
+     */
+    @Nullable
+    public Set<File> take() throws IOException, InterruptedException {
+        final Set<File> files = new LinkedHashSet<>();
+        boolean overflow = false;
+
+        while (files.isEmpty() && !overflow) {
+            WatchKey key = watchService.take();
+            while (key != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    final String name = ((Path) event.context()).toString();
+                    if (name.endsWith(suffix)) {
+                        files.add(new File(dir, name));
+                    }
+                }
+                if (!key.reset()) {
+                    throw new IOException("Directory " + dir + " is not accessible anymore");
+                }
+                key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return overflow ? null : files;
+    }
+
+    /**
+     * @return files with matching suffix currently in directory
+     */
+    @NotNull
+    public Set<File> list() throws IOException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list directory " + dir);
+        }
+        final Set<File> result = new LinkedHashSet<>();
+        for (File file : files) {
+            if (file.getName().endsWith(suffix) && file.isFile()) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
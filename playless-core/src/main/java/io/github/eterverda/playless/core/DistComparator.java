@@ -0,0 +1,33 @@
+package io.github.eterverda.playless.core;
+
+import java.util.Comparator;
+
+import io.github.eterverda.playless.common.Dist;
+
+/**
+ * Order of dists in written indexes: by application id, then version code, then timestamp in
+ * seconds.
+ */
+public final class DistComparator implements Comparator<Dist> {
+    public static final Comparator<Dist> INSTANCE = new DistComparator();
+
+    private DistComparator() {
+    }
+
+    @Override
+    public int compare(Dist a, Dist b) {
+        final String aa = a.applicationId;
+        final String ba = b.applicationId;
+        if (!aa.equals(ba)) {
+            return aa.compareTo(ba);
+        }
+        final int av = a.version.versionCode;
+        final int bv = b.version.versionCode;
+        if (av != bv) {
+            return av - bv;
+        }
+        final long at = a.version.timestamp / 1000;
+        final long bt = b.version.timestamp / 1000;
+        return (int) (at - bt);
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Secondary indexes of dists by application id, by fingerprint and by application id and version
+ * code, so that looking up dists costs as much as there are dists found.
+ */
+@NotThreadSafe
+public final class DistIndex implements DistLookup {
+    private final Map<String, Set<Dist>> byApplicationId = new HashMap<>();
+    private final Map<Checksum, Set<Dist>> byFingerprint = new HashMap<>();
+    private final Map<Version, Set<Dist>> byVersion = new HashMap<>();
+    private final Set<Dist> all = new LinkedHashSet<>();
+
+    public DistIndex() {
+    }
+
+    public DistIndex(@NotNull Iterable<Dist> dists) {
+        for (Dist dist : dists) {
+            add(dist);
+        }
+    }
+
+    public void add(@NotNull Dist dist) {
+        all.add(dist);
+        put(byApplicationId, dist.applicationId, dist);
+        put(byVersion, new Version(dist.applicationId, dist.version.versionCode), dist);
+        if (dist.version.fingerprint != null) {
+            put(byFingerprint, dist.version.fingerprint, dist);
+        }
+    }
+
+    public void remove(@NotNull Dist dist) {
+        all.remove(dist);
+        remove(byApplicationId, dist.applicationId, dist);
+        remove(byVersion, new Version(dist.applicationId, dist.version.versionCode), dist);
+        if (dist.version.fingerprint != null) {
+            remove(byFingerprint, dist.version.fingerprint, dist);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> byApplicationId(@NotNull String applicationId) {
+        return get(byApplicationId, applicationId);
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> byFingerprint(@NotNull Checksum fingerprint) {
+        return get(byFingerprint, fingerprint);
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> byVersion(@NotNull String applicationId, int versionCode) {
+        return get(byVersion, new Version(applicationId, versionCode));
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> all() {
+        return Collections.unmodifiableSet(all);
+    }
+
+    private static <K> void put(@NotNull Map<K, Set<Dist>> map, @NotNull K key, @NotNull Dist dist) {
+        Set<Dist> dists = map.get(key);
+        if (dists == null) {
+            dists = new LinkedHashSet<>();
+            map.put(key, dists);
+        }
+        dists.add(dist);
+    }
+
+    private static <K> void remove(@NotNull Map<K, Set<Dist>> map, @NotNull K key, @NotNull Dist dist) {
+        final Set<Dist> dists = map.get(key);
+        if (dists != null && dists.remove(dist) && dists.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    @NotNull
+    private static <K> Set<Dist> get(@NotNull Map<K, Set<Dist>> map, @NotNull K key) {
+        final Set<Dist> dists = map.get(key);
+        return dists == null ? Collections.<Dist>emptySet() : Collections.unmodifiableSet(dists);
+    }
+
+    private static final class Version {
+        private final String applicationId;
+        private final int versionCode;
+
+        Version(@NotNull String applicationId, int versionCode) {
+            this.applicationId = applicationId;
+            this.versionCode = versionCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Version)) {
+                return false;
+            }
+            final Version that = (Version) o;
+            return versionCode == that.versionCode && applicationId.equals(that.applicationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * applicationId.hashCode() + versionCode;
+        }
+    }
+}
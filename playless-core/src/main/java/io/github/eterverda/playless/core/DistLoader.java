@@ -0,0 +1,17 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import io.github.eterverda.playless.common.Dist;
+
+/**
+ * Loads single {@link Dist} from file. Implementations must be safe to call from several threads
+ * at once as they are driven by {@link ParallelDistLoader}.
+ */
+public interface DistLoader {
+    @NotNull
+    Dist load(@NotNull File file) throws IOException;
+}
@@ -0,0 +1,26 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Set;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Dists looked up by secondary indexes.
+ */
+public interface DistLookup {
+    @NotNull
+    Set<Dist> byApplicationId(@NotNull String applicationId) throws IOException;
+
+    @NotNull
+    Set<Dist> byFingerprint(@NotNull Checksum fingerprint) throws IOException;
+
+    @NotNull
+    Set<Dist> byVersion(@NotNull String applicationId, int versionCode) throws IOException;
+
+    @NotNull
+    Set<Dist> all() throws IOException;
+}
@@ -0,0 +1,73 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Stores icons to {@link BlobStore}, each distinct icon once no matter how many densities and apks
+ * share it.
+ */
+@ThreadSafe
+public class IconExtractor {
+    @NotNull
+    private final BlobStore blobs;
+
+    private final Set<Checksum> extracted = Collections.newSetFromMap(new ConcurrentHashMap<Checksum, Boolean>());
+
+    private final AtomicInteger icons = new AtomicInteger();
+    private final AtomicInteger written = new AtomicInteger();
+
+    public IconExtractor(@NotNull BlobStore blobs) {
+        this.blobs = blobs;
+    }
+
+    /**
+     * @param filename the same for every fingerprint
+     */
+    public void extract(@NotNull Checksum fingerprint, @NotNull byte[] content, @NotNull String filename) throws IOException {
+        icons.incrementAndGet();
+
+        if (!extracted.add(fingerprint)) {
+            return;
+        }
+        try {
+            if (blobs.store(content, fingerprint, filename)) {
+                written.incrementAndGet();
+            }
+
+        } catch (IOException e) {
+            extracted.remove(fingerprint);
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of {@link #extract} calls
+     */
+    public int getIcons() {
+        return icons.get();
+    }
+
+    /**
+     * @return number of distinct fingerprints
+     */
+    public int getUnique() {
+        return extracted.size();
+    }
+
+    /**
+     * @return number of files actually written
+     */
+    public int getWritten() {
+        return written.get();
+    }
+}
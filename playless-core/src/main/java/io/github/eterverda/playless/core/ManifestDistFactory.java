@@ -0,0 +1,418 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.util.apk.BinaryXmlParser;
+
+/**
+ * Fills {@link Dist.Editor} from compiled {@code AndroidManifest.xml} the same way
+ * {@code aapt dump badging} output is interpreted, including features implied by permissions.
+ * <p/>
+ * Attributes are found by resource ids of their names, as aapt does, so obfuscated or stripped
+ * names do not matter. Labels and icons are resources, they are not resolved here, and neither
+ * is {@code versionName} referring to string resource, version code is taken for it instead.
+ */
+final class ManifestDistFactory {
+    static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+
+    // android.R.attr
+    private static final int ATTR_NAME = 0x01010003;
+    private static final int ATTR_DEBUGGABLE = 0x0101000f;
+    private static final int ATTR_SCREEN_ORIENTATION = 0x0101001e;
+    private static final int ATTR_MIN_SDK_VERSION = 0x0101020c;
+    private static final int ATTR_VERSION_CODE = 0x0101021b;
+    private static final int ATTR_VERSION_NAME = 0x0101021c;
+    private static final int ATTR_REQ_TOUCH_SCREEN = 0x01010227;
+    private static final int ATTR_REQ_KEYBOARD_TYPE = 0x01010228;
+    private static final int ATTR_REQ_HARD_KEYBOARD = 0x01010229;
+    private static final int ATTR_REQ_NAVIGATION = 0x0101022a;
+    private static final int ATTR_REQ_FIVE_WAY_NAV = 0x01010232;
+    private static final int ATTR_TARGET_SDK_VERSION = 0x01010270;
+    private static final int ATTR_MAX_SDK_VERSION = 0x01010271;
+    private static final int ATTR_GL_ES_VERSION = 0x01010281;
+    private static final int ATTR_SMALL_SCREENS = 0x01010284;
+    private static final int ATTR_NORMAL_SCREENS = 0x01010285;
+    private static final int ATTR_LARGE_SCREENS = 0x01010286;
+    private static final int ATTR_REQUIRED = 0x0101028e;
+    private static final int ATTR_XLARGE_SCREENS = 0x010102bf;
+    private static final int ATTR_SCREEN_SIZE = 0x010102ca;
+    private static final int ATTR_SCREEN_DENSITY = 0x010102cb;
+    private static final int ATTR_REQUIRES_SMALLEST_WIDTH_DP = 0x01010364;
+
+    private static final int SDK_DONUT = 4;
+    private static final int SDK_GINGERBREAD = 9;
+
+    private static final String FEATURE_TOUCHSCREEN = "android.hardware.touchscreen";
+    private static final String FEATURE_SCREEN_LANDSCAPE = "android.hardware.screen.landscape";
+    private static final String FEATURE_SCREEN_PORTRAIT = "android.hardware.screen.portrait";
+
+    private final BinaryXmlParser xml;
+    private final Dist.Editor dist;
+
+    private String section;
+
+    private int minSdkVersion = 0;
+    private int targetSdkVersion = 0;
+
+    private int smallScreens = 1;
+    private int normalScreens = 1;
+    private int largeScreens = 1;
+    private int xlargeScreens = 1;
+
+    private final Set<String> declaredFeatures = new HashSet<>();
+    private final Set<String> requiredFeatures = new LinkedHashSet<>();
+    private final Set<String> impliedFeatures = new LinkedHashSet<>();
+    private final Set<String> permissions = new LinkedHashSet<>();
+
+    private ManifestDistFactory(@NotNull byte[] manifest, @NotNull Dist.Editor dist) throws IOException {
+        this.xml = new BinaryXmlParser(manifest);
+        this.dist = dist;
+    }
+
+    static void loadTo(@NotNull Dist.Editor dist, @NotNull byte[] manifest) throws IOException {
+        new ManifestDistFactory(manifest, dist).load();
+    }
+
+    private void load() throws IOException {
+        int event;
+        while ((event = xml.next()) != BinaryXmlParser.END_DOCUMENT) {
+            if (event != BinaryXmlParser.START_TAG) {
+                continue;
+            }
+            final String name = xml.getName();
+            final int depth = xml.getDepth();
+
+            if (depth == 1 && "manifest".equals(name)) {
+                loadManifest();
+
+            } else if (depth == 2) {
+                section = name;
+                loadManifestChild(name);
+
+            } else if (depth == 3 && "compatible-screens".equals(section)) {
+                loadCompatibleScreensChild(name);
+
+            } else if (depth == 3 && "application".equals(section)) {
+                loadApplicationChild(name);
+            }
+        }
+
+        loadScreens();
+        loadFeatures();
+    }
+
+    private void loadManifest() {
+        final String applicationId = stringAttribute(null, "package");
+        if (applicationId != null) {
+            dist.applicationId(applicationId);
+        }
+        final int versionCode = intAttribute(ATTR_VERSION_CODE, 0);
+        dist.versionCode(versionCode);
+
+        final int index = xml.indexOfAttribute(ATTR_VERSION_NAME);
+        if (index == -1) {
+            return;
+        }
+        final String versionName = xml.getAttributeStringValue(index);
+        if (versionName != null) {
+            dist.meta(Dist.META_VERSION_NAME, versionName);
+
+        } else if (xml.getAttributeType(index) == BinaryXmlParser.TYPE_REFERENCE) {
+            // resources.arsc is not read, version code stands for unresolved version name
+            dist.meta(Dist.META_VERSION_NAME, Integer.toString(versionCode));
+        }
+    }
+
+    private void loadManifestChild(String name) {
+        if (name == null) {
+            return;
+        }
+        switch (name) {
+            case "uses-sdk":
+                loadUsesSdk();
+                break;
+
+            case "uses-feature":
+                loadUsesFeature();
+                break;
+
+            case "uses-permission":
+                final String permission = stringAttribute(ATTR_NAME);
+                if (permission != null) {
+                    permissions.add(permission);
+                }
+                break;
+
+            case "uses-configuration":
+                dist.usesConfiguration(
+                        intAttribute(ATTR_REQ_FIVE_WAY_NAV, 0),
+                        intAttribute(ATTR_REQ_HARD_KEYBOARD, 0),
+                        intAttribute(ATTR_REQ_KEYBOARD_TYPE, 0),
+                        intAttribute(ATTR_REQ_NAVIGATION, 0),
+                        intAttribute(ATTR_REQ_TOUCH_SCREEN, 0));
+                break;
+
+            case "supports-screens":
+                smallScreens = intAttribute(ATTR_SMALL_SCREENS, 1);
+                normalScreens = intAttribute(ATTR_NORMAL_SCREENS, 1);
+                largeScreens = intAttribute(ATTR_LARGE_SCREENS, 1);
+                xlargeScreens = intAttribute(ATTR_XLARGE_SCREENS, 1);
+
+                final int requiresSmallestWidthDp = intAttribute(ATTR_REQUIRES_SMALLEST_WIDTH_DP, 0);
+                if (requiresSmallestWidthDp > 0) {
+                    dist.requiresSmallestWidthDp(requiresSmallestWidthDp);
+                }
+                break;
+
+            case "supports-gl-texture":
+                final String texture = stringAttribute(ATTR_NAME);
+                if (texture != null) {
+                    dist.supportsGlTexture(texture);
+                }
+                break;
+
+            case "application":
+                if (intAttribute(ATTR_DEBUGGABLE, 0) != 0) {
+                    dist.debug(true);
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void loadCompatibleScreensChild(String name) {
+        if ("screen".equals(name)) {
+            final int screenSize = intAttribute(ATTR_SCREEN_SIZE, -1);
+            final int screenDensity = intAttribute(ATTR_SCREEN_DENSITY, -1);
+            if (screenSize > 0 && screenDensity > 0) {
+                dist.compatibleScreen(screenSizeName(screenSize) + "/" + screenDensity);
+            }
+        }
+    }
+
+    private void loadApplicationChild(String name) {
+        if (name == null) {
+            return;
+        }
+        switch (name) {
+            case "uses-library":
+                final String library = stringAttribute(ATTR_NAME);
+                if (library != null && intAttribute(ATTR_REQUIRED, -1) != 0) {
+                    dist.usesLibrary(library);
+                }
+                break;
+
+            case "activity":
+            case "activity-alias":
+                loadScreenOrientation(intAttribute(ATTR_SCREEN_ORIENTATION, -1));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void loadUsesSdk() {
+        final int min = intAttribute(ATTR_MIN_SDK_VERSION, 0);
+        if (min > 0) {
+            minSdkVersion = min;
+            dist.minSdkVersion(min);
+        }
+        final int max = intAttribute(ATTR_MAX_SDK_VERSION, 0);
+        if (max > 0) {
+            dist.maxSdkVersion(max);
+        }
+        targetSdkVersion = intAttribute(ATTR_TARGET_SDK_VERSION, 0);
+    }
+
+    private void loadUsesFeature() {
+        final String name = stringAttribute(ATTR_NAME);
+        if (name != null) {
+            declaredFeatures.add(name);
+            if (intAttribute(ATTR_REQUIRED, -1) != 0) {
+                requiredFeatures.add(name);
+            }
+        }
+        final int glEsVersion = intAttribute(ATTR_GL_ES_VERSION, 0);
+        if (glEsVersion > 0) {
+            dist.usesGlEs(glEsVersion);
+        }
+    }
+
+    private void loadScreenOrientation(int orientation) {
+        switch (orientation) {
+            case 0: // landscape
+            case 6: // sensorLandscape
+            case 8: // reverseLandscape
+            case 11: // userLandscape
+                impliedFeatures.add(FEATURE_SCREEN_LANDSCAPE);
+                break;
+
+            case 1: // portrait
+            case 7: // sensorPortrait
+            case 9: // reversePortrait
+            case 12: // userPortrait
+                impliedFeatures.add(FEATURE_SCREEN_PORTRAIT);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void loadScreens() {
+        final int targetSdk = Math.max(minSdkVersion, targetSdkVersion);
+
+        if (smallScreens > 0) {
+            smallScreens = targetSdk >= SDK_DONUT ? -1 : 0;
+        }
+        if (normalScreens > 0) {
+            normalScreens = -1;
+        }
+        if (largeScreens > 0) {
+            largeScreens = targetSdk >= SDK_DONUT ? -1 : 0;
+        }
+        if (xlargeScreens > 0) {
+            xlargeScreens = targetSdk >= SDK_GINGERBREAD ? -1 : 0;
+        }
+
+        if (smallScreens != 0) {
+            dist.supportsScreen("small");
+        }
+        if (normalScreens != 0) {
+            dist.supportsScreen("normal");
+        }
+        if (largeScreens != 0) {
+            dist.supportsScreen("large");
+        }
+        if (xlargeScreens != 0) {
+            dist.supportsScreen("xlarge");
+        }
+    }
+
+    private void loadFeatures() {
+        final int targetSdk = Math.max(minSdkVersion, targetSdkVersion);
+
+        for (String permission : permissions) {
+            switch (permission) {
+                case "android.permission.BLUETOOTH":
+                case "android.permission.BLUETOOTH_ADMIN":
+                    if (targetSdk > SDK_DONUT) {
+                        impliedFeatures.add("android.hardware.bluetooth");
+                    }
+                    break;
+
+                case "android.permission.CAMERA":
+                    impliedFeatures.add("android.hardware.camera");
+                    impliedFeatures.add("android.hardware.camera.autofocus");
+                    break;
+
+                case "android.permission.ACCESS_MOCK_LOCATION":
+                case "android.permission.ACCESS_LOCATION_EXTRA_COMMANDS":
+                case "android.permission.INSTALL_LOCATION_PROVIDER":
+                    impliedFeatures.add("android.hardware.location");
+                    break;
+
+                case "android.permission.ACCESS_COARSE_LOCATION":
+                    impliedFeatures.add("android.hardware.location.network");
+                    impliedFeatures.add("android.hardware.location");
+                    break;
+
+                case "android.permission.ACCESS_FINE_LOCATION":
+                    impliedFeatures.add("android.hardware.location.gps");
+                    impliedFeatures.add("android.hardware.location");
+                    break;
+
+                case "android.permission.RECORD_AUDIO":
+                    impliedFeatures.add("android.hardware.microphone");
+                    break;
+
+                case "android.permission.ACCESS_WIFI_STATE":
+                case "android.permission.CHANGE_WIFI_STATE":
+                case "android.permission.CHANGE_WIFI_MULTICAST_STATE":
+                    impliedFeatures.add("android.hardware.wifi");
+                    break;
+
+                case "android.permission.CALL_PHONE":
+                case "android.permission.CALL_PRIVILEGED":
+                case "android.permission.MODIFY_PHONE_STATE":
+                case "android.permission.PROCESS_OUTGOING_CALLS":
+                case "android.permission.READ_SMS":
+                case "android.permission.RECEIVE_SMS":
+                case "android.permission.RECEIVE_MMS":
+                case "android.permission.RECEIVE_WAP_PUSH":
+                case "android.permission.SEND_SMS":
+                case "android.permission.WRITE_APN_SETTINGS":
+                case "android.permission.WRITE_SMS":
+                    impliedFeatures.add("android.hardware.telephony");
+                    break;
+
+                default:
+                    break;
+            }
+        }
+        impliedFeatures.add(FEATURE_TOUCHSCREEN);
+
+        for (String feature : requiredFeatures) {
+            dist.usesFeature(feature);
+        }
+        for (String feature : impliedFeatures) {
+            if (!declaredFeatures.contains(feature)) {
+                dist.usesFeature(feature);
+            }
+        }
+    }
+
+    @Nullable
+    private String stringAttribute(@Nullable String namespace, @NotNull String name) {
+        final int index = xml.indexOfAttribute(namespace, name);
+        return index == -1 ? null : xml.getAttributeStringValue(index);
+    }
+
+    @Nullable
+    private String stringAttribute(int resourceId) {
+        final int index = xml.indexOfAttribute(resourceId);
+        return index == -1 ? null : xml.getAttributeStringValue(index);
+    }
+
+    private int intAttribute(int resourceId, int defaultValue) {
+        final int index = xml.indexOfAttribute(resourceId);
+        if (index == -1) {
+            return defaultValue;
+        }
+        switch (xml.getAttributeType(index)) {
+            case BinaryXmlParser.TYPE_INT_DEC:
+            case BinaryXmlParser.TYPE_INT_HEX:
+            case BinaryXmlParser.TYPE_INT_BOOLEAN:
+                return xml.getAttributeIntValue(index);
+
+            default:
+                return defaultValue;
+        }
+    }
+
+    @NotNull
+    private static String screenSizeName(int screenSize) {
+        switch (screenSize) {
+            case 200:
+                return "small";
+            case 300:
+                return "normal";
+            case 400:
+                return "large";
+            case 500:
+                return "xlarge";
+            default:
+                return Integer.toString(screenSize);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.eterverda.playless.common.Dist;
+
+/**
+ * Runs {@link DistLoader} over a bounded pool of workers. Result order always matches order of
+ * files so output produced from it does not depend on number of jobs.
+ */
+@ThreadSafe
+public final class ParallelDistLoader {
+    @NotNull
+    private final DistLoader loader;
+    private final int jobs;
+
+    public ParallelDistLoader(@NotNull DistLoader loader, int jobs) {
+        if (jobs < 1) {
+            throw new IllegalArgumentException("Expected at least one job, got " + jobs);
+        }
+        this.loader = loader;
+        this.jobs = jobs;
+    }
+
+    @NotNull
+    public List<Dist> loadAll(@NotNull List<File> files) throws IOException {
+        return loadAll(files, null);
+    }
+
+    /**
+     * @param failures if not {@code null} files which fail to load are put here along with their
+     *                 errors and are left out of result instead of failing the whole batch
+     */
+    @NotNull
+    public List<Dist> loadAll(@NotNull List<File> files, @Nullable Map<File, IOException> failures) throws IOException {
+        final int threads = Math.min(jobs, files.size());
+        if (threads <= 1) {
+            return loadAllSequentially(files, failures);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Dist>> futures = new ArrayList<>(files.size());
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<Dist>() {
+                    @Override
+                    public Dist call() throws IOException {
+                        return loader.load(file);
+                    }
+                }));
+            }
+
+            final List<Dist> result = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    result.add(get(futures.get(i)));
+
+                } catch (IOException e) {
+                    if (failures == null || e instanceof InterruptedIOException) {
+                        throw e;
+                    }
+                    failures.put(files.get(i), e);
+                }
+            }
+            return result;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private List<Dist> loadAllSequentially(@NotNull List<File> files, @Nullable Map<File, IOException> failures) throws IOException {
+        final List<Dist> result = new ArrayList<>(files.size());
+        for (File file : files) {
+            try {
+                result.add(loader.load(file));
+
+            } catch (IOException e) {
+                if (failures == null || e instanceof InterruptedIOException) {
+                    throw e;
+                }
+                failures.put(file, e);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private static Dist get(@NotNull Future<Dist> future) throws IOException {
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -29,6 +29,31 @@ public final class Repository {
         return rootDir;
     }
 
+    /**
+     * @return {@code .playless} directory of repository, the place for everything but published files
+     */
+    @NotNull
+    public File getInternalsDir() {
+        return internalsDir(rootDir);
+    }
+
+    /**
+     * Locks repository against writers of other processes and threads, the lock file is kept
+     * beside the root marker.
+     */
+    @NotNull
+    public RepositoryLock lock() throws IOException {
+        return RepositoryLock.acquire(new File(getInternalsDir(), "lock"), getGenerationFile());
+    }
+
+    /**
+     * @return file of {@link RepositoryLock#getGeneration}
+     */
+    @NotNull
+    File getGenerationFile() {
+        return new File(getInternalsDir(), "generation");
+    }
+
     @NotNull
     private static File normalDir(@Nullable File dir) throws PlaylessRepositoryException {
         try {
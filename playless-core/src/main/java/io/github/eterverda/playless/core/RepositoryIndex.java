@@ -0,0 +1,869 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.RepoDelta;
+import io.github.eterverda.playless.common.binary.BinaryRepoReader;
+import io.github.eterverda.playless.common.json.ByteJsonReader;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.binary.BinaryRepoDumper;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Published index of repository: immutable base segment {@code index.json} and append-only
+ * {@code index.log} with one {@code playless-delta-v1} document per line, one line per commit.
+ * Index is the base with every delta applied in order. Commit appends just its own changes, so it
+ * costs as much as the change is, no matter how large the repository is.
+ * <p>
+ * Appended and synced line is the commit record. Line without line feed is an interrupted commit
+ * and is cut off by {@link #open}. {@link #compact} rewrites base once log grows large and drops
+ * log prefix applied to it. Applying deltas is idempotent, so deltas applied to base twice after
+ * interrupted compaction do no harm.
+ * <p>
+ * Many processes may write the same index. Appending to log and replacing base are serialized by
+ * {@link Repository#lock}, and nothing but that is done under the lock: log appended by others is
+ * read from where it was read the last time, and whole index is loaded again only if base was
+ * compacted by others meanwhile, which is told by {@link RepositoryLock#getGeneration}. Readers
+ * take no lock, they read base and log again if generation changes in between.
+ * {@link #commit(Transaction)} prepares changes without the lock and prepares them again if index
+ * has changed by the time the lock is acquired.
+ * <p>
+ * Every commit has sequence number one greater than the previous one, base keeps the sequence
+ * number of the last commit applied to it, so deltas applied already are skipped. Commits after
+ * base are kept to merge them into {@link #diff} for clients having older index cached.
+ * <p>
+ * Compaction also writes base in binary format as {@code index.bin}, it is mapped instead of json
+ * when present and is what lookups and {@link #read} find dists in without loading the rest of
+ * them. Lookups and commits see base through dists added and removed by the log since, so whole
+ * repository is loaded only for {@link #getRepo} and {@link #compact}.
+ * Archive is kept the same way in {@code archive.json}, {@code archive.log} and
+ * {@code archive.bin}.
+ */
+@ThreadSafe
+public final class RepositoryIndex implements DistLookup {
+    public static final String NAME = "index";
+    public static final String ARCHIVE_NAME = "archive";
+
+    public static final String FILENAME = NAME + ".json";
+    public static final String LOG_FILENAME = NAME + ".log";
+    public static final String BINARY_FILENAME = NAME + ".bin";
+
+    private static final long COMPACTION_MIN_LOG_LENGTH = 64 * 1024;
+    private static final int COMPACTION_BASE_TO_LOG_RATIO = 4;
+
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 3;
+    private static final int MAX_READ_ATTEMPTS = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NotNull
+    private final Repository repository;
+    @NotNull
+    private final File generationFile;
+    @NotNull
+    private final File file;
+    @NotNull
+    private final File logFile;
+    @NotNull
+    private final File binaryFile;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    @NotNull
+    private Base base;
+    /**
+     * Dists added by log since base and not removed since, those removed are kept apart.
+     */
+    @NotNull
+    private DistIndex logAdded;
+    @NotNull
+    private final Set<Dist> logRemoved = new HashSet<>();
+    @NotNull
+    private final List<RepoDelta> commits = new ArrayList<>();
+    /**
+     * Base with log applied, loaded when it is asked for and kept up to date since.
+     */
+    @Nullable
+    private Repo repo;
+    private long seq;
+    private int size;
+    private long baseLength;
+    private long generation;
+    private long logLength;
+
+    private RepositoryIndex(@NotNull Repository repository, @NotNull String name) {
+        final File rootDir = repository.getRootDir();
+        this.repository = repository;
+        this.generationFile = repository.getGenerationFile();
+        this.file = new File(rootDir, name + ".json");
+        this.logFile = new File(rootDir, name + ".log");
+        this.binaryFile = new File(rootDir, name + ".bin");
+        this.base = new Base(new Repo.Editor().build());
+        this.logAdded = new DistIndex();
+    }
+
+    /**
+     * Opens index cutting off interrupted commit if any.
+     */
+    @NotNull
+    public static RepositoryIndex open(@NotNull Repository repository) throws IOException {
+        return open(repository, NAME);
+    }
+
+    /**
+     * Opens archive of dists no longer published.
+     */
+    @NotNull
+    public static RepositoryIndex openArchive(@NotNull Repository repository) throws IOException {
+        return open(repository, ARCHIVE_NAME);
+    }
+
+    @NotNull
+    private static RepositoryIndex open(@NotNull Repository repository, @NotNull String name) throws IOException {
+        final RepositoryIndex index = new RepositoryIndex(repository, name);
+        if (!index.load(null)) {
+            try (RepositoryLock lock = repository.lock()) {
+                index.load(lock);
+            }
+        }
+        if (index.getLogFile().length() > index.logLength) {
+            // either interrupted or being appended right now, the lock tells which
+            try (RepositoryLock lock = repository.lock()) {
+                index.refresh(lock);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Opens index for lookups only, which decode nothing but dists found when binary base is
+     * present. Nothing is written, interrupted commit is just ignored.
+     *
+     * @param name either {@link #NAME} or {@link #ARCHIVE_NAME}
+     */
+    @NotNull
+    public static RepositoryIndexReader read(@NotNull Repository repository, @NotNull String name) throws IOException {
+        final File rootDir = repository.getRootDir();
+        final File file = new File(rootDir, name + ".json");
+        final File logFile = new File(rootDir, name + ".log");
+        final File binaryFile = new File(rootDir, name + ".bin");
+        final RepositoryIndexReader result = readConsistent(repository.getGenerationFile(), new Read<RepositoryIndexReader>() {
+            @NotNull
+            @Override
+            public RepositoryIndexReader read() throws IOException {
+                return RepositoryIndexReader.open(file, logFile, binaryFile);
+            }
+        });
+        if (result != null) {
+            return result;
+        }
+        // nobody writes while the lock is held, it is not needed otherwise
+        final RepositoryLock lock = repository.lock();
+        try {
+            return RepositoryIndexReader.open(file, logFile, binaryFile);
+
+        } finally {
+            lock.close();
+        }
+    }
+
+    @NotNull
+    public File getFile() {
+        return file;
+    }
+
+    @NotNull
+    public File getLogFile() {
+        return logFile;
+    }
+
+    @NotNull
+    public File getBinaryFile() {
+        return binaryFile;
+    }
+
+    /**
+     * Loads whole repository on the first call, which is what lookups avoid.
+     */
+    @NotNull
+    public synchronized Repo getRepo() {
+        if (repo == null) {
+            final Repo.Editor editor = base.load().edit();
+            for (RepoDelta commit : commits) {
+                commit.apply(editor);
+            }
+            repo = editor.build();
+        }
+        return repo;
+    }
+
+    /**
+     * @return sequence number of the last commit
+     */
+    public synchronized long getSeq() {
+        return seq;
+    }
+
+    /**
+     * @return number of dists, counted as they are committed
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean contains(@NotNull Dist dist) {
+        return logAdded.all().contains(dist) || !logRemoved.contains(dist) && base.byVersion(dist.applicationId, dist.version.versionCode).contains(dist);
+    }
+
+    /**
+     * Catches up with commits of other processes without taking repository lock.
+     */
+    public synchronized void update() throws IOException {
+        refresh(null);
+    }
+
+    /**
+     * Merges commits after given sequence number into single diff, so that whatever dist is added
+     * and then removed is just removed and vice versa.
+     *
+     * @return diff or {@code null} if commits since then are compacted into base already
+     * @throws IllegalArgumentException if there is no such sequence number yet
+     */
+    @Nullable
+    public synchronized RepoDelta diff(long since) {
+        if (since > seq) {
+            throw new IllegalArgumentException("No commit " + since + " yet, the last one is " + seq);
+        }
+        if (since < base.seq) {
+            return null;
+        }
+        final Set<Dist> added = new LinkedHashSet<>();
+        final Set<Dist> removed = new LinkedHashSet<>();
+        for (RepoDelta commit : commits) {
+            if (commit.seq <= since) {
+                continue;
+            }
+            for (Dist dist : commit.removed) {
+                added.remove(dist);
+                removed.add(dist);
+            }
+            for (Dist dist : commit.added) {
+                removed.remove(dist);
+                added.add(dist);
+            }
+        }
+        return new RepoDelta(since, seq, Collections.unmodifiableSet(added), Collections.unmodifiableSet(removed));
+    }
+
+    @NotNull
+    @Override
+    public synchronized Set<Dist> byApplicationId(@NotNull String applicationId) {
+        return merge(base.byApplicationId(applicationId), logAdded.byApplicationId(applicationId));
+    }
+
+    @NotNull
+    @Override
+    public synchronized Set<Dist> byFingerprint(@NotNull Checksum fingerprint) {
+        return merge(base.byFingerprint(fingerprint), logAdded.byFingerprint(fingerprint));
+    }
+
+    @NotNull
+    @Override
+    public synchronized Set<Dist> byVersion(@NotNull String applicationId, int versionCode) {
+        return merge(base.byVersion(applicationId, versionCode), logAdded.byVersion(applicationId, versionCode));
+    }
+
+    @NotNull
+    @Override
+    public synchronized Set<Dist> all() {
+        return getRepo().dists;
+    }
+
+    @NotNull
+    private Set<Dist> merge(@NotNull Collection<Dist> found, @NotNull Collection<Dist> added) {
+        final Set<Dist> result = new LinkedHashSet<>();
+        for (Dist dist : found) {
+            if (!logRemoved.contains(dist)) {
+                result.add(dist);
+            }
+        }
+        result.addAll(added);
+        return result;
+    }
+
+    /**
+     * Changes to commit, prepared against index as it is at the moment.
+     */
+    public interface Transaction {
+        /**
+         * Called again with empty collections whenever index is changed by someone else before
+         * changes are committed, so it must have no effects but filling collections.
+         *
+         * @return {@code false} to commit nothing
+         */
+        boolean prepare(@NotNull Collection<Dist> added, @NotNull Collection<Dist> removed) throws IOException;
+    }
+
+    /**
+     * Removes and then adds dists appending a single delta to log.
+     */
+    public void commit(@NotNull final Collection<Dist> added, @NotNull final Collection<Dist> removed) throws IOException {
+        commit(new Transaction() {
+            @Override
+            public boolean prepare(@NotNull Collection<Dist> preparedAdded, @NotNull Collection<Dist> preparedRemoved) {
+                preparedAdded.addAll(added);
+                preparedRemoved.addAll(removed);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Prepares changes without repository lock and commits them under the lock unless index has
+     * changed meanwhile, otherwise catches up and tries again. After few attempts changes are
+     * prepared under the lock, so that commit is not starved by busier writers.
+     *
+     * @return whether anything is committed
+     */
+    public boolean commit(@NotNull Transaction transaction) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            final boolean optimistic = attempt <= MAX_OPTIMISTIC_ATTEMPTS;
+            final List<Dist> added = new ArrayList<>();
+            final List<Dist> removed = new ArrayList<>();
+
+            long preparedSeq = RepoDelta.UNKNOWN;
+            if (optimistic) {
+                synchronized (this) {
+                    refresh(null);
+                    preparedSeq = seq;
+                }
+                if (!transaction.prepare(added, removed)) {
+                    return false;
+                }
+            }
+
+            try (RepositoryLock lock = repository.lock()) {
+                synchronized (this) {
+                    refresh(lock);
+                    if (!optimistic) {
+                        if (!transaction.prepare(added, removed)) {
+                            return false;
+                        }
+
+                    } else if (seq != preparedSeq) {
+                        continue;
+                    }
+                    append(added, removed);
+                    return true;
+                }
+            }
+        }
+    }
+
+    private void append(@NotNull List<Dist> added, @NotNull List<Dist> removed) throws IOException {
+        final RepoDelta commit = new RepoDelta(RepoDelta.UNKNOWN, seq + 1,
+                Collections.unmodifiableSet(new LinkedHashSet<>(added)),
+                Collections.unmodifiableSet(new LinkedHashSet<>(removed)));
+
+        final StringWriter delta = new StringWriter();
+        new JsonRepoDumper(delta).writeDeltaDecorated(commit);
+        delta.write('\n');
+        final byte[] bytes = delta.toString().getBytes(UTF_8);
+
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            final FileChannel channel = out.getChannel();
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            out.getFD().sync();
+        }
+        logLength += bytes.length;
+
+        apply(Collections.singletonList(commit));
+    }
+
+    /**
+     * Applies deltas to dists logged since base, and to repository only if it is loaded already.
+     */
+    private void apply(@NotNull List<RepoDelta> applied) {
+        if (applied.isEmpty()) {
+            return;
+        }
+        final Repo.Editor editor = repo != null ? repo.edit() : null;
+        for (RepoDelta commit : applied) {
+            for (Dist dist : commit.removed) {
+                if (contains(dist)) {
+                    size--;
+                }
+                logRemove(dist);
+            }
+            for (Dist dist : commit.added) {
+                if (!contains(dist)) {
+                    size++;
+                }
+                logAdd(dist);
+            }
+            if (editor != null) {
+                commit.apply(editor);
+            }
+            commits.add(commit);
+            seq = commit.seq;
+        }
+        if (editor != null) {
+            repo = editor.build();
+        }
+    }
+
+    private void logRemove(@NotNull Dist dist) {
+        logAdded.remove(dist);
+        logRemoved.add(dist);
+    }
+
+    private void logAdd(@NotNull Dist dist) {
+        logRemoved.remove(dist);
+        logAdded.add(dist);
+    }
+
+    /**
+     * @return whether log is large enough relative to base to be compacted
+     */
+    public synchronized boolean isCompactionDue() {
+        return logLength > Math.max(COMPACTION_MIN_LOG_LENGTH, baseLength / COMPACTION_BASE_TO_LOG_RATIO);
+    }
+
+    /**
+     * Rewrites base with everything committed so far. Commits are not blocked while base is being
+     * written, so it is fine to call it from background thread. Base is moved in place and log
+     * prefix is dropped under repository lock.
+     *
+     * @return {@code false} if compaction is running already or base has been replaced by
+     * another process meanwhile
+     */
+    public boolean compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            final Repo snapshot;
+            final long snapshotLogLength;
+            final long snapshotGeneration;
+            synchronized (this) {
+                snapshot = getRepo();
+                snapshotLogLength = logLength;
+                snapshotGeneration = generation;
+            }
+            final File temp = writeTemp(file, snapshot, false);
+            File binaryTemp = null;
+            try {
+                binaryTemp = writeTemp(binaryFile, snapshot, true);
+
+                try (RepositoryLock lock = repository.lock()) {
+                    synchronized (this) {
+                        if (lock.getGeneration() != snapshotGeneration) {
+                            return false;
+                        }
+                        // odd while base and log do not match, readers read them again then
+                        lock.setGeneration(snapshotGeneration + 1);
+                        final long length = temp.length();
+                        move(temp, file);
+                        move(binaryTemp, binaryFile);
+                        dropLogPrefix(snapshotLogLength);
+                        lock.setGeneration(snapshotGeneration + 2);
+
+                        base = mapBinary();
+                        baseLength = length;
+                        generation = snapshotGeneration + 2;
+                        logLength -= snapshotLogLength;
+                        logAdded = new DistIndex();
+                        logRemoved.clear();
+                        for (Iterator<RepoDelta> iterator = commits.iterator(); iterator.hasNext(); ) {
+                            final RepoDelta commit = iterator.next();
+                            if (commit.seq <= base.seq) {
+                                iterator.remove();
+                                continue;
+                            }
+                            for (Dist dist : commit.removed) {
+                                logRemove(dist);
+                            }
+                            for (Dist dist : commit.added) {
+                                logAdd(dist);
+                            }
+                        }
+                    }
+                }
+                return true;
+
+            } finally {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                if (binaryTemp != null) {
+                    //noinspection ResultOfMethodCallIgnored
+                    binaryTemp.delete();
+                }
+            }
+
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Loads base and then log, either under given lock or consistently without it.
+     *
+     * @return {@code false} if nothing is loaded as base keeps being replaced meanwhile
+     */
+    private synchronized boolean load(@Nullable final RepositoryLock lock) throws IOException {
+        final Loaded loaded = lock != null ? new Loaded(lock.getGeneration()) : readConsistent(generationFile, new Read<Loaded>() {
+            @NotNull
+            @Override
+            public Loaded read() throws IOException {
+                return new Loaded(RepositoryLock.readGeneration(generationFile));
+            }
+        });
+        if (loaded == null) {
+            return false;
+        }
+
+        base = loaded.base;
+        logAdded = new DistIndex();
+        logRemoved.clear();
+        commits.clear();
+        repo = null;
+        seq = base.seq;
+        size = base.size;
+        apply(loaded.logged);
+        baseLength = loaded.baseLength;
+        generation = loaded.generation;
+        logLength = loaded.logLength;
+        return true;
+    }
+
+    /**
+     * Base and committed part of log read at given generation.
+     */
+    private final class Loaded {
+        final long generation;
+        final Base base;
+        final long baseLength;
+        final List<RepoDelta> logged;
+        final long logLength;
+
+        Loaded(long generation) throws IOException {
+            this.generation = generation;
+            this.base = loadBase();
+            this.baseLength = file.length();
+
+            final byte[] log = logFile.isFile() ? Files.readAllBytes(logFile.toPath()) : new byte[0];
+            final int committed = committed(log);
+            this.logged = readLog(logFile, log, committed, base.seq);
+            this.logLength = committed;
+        }
+    }
+
+    @NotNull
+    private Base loadBase() throws IOException {
+        if (binaryFile.isFile()) {
+            return mapBinary();
+
+        } else if (file.isFile()) {
+            try {
+                return new Base(JsonRepoFactory.getInstance().loadDecorated(ByteJsonReader.map(file)));
+
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IOException("Malformed index " + file, e);
+            }
+
+        } else {
+            return new Base(new Repo.Editor().build());
+        }
+    }
+
+    @NotNull
+    private Base mapBinary() throws IOException {
+        try {
+            return new Base(BinaryRepoReader.map(binaryFile));
+
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed index " + binaryFile, e);
+        }
+    }
+
+    /**
+     * Base segment, either mapped binary base decoding nothing but dists found or json base written
+     * by older versions loaded whole.
+     */
+    private static final class Base {
+        @Nullable
+        private final BinaryRepoReader binary;
+        @Nullable
+        private final Repo json;
+        @Nullable
+        private final DistIndex jsonIndex;
+
+        final long seq;
+        final int size;
+
+        Base(@NotNull BinaryRepoReader binary) {
+            this.binary = binary;
+            this.json = null;
+            this.jsonIndex = null;
+            this.seq = binary.seq();
+            this.size = binary.size();
+        }
+
+        Base(@NotNull Repo json) {
+            this.binary = null;
+            this.json = json;
+            this.jsonIndex = new DistIndex(json.dists);
+            this.seq = json.seq;
+            this.size = json.dists.size();
+        }
+
+        @NotNull
+        Collection<Dist> byApplicationId(@NotNull String applicationId) {
+            return binary != null ? binary.byApplicationId(applicationId) : jsonIndex.byApplicationId(applicationId);
+        }
+
+        @NotNull
+        Collection<Dist> byFingerprint(@NotNull Checksum fingerprint) {
+            return binary != null ? binary.byFingerprint(fingerprint) : jsonIndex.byFingerprint(fingerprint);
+        }
+
+        @NotNull
+        Collection<Dist> byVersion(@NotNull String applicationId, int versionCode) {
+            return binary != null ? binary.byVersion(applicationId, versionCode) : jsonIndex.byVersion(applicationId, versionCode);
+        }
+
+        @NotNull
+        Repo load() {
+            return binary != null ? binary.load() : json;
+        }
+    }
+
+    /**
+     * Catches up with commits of other processes. Index is loaded again if base has been replaced,
+     * otherwise just log appended is read. Under repository lock nobody is appending, so line
+     * without line feed is an interrupted commit and it is cut off.
+     */
+    private void refresh(@Nullable RepositoryLock lock) throws IOException {
+        final long current = lock != null ? lock.getGeneration() : RepositoryLock.readGeneration(generationFile);
+        if (current != generation && !load(lock)) {
+            // catches up under the lock then
+            return;
+        }
+        final long length = logFile.length();
+        if (length <= logLength) {
+            return;
+        }
+        final byte[] tail = new byte[(int) (length - logLength)];
+        boolean replaced = false;
+        try (RandomAccessFile in = new RandomAccessFile(logFile, "r")) {
+            in.seek(logLength);
+            in.readFully(tail);
+
+        } catch (EOFException e) {
+            if (lock != null) {
+                throw e;
+            }
+            replaced = true;
+        }
+        if (lock == null && (replaced || RepositoryLock.readGeneration(generationFile) != generation)) {
+            // log is replaced while it is read
+            load(null);
+            return;
+        }
+        final int committed = committed(tail);
+        if (lock != null && committed != tail.length) {
+            truncate(logFile, logLength + committed);
+        }
+        apply(readLog(logFile, tail, committed, seq));
+        logLength += committed;
+    }
+
+    interface Read<T> {
+        @NotNull
+        T read() throws IOException;
+    }
+
+    /**
+     * Reads base and log without lock, again if generation is odd or changes meanwhile.
+     *
+     * @return {@code null} if generation keeps changing
+     */
+    @Nullable
+    static <T> T readConsistent(@NotNull File generationFile, @NotNull Read<T> read) throws IOException {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            final long generation = RepositoryLock.readGeneration(generationFile);
+            if (generation % 2 != 0) {
+                Thread.yield();
+                continue;
+            }
+            final T result = read.read();
+            if (generation == RepositoryLock.readGeneration(generationFile)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return length of log up to the last line feed
+     */
+    static int committed(@NotNull byte[] log) {
+        int result = log.length;
+        while (result > 0 && log[result - 1] != '\n') {
+            result--;
+        }
+        return result;
+    }
+
+    /**
+     * Reads committed part of log skipping deltas applied to base already. Deltas written without
+     * sequence number are numbered as if they had it.
+     */
+    @NotNull
+    static List<RepoDelta> readLog(@NotNull File logFile, @NotNull byte[] log, int committed, long baseSeq) throws IOException {
+        final List<RepoDelta> result = new ArrayList<>();
+        long seq = baseSeq;
+
+        for (int start = 0, end; start < committed; start = end + 1) {
+            end = start;
+            while (end < committed && log[end] != '\n') {
+                end++;
+            }
+            RepoDelta delta;
+            try {
+                delta = JsonRepoFactory.getInstance().loadDeltaDecorated(new ByteJsonReader(ByteBuffer.wrap(log, start, end - start)));
+
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IOException("Malformed index log " + logFile, e);
+            }
+            if (delta.seq == RepoDelta.UNKNOWN) {
+                delta = new RepoDelta(RepoDelta.UNKNOWN, seq + 1, delta.added, delta.removed);
+            }
+            if (delta.seq <= seq) {
+                continue;
+            }
+            seq = delta.seq;
+            result.add(delta);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces log with its part after given length, which is synced before it is moved in place.
+     */
+    private void dropLogPrefix(long prefixLength) throws IOException {
+        final File temp = File.createTempFile(logFile.getName(), ".tmp", logFile.getParentFile());
+        try {
+            try (FileInputStream in = new FileInputStream(logFile);
+                 FileOutputStream out = new FileOutputStream(temp)) {
+                final FileChannel channel = in.getChannel();
+                long position = prefixLength;
+                final long size = channel.size();
+                while (position < size) {
+                    final long transferred = channel.transferTo(position, size - position, out.getChannel());
+                    if (transferred <= 0) {
+                        throw new IOException("Cannot transfer beyond " + position + " of " + size);
+                    }
+                    position += transferred;
+                }
+                out.getFD().sync();
+            }
+            move(temp, logFile);
+
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    /**
+     * Writes synced temporary file beside given file to be moved in place.
+     */
+    @NotNull
+    private static File writeTemp(@NotNull File file, @NotNull Repo repo, boolean binary) throws IOException {
+        final File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        boolean written = false;
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                if (binary) {
+                    new BinaryRepoDumper(out).write(repo);
+
+                } else {
+                    final Writer writer = new OutputStreamWriter(out, UTF_8);
+                    new JsonRepoDumper(writer).writeDecorated(repo);
+                    writer.flush();
+                }
+                out.getFD().sync();
+            }
+            written = true;
+            return temp;
+
+        } finally {
+            if (!written) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Moves file atomically and durably.
+     */
+    private static void move(@NotNull File source, @NotNull File target) throws IOException {
+        Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDir(target.getParentFile());
+    }
+
+    private static void truncate(@NotNull File file, long length) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(length);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Makes renames in directory durable where directories can be opened, does nothing elsewhere.
+     */
+    private static void syncDir(@NotNull File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+
+        } catch (IOException ignore) {
+            // not supported on this platform
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.DistVisitor;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.RepoDelta;
+import io.github.eterverda.playless.common.binary.BinaryRepoReader;
+import io.github.eterverda.playless.common.json.ByteJsonReader;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Read only view of {@link RepositoryIndex}. Dists are looked up in memory mapped binary base
+ * decoding only dists found there, and then every delta of log is applied to what is found. Log
+ * is parsed upfront, but it is kept small by compaction. Base written by older versions has no
+ * binary counterpart, so json base is loaded and indexed whole.
+ */
+@NotThreadSafe
+public final class RepositoryIndexReader implements DistLookup {
+    @Nullable
+    private final BinaryRepoReader binaryBase;
+    @Nullable
+    private final DistIndex jsonBase;
+
+    private final List<RepoDelta> commits;
+    private final long seq;
+
+    private RepositoryIndexReader(@Nullable BinaryRepoReader binaryBase, @Nullable DistIndex jsonBase, @NotNull List<RepoDelta> commits, long seq) {
+        this.binaryBase = binaryBase;
+        this.jsonBase = jsonBase;
+        this.commits = commits;
+        this.seq = seq;
+    }
+
+    @NotNull
+    static RepositoryIndexReader open(@NotNull File file, @NotNull File logFile, @NotNull File binaryFile) throws IOException {
+        BinaryRepoReader binaryBase = null;
+        DistIndex jsonBase = null;
+        long baseSeq = 0;
+
+        if (binaryFile.isFile()) {
+            try {
+                binaryBase = BinaryRepoReader.map(binaryFile);
+                baseSeq = binaryBase.seq();
+
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed index " + binaryFile, e);
+            }
+
+        } else if (file.isFile()) {
+            try {
+                final JsonBase base = new JsonBase();
+                JsonRepoFactory.getInstance().visitDecorated(ByteJsonReader.map(file), base);
+                jsonBase = base.dists;
+                baseSeq = base.seq;
+
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IOException("Malformed index " + file, e);
+            }
+
+        } else {
+            jsonBase = new DistIndex();
+        }
+
+        List<RepoDelta> commits = Collections.emptyList();
+        if (logFile.isFile()) {
+            final byte[] log = Files.readAllBytes(logFile.toPath());
+            commits = RepositoryIndex.readLog(logFile, log, RepositoryIndex.committed(log), baseSeq);
+        }
+        final long seq = commits.isEmpty() ? baseSeq : commits.get(commits.size() - 1).seq;
+
+        return new RepositoryIndexReader(binaryBase, jsonBase, commits, seq);
+    }
+
+    /**
+     * @return sequence number of the last commit
+     */
+    public long getSeq() {
+        return seq;
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> byApplicationId(@NotNull final String applicationId) {
+        final Collection<Dist> base = binaryBase != null ? binaryBase.byApplicationId(applicationId) : jsonBase.byApplicationId(applicationId);
+        return applyLog(base, new Matcher() {
+            @Override
+            public boolean matches(@NotNull Dist dist) {
+                return dist.applicationId.equals(applicationId);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> byFingerprint(@NotNull final Checksum fingerprint) {
+        final Collection<Dist> base = binaryBase != null ? binaryBase.byFingerprint(fingerprint) : jsonBase.byFingerprint(fingerprint);
+        return applyLog(base, new Matcher() {
+            @Override
+            public boolean matches(@NotNull Dist dist) {
+                return fingerprint.equals(dist.version.fingerprint);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> byVersion(@NotNull final String applicationId, final int versionCode) {
+        final Collection<Dist> base = binaryBase != null ? binaryBase.byVersion(applicationId, versionCode) : jsonBase.byVersion(applicationId, versionCode);
+        return applyLog(base, new Matcher() {
+            @Override
+            public boolean matches(@NotNull Dist dist) {
+                return dist.version.versionCode == versionCode && dist.applicationId.equals(applicationId);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public Set<Dist> all() {
+        final Collection<Dist> base = binaryBase != null ? binaryBase.load().dists : jsonBase.all();
+        return applyLog(base, new Matcher() {
+            @Override
+            public boolean matches(@NotNull Dist dist) {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Applies deltas in order to dists found in base, but only to those dists of deltas which
+     * would have been found.
+     */
+    @NotNull
+    private Set<Dist> applyLog(@NotNull Collection<Dist> base, @NotNull Matcher matcher) {
+        final Set<Dist> result = new LinkedHashSet<>(base);
+        for (RepoDelta commit : commits) {
+            for (Dist dist : commit.removed) {
+                if (matcher.matches(dist)) {
+                    result.remove(dist);
+                }
+            }
+            for (Dist dist : commit.added) {
+                if (matcher.matches(dist)) {
+                    result.add(dist);
+                }
+            }
+        }
+        return result.isEmpty() ? Collections.<Dist>emptySet() : result;
+    }
+
+    private interface Matcher {
+        boolean matches(@NotNull Dist dist);
+    }
+
+    /**
+     * Indexes dists of json base as they are read, so that base is not held twice.
+     */
+    private static final class JsonBase implements DistVisitor {
+        final DistIndex dists = new DistIndex();
+        long seq;
+
+        @Override
+        public void seq(long seq) {
+            this.seq = seq;
+        }
+
+        @Override
+        public void meta(@NotNull String key, @NotNull String value) {
+        }
+
+        @Override
+        public void link(@NotNull Link link) {
+        }
+
+        @Override
+        public void dist(@NotNull Dist dist) {
+            dists.add(dist);
+        }
+    }
+}
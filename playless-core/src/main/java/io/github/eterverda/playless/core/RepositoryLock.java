@@ -0,0 +1,146 @@
+package io.github.eterverda.playless.core;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exclusive lock of repository, that is lock of {@code .playless/lock} file. File lock is held on
+ * behalf of the whole process, so threads of the same process wait for each other before they
+ * lock the file. Lock is not reentrant.
+ * <p>
+ * Generation is kept beside the lock file, it is incremented before and after index base is
+ * replaced, so it is odd while base is being replaced. It is changed under the lock only, but it
+ * may be read without the lock to tell whether whatever is read in between is consistent. The
+ * lock file itself is never opened but to lock it, as closing any descriptor of the file releases
+ * locks of the whole process on some platforms.
+ */
+@ThreadSafe
+public final class RepositoryLock implements Closeable {
+    private static final ConcurrentMap<File, Semaphore> LOCAL = new ConcurrentHashMap<>();
+
+    @NotNull
+    private final Semaphore local;
+    @NotNull
+    private final RandomAccessFile file;
+    @NotNull
+    private final FileLock lock;
+    @NotNull
+    private final File generationFile;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private RepositoryLock(@NotNull Semaphore local, @NotNull RandomAccessFile file, @NotNull FileLock lock, @NotNull File generationFile) {
+        this.local = local;
+        this.file = file;
+        this.lock = lock;
+        this.generationFile = generationFile;
+    }
+
+    /**
+     * Blocks until lock is acquired. Odd generation left by interrupted replacement of base is
+     * made even, whatever is replaced by then is fine to read.
+     */
+    @NotNull
+    static RepositoryLock acquire(@NotNull File lockFile, @NotNull File generationFile) throws IOException {
+        final Semaphore local = local(lockFile);
+        try {
+            local.acquire();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(lockFile, "rw");
+            final RepositoryLock result = new RepositoryLock(local, file, file.getChannel().lock(), generationFile);
+            final long generation = result.getGeneration();
+            if (generation % 2 != 0) {
+                result.setGeneration(generation + 1);
+            }
+            return result;
+
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                try {
+                    file.close();
+
+                } catch (IOException ignore) {
+                    // failed already
+                }
+            }
+            local.release();
+            throw e;
+        }
+    }
+
+    public long getGeneration() throws IOException {
+        return readGeneration(generationFile);
+    }
+
+    /**
+     * Writes generation durably, so that it is changed before whatever it guards is replaced.
+     * It is written at once, so that it is never read half written.
+     */
+    public void setGeneration(long generation) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(generationFile, "rw")) {
+            out.write(ByteBuffer.allocate(8).putLong(generation).array());
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Reads generation without lock.
+     */
+    static long readGeneration(@NotNull File generationFile) throws IOException {
+        final byte[] bytes = new byte[8];
+        try (RandomAccessFile in = new RandomAccessFile(generationFile, "r")) {
+            in.readFully(bytes);
+
+        } catch (FileNotFoundException | EOFException ignore) {
+            return 0;
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lock.release();
+            file.close();
+
+        } finally {
+            local.release();
+        }
+    }
+
+    @NotNull
+    private static Semaphore local(@NotNull File lockFile) {
+        final Semaphore semaphore = LOCAL.get(lockFile);
+        if (semaphore != null) {
+            return semaphore;
+        }
+        final Semaphore created = new Semaphore(1);
+        final Semaphore existing = LOCAL.putIfAbsent(lockFile, created);
+        return existing != null ? existing : created;
+    }
+}
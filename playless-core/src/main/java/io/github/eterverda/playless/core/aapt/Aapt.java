@@ -0,0 +1,19 @@
+package io.github.eterverda.playless.core.aapt;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Backend running {@code aapt dump badging}. Implementations are thread-safe, closing releases
+ * processes they keep.
+ */
+public interface Aapt extends Closeable {
+    /**
+     * @return badging output, the same for aapt and aapt2
+     */
+    @NotNull
+    String dumpBadging(@NotNull File apk) throws IOException;
+}
@@ -0,0 +1,208 @@
+package io.github.eterverda.playless.core.aapt;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Single long-lived {@code aapt2 daemon} process. Commands are written to its stdin line by line
+ * and terminated by empty line. Output of command is written to its stdout, while stderr carries
+ * diagnostics, then {@code Error} line if command has failed, and then {@code Done} line, which
+ * comes after stdout has been flushed. Stdout is appended to temporary file, so that daemon never
+ * blocks on full pipe, and the file is read and emptied once {@code Done} is there. Dumps are
+ * serialized, use {@link Aapt2DaemonPool} to run them concurrently.
+ */
+@ThreadSafe
+public class Aapt2Daemon implements Aapt {
+    private static final String READY = "Ready";
+    private static final String DONE = "Done";
+    private static final String ERROR = "Error";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Lines of stderr which are not diagnostics, and its end.
+     */
+    private enum Marker {
+        DONE, ERROR, EOF
+    }
+
+    private final Process process;
+    private final File output;
+    private final Writer in;
+    private final BlockingQueue<Marker> markers = new LinkedBlockingQueue<>();
+
+    @GuardedBy("this")
+    private boolean broken;
+    /**
+     * Whether {@code Ready} line has been taken off the output.
+     */
+    @GuardedBy("this")
+    private boolean ready;
+
+    public Aapt2Daemon(@NotNull File aapt2) throws IOException {
+        output = File.createTempFile("aapt2-daemon", ".out");
+        try {
+            process = new ProcessBuilder(aapt2.getPath(), "daemon").redirectOutput(ProcessBuilder.Redirect.appendTo(output)).start();
+
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            output.delete();
+            throw e;
+        }
+        in = new OutputStreamWriter(process.getOutputStream(), UTF_8);
+
+        final Thread errors = new Thread(new ErrorReader(process.getErrorStream(), markers), "aapt2-daemon-stderr");
+        errors.setDaemon(true);
+        errors.start();
+    }
+
+    @NotNull
+    @Override
+    public synchronized String dumpBadging(@NotNull File apk) throws IOException {
+        if (broken) {
+            throw new IOException("aapt2 daemon is not running");
+        }
+        try {
+            // commands are buffered by stdin until daemon is ready
+            in.write("dump\nbadging\n" + apk.getAbsolutePath() + "\n\n");
+            in.flush();
+
+            boolean failed = false;
+            Marker marker;
+            while ((marker = markers.take()) == Marker.ERROR) {
+                // Done follows
+                failed = true;
+            }
+            if (marker == Marker.EOF) {
+                throw new EOFException("aapt2 daemon exited while dumping " + apk);
+            }
+            // stdout is flushed before Done
+            final String result = takeOutput();
+            if (failed) {
+                throw new AaptException("aapt2 cannot dump badging of " + apk);
+            }
+            return result;
+
+        } catch (AaptException e) {
+            throw e;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            broken = true;
+            destroy();
+            throw new InterruptedIOException("Interrupted while dumping " + apk);
+
+        } catch (IOException e) {
+            broken = true;
+            destroy();
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether daemon process has gone and no more dumps are possible
+     */
+    public synchronized boolean isBroken() {
+        return broken;
+    }
+
+    @Override
+    public synchronized void close() {
+        broken = true;
+        try {
+            in.close();
+        } catch (IOException ignore) {
+        }
+        destroy();
+    }
+
+    private void destroy() {
+        process.destroy();
+        //noinspection ResultOfMethodCallIgnored
+        output.delete();
+    }
+
+    /**
+     * Reads and empties output, daemon appends to it, so it keeps writing at its new end.
+     */
+    @NotNull
+    private String takeOutput() throws IOException {
+        final byte[] bytes;
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            file.setLength(0);
+        }
+        final String result = new String(bytes, UTF_8);
+        if (ready) {
+            return result;
+        }
+        final int end = result.indexOf('\n');
+        if (end == -1 || !result.substring(0, end).trim().equals(READY)) {
+            throw new IOException("aapt2 daemon has not got ready");
+        }
+        ready = true;
+        return result.substring(end + 1);
+    }
+
+    /**
+     * Passes diagnostics of stderr to {@link System#err} and queues markers.
+     */
+    private static final class ErrorReader implements Runnable {
+        private final InputStream err;
+        private final BlockingQueue<Marker> markers;
+
+        ErrorReader(@NotNull InputStream err, @NotNull BlockingQueue<Marker> markers) {
+            this.err = err;
+            this.markers = markers;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(err, UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.equals(DONE)) {
+                        markers.add(Marker.DONE);
+                    } else if (line.equals(ERROR)) {
+                        markers.add(Marker.ERROR);
+                    } else {
+                        System.err.println(line);
+                    }
+                }
+            } catch (IOException ignore) {
+                // process has gone
+            } finally {
+                markers.add(Marker.EOF);
+            }
+        }
+    }
+
+    /**
+     * Daemon reported failure of a single command, it keeps running.
+     */
+    private static class AaptException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        AaptException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.eterverda.playless.core.aapt;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Up to given number of {@link Aapt2Daemon}s started on demand, each dump borrows an idle one.
+ * Daemons that have gone are replaced by new ones.
+ */
+@ThreadSafe
+public class Aapt2DaemonPool implements Aapt {
+    @NotNull
+    private final File aapt2;
+    private final int size;
+
+    @GuardedBy("this")
+    private final Deque<Aapt2Daemon> idle = new ArrayDeque<>();
+    @GuardedBy("this")
+    private int started;
+    @GuardedBy("this")
+    private boolean closed;
+
+    public Aapt2DaemonPool(@NotNull File aapt2, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size should be positive but was " + size);
+        }
+        this.aapt2 = aapt2;
+        this.size = size;
+    }
+
+    @NotNull
+    @Override
+    public String dumpBadging(@NotNull File apk) throws IOException {
+        final Aapt2Daemon daemon = acquire();
+        try {
+            return daemon.dumpBadging(apk);
+
+        } finally {
+            release(daemon);
+        }
+    }
+
+    @NotNull
+    private Aapt2Daemon acquire() throws IOException {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new IOException("aapt2 daemon pool is closed");
+                }
+                if (!idle.isEmpty()) {
+                    return idle.pop();
+                }
+                if (started < size) {
+                    started++;
+                    break;
+                }
+                try {
+                    wait();
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+        // daemon is started outside of lock as it takes a while
+        try {
+            return new Aapt2Daemon(aapt2);
+
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                started--;
+                notify();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void release(@NotNull Aapt2Daemon daemon) {
+        if (closed || daemon.isBroken()) {
+            daemon.close();
+            started--;
+        } else {
+            idle.push(daemon);
+        }
+        notify();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        while (!idle.isEmpty()) {
+            final Aapt2Daemon daemon = idle.pop();
+            daemon.close();
+            started--;
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.eterverda.playless.core.aapt;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Spawns aapt (or aapt2) process per each dump.
+ */
+@ThreadSafe
+public class ExecAapt implements Aapt {
+    @NotNull
+    private final File aapt;
+
+    public ExecAapt(@NotNull File aapt) {
+        this.aapt = aapt;
+    }
+
+    @NotNull
+    @Override
+    public String dumpBadging(@NotNull File apk) throws IOException {
+        final CommandLine line = new CommandLine(aapt)
+                .addArgument("dump")
+                .addArgument("badging")
+                .addArgument(apk.getAbsolutePath());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final DefaultExecutor executor = new DefaultExecutor();
+        executor.setStreamHandler(new PumpStreamHandler(out, System.err));
+
+        executor.execute(line);
+
+        return out.toString("UTF-8");
+    }
+
+    @Override
+    public void close() {
+    }
+}
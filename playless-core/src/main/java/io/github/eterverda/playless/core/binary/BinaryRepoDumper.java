@@ -0,0 +1,233 @@
+package io.github.eterverda.playless.core.binary;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.binary.BinaryConstants;
+import io.github.eterverda.playless.common.binary.BinaryRepoReader;
+import io.github.eterverda.playless.core.DistComparator;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Writes repository in format read by {@link BinaryRepoReader}, dists are in the same order as
+ * in json.
+ */
+public class BinaryRepoDumper {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final OutputStream out;
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    public BinaryRepoDumper(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(Repo repo) throws IOException {
+        final Dist[] dists = repo.dists.toArray(new Dist[repo.dists.size()]);
+        Arrays.sort(dists, DistComparator.INSTANCE);
+
+        final ByteArrayOutputStream variable = new ByteArrayOutputStream();
+        final int[] variableOffsets = new int[dists.length];
+        final int[] applicationIds = new int[dists.length];
+        for (int i = 0; i < dists.length; i++) {
+            applicationIds[i] = string(dists[i].applicationId);
+            variableOffsets[i] = variable.size();
+            writeVariable(variable, dists[i]);
+        }
+        final int repoVariableOffset = variable.size();
+        writeLinks(variable, repo.links);
+        writeMeta(variable, repo.meta);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            variable.write((int) (repo.seq >>> shift));
+        }
+
+        final ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        final int[] stringOffsets = new int[strings.size()];
+        for (int i = 0; i < stringOffsets.length; i++) {
+            stringOffsets[i] = stringData.size();
+            final byte[] bytes = strings.get(i).getBytes(UTF_8);
+            writeVarint(stringData, bytes.length);
+            stringData.write(bytes);
+        }
+
+        final int stringTableOffset = BinaryConstants.HEADER_SIZE;
+        final int stringDataOffset = stringTableOffset + 4 * stringOffsets.length;
+        final int distTableOffset = stringDataOffset + stringData.size();
+        final int variableOffset = distTableOffset + BinaryConstants.DIST_RECORD_SIZE * dists.length;
+        final int fingerprintTableOffset = variableOffset + variable.size();
+
+        final Integer[] fingerprints = fingerprints(dists);
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+
+        data.writeInt(BinaryConstants.MAGIC);
+        data.writeShort(BinaryConstants.VERSION_2);
+        data.writeShort(0);
+        data.writeInt(stringOffsets.length);
+        data.writeInt(dists.length);
+        data.writeInt(stringTableOffset);
+        data.writeInt(distTableOffset);
+        data.writeInt(variableOffset + repoVariableOffset);
+        data.writeInt(fingerprintTableOffset);
+
+        for (int stringOffset : stringOffsets) {
+            data.writeInt(stringDataOffset + stringOffset);
+        }
+        stringData.writeTo(data);
+
+        for (int i = 0; i < dists.length; i++) {
+            final Dist.Version version = dists[i].version;
+            data.writeInt(applicationIds[i]);
+            data.writeInt(version.versionCode);
+            data.writeLong(version.timestamp);
+            data.writeInt(flags(version));
+            data.writeInt(variableOffset + variableOffsets[i]);
+        }
+        variable.writeTo(data);
+
+        data.writeInt(fingerprints.length);
+        for (int index : fingerprints) {
+            data.writeInt(index);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * @return indexes of dists having fingerprint ordered by it
+     */
+    @NotNull
+    private static Integer[] fingerprints(@NotNull final Dist[] dists) {
+        final List<Integer> result = new ArrayList<>(dists.length);
+        for (int i = 0; i < dists.length; i++) {
+            if (dists[i].version.fingerprint != null) {
+                result.add(i);
+            }
+        }
+        final Integer[] array = result.toArray(new Integer[result.size()]);
+        Arrays.sort(array, new Comparator<Integer>() {
+            @SuppressWarnings("ConstantConditions")
+            @Override
+            public int compare(Integer a, Integer b) {
+                return dists[a].version.fingerprint.compareTo(dists[b].version.fingerprint);
+            }
+        });
+        return array;
+    }
+
+    private static int flags(@NotNull Dist.Version version) {
+        int flags = 0;
+        if (version.debug) {
+            flags |= BinaryConstants.FLAG_DEBUG;
+        }
+        if (version.fingerprint != null) {
+            flags |= BinaryConstants.FLAG_FINGERPRINT;
+        }
+        if (version.signatures != null) {
+            flags |= BinaryConstants.FLAG_SIGNATURES;
+        }
+        return flags;
+    }
+
+    private void writeVariable(@NotNull ByteArrayOutputStream out, @NotNull Dist dist) throws IOException {
+        if (dist.version.fingerprint != null) {
+            writeChecksum(out, dist.version.fingerprint);
+        }
+        if (dist.version.signatures != null) {
+            writeChecksum(out, dist.version.signatures);
+        }
+
+        final Dist.Filter filter = dist.filter;
+        writeVarint(out, filter.minSdkVersion);
+        writeVarint(out, filter.maxSdkVersion);
+        writeVarint(out, filter.requiresSmallestWidthDp);
+        writeVarint(out, filter.usesGlEs);
+
+        writeStrings(out, filter.supportsScreens);
+        writeStrings(out, filter.compatibleScreens);
+        writeStrings(out, filter.supportsGlTextures);
+        writeStrings(out, filter.usesFeatures);
+        writeStrings(out, filter.usesLibraries);
+        writeStrings(out, filter.nativeCode);
+
+        writeVarint(out, filter.usesConfigurations.size());
+        for (Dist.Filter.Config config : filter.usesConfigurations) {
+            writeVarint(out, config.fiveWayNav);
+            writeVarint(out, config.hardKeyboard);
+            writeVarint(out, config.keyboardType);
+            writeVarint(out, config.navigation);
+            writeVarint(out, config.touchScreen);
+        }
+
+        writeLinks(out, dist.links);
+        writeMeta(out, dist.meta);
+    }
+
+    private void writeChecksum(@NotNull ByteArrayOutputStream out, @NotNull Checksum checksum) throws IOException {
+        writeVarint(out, string(checksum.getAlgorithm()));
+        writeVarint(out, checksum.length());
+        out.write(checksum.getValue());
+    }
+
+    private void writeLinks(@NotNull ByteArrayOutputStream out, @NotNull Set<Link> links) {
+        writeVarint(out, links.size());
+        for (Link link : links) {
+            writeVarint(out, string(link.rel()));
+            writeVarint(out, string(link.href()));
+        }
+    }
+
+    private void writeMeta(@NotNull ByteArrayOutputStream out, @NotNull Map<String, String> meta) {
+        writeVarint(out, meta.size());
+        for (Map.Entry<String, String> entry : meta.entrySet()) {
+            writeVarint(out, string(entry.getKey()));
+            writeVarint(out, string(entry.getValue()));
+        }
+    }
+
+    private void writeStrings(@NotNull ByteArrayOutputStream out, @NotNull Collection<String> collection) {
+        writeVarint(out, collection.size());
+        for (String string : collection) {
+            writeVarint(out, string(string));
+        }
+    }
+
+    private int string(@NotNull String string) {
+        final Integer index = stringIndexes.get(string);
+        if (index != null) {
+            return index;
+        }
+        final int newIndex = strings.size();
+        strings.add(string);
+        stringIndexes.put(string, newIndex);
+        return newIndex;
+    }
+
+    private static void writeVarint(@NotNull ByteArrayOutputStream out, int value) {
+        int rest = value;
+        while ((rest & ~0x7f) != 0) {
+            out.write(rest & 0x7f | 0x80);
+            rest >>>= 7;
+        }
+        out.write(rest);
+    }
+}
@@ -0,0 +1,485 @@
+package io.github.eterverda.playless.core.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.RepoDelta;
+import io.github.eterverda.playless.core.BlobStore;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Serves repository over http. Index is rendered from {@link RepositoryIndex} once per commit, it
+ * is kept along with its gzipped variant and served from memory. Client having index of commit
+ * {@code N} cached asks for {@code index.json?since=N} and gets {@link RepositoryIndex#diff}
+ * since then, rendered once per commit too, or the whole index if the diff is compacted already. Blobs are content addressed, so
+ * their etag is base32 of fingerprint found in their path and they are cached forever. Other
+ * files, e.g. shards, are revalidated by etag of their content. Files are served by
+ * {@link FileChannel#transferTo} with single byte range, so that interrupted download of apk is
+ * resumed.
+ * <p>
+ * Hidden files are not served but blobs, neither are index base and log as they are not index
+ * on their own.
+ */
+@ThreadSafe
+public final class RepositoryServer implements Closeable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String INDEX_PATH = "/" + RepositoryIndex.FILENAME;
+    private static final Pattern BLOB_PATH = Pattern.compile("/" + Pattern.quote(BlobStore.DIR) + "/([a-z2-7]{2})/([a-z2-7]+)/[^/.][^/]*");
+    private static final Pattern INDEX_FILENAME = Pattern.compile("(" + RepositoryIndex.NAME + "|" + RepositoryIndex.ARCHIVE_NAME + ")\\.(json|log|bin)");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final String SINCE = "since";
+    private static final long WHOLE = -1;
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    @NotNull
+    private final File rootDir;
+    @NotNull
+    private final RepositoryIndex index;
+    @NotNull
+    private final HttpServer server;
+    @NotNull
+    private final ExecutorService executor;
+
+    private final ConcurrentMap<File, FileTag> fileTags = new ConcurrentHashMap<>();
+    private final Object renderLock = new Object();
+    private volatile RenderedIndex rendered;
+
+    public RepositoryServer(@NotNull Repository repository, @NotNull InetSocketAddress address, int threads) throws IOException {
+        this.rootDir = repository.getRootDir();
+        this.index = RepositoryIndex.open(repository);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    RepositoryServer.this.handle(exchange);
+
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @NotNull
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        final String method = exchange.getRequestMethod();
+        final boolean head = method.equals("HEAD");
+        if (!head && !method.equals("GET")) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+
+        final String path = exchange.getRequestURI().getPath();
+        if (path == null || path.contains("/../") || path.endsWith("/..") || path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        if (path.equals(INDEX_PATH)) {
+            final long since;
+            try {
+                since = since(exchange.getRequestURI().getRawQuery());
+
+            } catch (NumberFormatException ignore) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            serveIndex(exchange, head, since);
+            return;
+        }
+
+        final File file = new File(rootDir, path.substring(1));
+        final Matcher blob = BLOB_PATH.matcher(path);
+        if (blob.matches()) {
+            final String etag = '"' + blob.group(1) + blob.group(2) + '"';
+            serveFile(exchange, head, file, etag, IMMUTABLE);
+            return;
+        }
+        if (path.contains("/.") || INDEX_FILENAME.matcher(path.substring(1)).matches() || !file.isFile()) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        serveFile(exchange, head, file, fileTag(file), REVALIDATE);
+    }
+
+    private void serveIndex(@NotNull HttpExchange exchange, boolean head, long since) throws IOException {
+        final RenderedIndex index = since == WHOLE ? renderIndex() : renderDiff(since);
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        final boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        final String etag = gzip ? index.gzipEtag : index.etag;
+
+        final Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Cache-Control", REVALIDATE);
+        headers.set("Vary", "Accept-Encoding");
+        headers.set("ETag", etag);
+        if (gzip) {
+            headers.set("Content-Encoding", "gzip");
+        }
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        final byte[] content = gzip ? index.gzip : index.json;
+        if (head) {
+            headers.set("Content-Length", String.valueOf(content.length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private void serveFile(@NotNull HttpExchange exchange, boolean head, @NotNull File file, @NotNull String etag, @NotNull String cacheControl) throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        } catch (NoSuchFileException e) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        try {
+            final long size = channel.size();
+            final Headers requestHeaders = exchange.getRequestHeaders();
+            final Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", contentType(file.getName()));
+            headers.set("Cache-Control", cacheControl);
+            headers.set("ETag", etag);
+            headers.set("Accept-Ranges", "bytes");
+            if (matches(requestHeaders.getFirst("If-None-Match"), etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            long start = 0;
+            long end = size;
+            int status = 200;
+            final String ifRange = requestHeaders.getFirst("If-Range");
+            final long[] range = ifRange == null || ifRange.equals(etag) ? range(requestHeaders.getFirst("Range"), size) : null;
+            if (range != null) {
+                if (range.length == 0) {
+                    headers.set("Content-Range", "bytes */" + size);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                start = range[0];
+                end = range[1];
+                status = 206;
+                headers.set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+
+            final long length = end - start;
+            if (head || length == 0) {
+                headers.set("Content-Length", String.valueOf(length));
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                transfer(channel, start, end, Channels.newChannel(out));
+            }
+
+        } finally {
+            channel.close();
+        }
+    }
+
+    @NotNull
+    private RenderedIndex renderIndex() throws IOException {
+        index.update();
+        final Repo repo = index.getRepo();
+        RenderedIndex result = rendered;
+        if (result != null && result.seq == repo.seq) {
+            return result;
+        }
+        synchronized (renderLock) {
+            result = rendered;
+            if (result == null || result.seq != repo.seq) {
+                result = new RenderedIndex(repo);
+                rendered = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return diff since given commit, or whole index if there is no diff since then
+     */
+    @NotNull
+    private RenderedIndex renderDiff(long since) throws IOException {
+        final RenderedIndex whole = renderIndex();
+        final RenderedIndex cached = whole.diffs.get(since);
+        if (cached != null) {
+            return cached;
+        }
+        if (since > whole.seq) {
+            return whole;
+        }
+        final RepoDelta delta = index.diff(since);
+        if (delta == null) {
+            return whole;
+        }
+        final RenderedIndex result = new RenderedIndex(delta);
+        if (delta.seq == whole.seq) {
+            // otherwise index has moved on since whole was rendered
+            whole.diffs.putIfAbsent(since, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return value of {@code since} parameter of query or {@link #WHOLE} if there is none
+     * @throws NumberFormatException if value is not a sequence number
+     */
+    static long since(@Nullable String query) {
+        if (query == null) {
+            return WHOLE;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(SINCE + "=")) {
+                final long since = Long.parseLong(parameter.substring(SINCE.length() + 1));
+                if (since < 0) {
+                    throw new NumberFormatException("Negative sequence number " + since);
+                }
+                return since;
+            }
+        }
+        return WHOLE;
+    }
+
+    /**
+     * Computes etag of file content, it is kept until file is modified.
+     */
+    @NotNull
+    private String fileTag(@NotNull File file) throws IOException {
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final FileTag tag = fileTags.get(file);
+        if (tag != null && tag.lastModified == lastModified && tag.length == length) {
+            return tag.etag;
+        }
+        final FileTag computed = new FileTag(lastModified, length, '"' + Checksum.sha1(file).getStringValue() + '"');
+        fileTags.put(file, computed);
+        return computed.etag;
+    }
+
+    /**
+     * @return start and end of the only range requested, empty if it is not satisfiable, or
+     * {@code null} if whole file is requested or range is not understood
+     */
+    @Nullable
+    static long[] range(@Nullable String header, long size) {
+        if (header == null) {
+            return null;
+        }
+        final Matcher matcher = RANGE.matcher(header.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        final String first = matcher.group(1);
+        final String last = matcher.group(2);
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                final long suffix = Long.parseLong(last);
+                if (suffix == 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0, size - suffix), size};
+            }
+            final long start = Long.parseLong(first);
+            if (start >= size) {
+                return new long[0];
+            }
+            if (last.isEmpty()) {
+                return new long[]{start, size};
+            }
+            final long end = Long.parseLong(last);
+            if (end < start) {
+                return null;
+            }
+            return new long[]{start, Math.min(end + 1, size)};
+
+        } catch (NumberFormatException ignore) {
+            return null;
+        }
+    }
+
+    static boolean matches(@Nullable String ifNoneMatch, @NotNull String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private static String contentType(@NotNull String filename) {
+        if (filename.endsWith(".apk")) {
+            return "application/vnd.android.package-archive";
+        }
+        if (filename.endsWith(".png")) {
+            return "image/png";
+        }
+        if (filename.endsWith(".json")) {
+            return "application/json; charset=utf-8";
+        }
+        return "application/octet-stream";
+    }
+
+    private static void transfer(@NotNull FileChannel in, long start, long end, @NotNull WritableByteChannel out) throws IOException {
+        long position = start;
+        while (position < end) {
+            final long transferred = in.transferTo(position, end - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Cannot transfer beyond " + position + " of " + end);
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * Index or diff as of single commit rendered as json and precompressed with gzip. Index keeps
+     * diffs up to its commit rendered so far.
+     */
+    @ThreadSafe
+    private static final class RenderedIndex {
+        final long seq;
+        final byte[] json;
+        final byte[] gzip;
+        final String etag;
+        final String gzipEtag;
+
+        final ConcurrentMap<Long, RenderedIndex> diffs = new ConcurrentHashMap<>();
+
+        RenderedIndex(@NotNull Repo repo) throws IOException {
+            this(repo.seq, json(repo));
+        }
+
+        RenderedIndex(@NotNull RepoDelta delta) throws IOException {
+            this(delta.seq, json(delta));
+        }
+
+        private RenderedIndex(long seq, @NotNull ByteArrayOutputStream json) throws IOException {
+            final ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(gzip) {
+                {
+                    // compressed once per commit, served many times
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                json.writeTo(out);
+            }
+
+            this.seq = seq;
+            this.json = json.toByteArray();
+            this.gzip = gzip.toByteArray();
+            final String checksum = Checksum.sha1(this.json).getStringValue();
+            this.etag = '"' + checksum + '"';
+            this.gzipEtag = '"' + checksum + "-gzip\"";
+        }
+
+        @NotNull
+        private static ByteArrayOutputStream json(@NotNull Repo repo) throws IOException {
+            final ByteArrayOutputStream json = new ByteArrayOutputStream();
+            final Writer writer = new OutputStreamWriter(json, UTF_8);
+            new JsonRepoDumper(writer).writeDecorated(repo);
+            writer.flush();
+            return json;
+        }
+
+        @NotNull
+        private static ByteArrayOutputStream json(@NotNull RepoDelta delta) throws IOException {
+            final ByteArrayOutputStream json = new ByteArrayOutputStream();
+            final Writer writer = new OutputStreamWriter(json, UTF_8);
+            new JsonRepoDumper(writer).writeDeltaDecorated(delta);
+            writer.flush();
+            return json;
+        }
+    }
+
+    @Immutable
+    private static final class FileTag {
+        final long lastModified;
+        final long length;
+        final String etag;
+
+        FileTag(long lastModified, long length, String etag) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package io.github.eterverda.playless.core.json;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import io.github.eterverda.playless.common.util.TimestampUtils;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Streaming json writer producing just what {@link com.google.gson.stream.JsonWriter} does, but
+ * into its own buffer, which is passed to writer only when full or flushed. Timestamps,
+ * checksums and hex numbers are formatted right into the buffer.
+ */
+@NotThreadSafe
+final class BufferedJsonWriter implements Flushable {
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final String[] REPLACEMENTS = new String[128];
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            REPLACEMENTS[i] = String.format("\\u%04x", i);
+        }
+        REPLACEMENTS['"'] = "\\\"";
+        REPLACEMENTS['\\'] = "\\\\";
+        REPLACEMENTS['\t'] = "\\t";
+        REPLACEMENTS['\b'] = "\\b";
+        REPLACEMENTS['\n'] = "\\n";
+        REPLACEMENTS['\r'] = "\\r";
+        REPLACEMENTS['\f'] = "\\f";
+    }
+
+    /**
+     * The last millisecond of year 9999, later timestamps do not fit the format.
+     */
+    private static final long MAX_TIMESTAMP = 253402300799999L;
+
+    private static final int SECONDS_PER_DAY = 86400;
+
+    /**
+     * Room for any value formatted right into buffer.
+     */
+    static final int MIN_BUFFER_SIZE = 256;
+
+    private final Writer out;
+    private final char[] buf;
+    private int pos;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    @Nullable
+    private String indent;
+    @Nullable
+    private String deferredName;
+
+    private final byte[] checksum = new byte[64];
+
+    BufferedJsonWriter(@NotNull Writer out, int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize < " + MIN_BUFFER_SIZE);
+        }
+        this.out = out;
+        this.buf = new char[bufferSize];
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @param indent empty for compact output
+     */
+    void setIndent(@NotNull String indent) {
+        this.indent = indent.isEmpty() ? null : indent;
+    }
+
+    BufferedJsonWriter beginArray() throws IOException {
+        writeDeferredName();
+        return open(EMPTY_ARRAY, '[');
+    }
+
+    BufferedJsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    BufferedJsonWriter beginObject() throws IOException {
+        writeDeferredName();
+        return open(EMPTY_OBJECT, '{');
+    }
+
+    BufferedJsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    BufferedJsonWriter name(@NotNull String name) {
+        if (deferredName != null) {
+            throw new IllegalStateException("Name already written");
+        }
+        deferredName = name;
+        return this;
+    }
+
+    BufferedJsonWriter value(@Nullable String value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        if (value == null) {
+            write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    BufferedJsonWriter value(boolean value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    BufferedJsonWriter value(long value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return this;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long i = value; i >= 10; i /= 10) {
+            digits++;
+        }
+        reserve(digits);
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        pos += digits;
+        return this;
+    }
+
+    /**
+     * Writes string of {@link TimestampUtils#zulu(long)}.
+     */
+    BufferedJsonWriter timestampValue(long timestamp) throws IOException {
+        if (timestamp < 0 || timestamp > MAX_TIMESTAMP) {
+            return value(TimestampUtils.zulu(timestamp));
+        }
+        writeDeferredName();
+        beforeValue();
+
+        final long seconds = timestamp / 1000;
+        final int days = (int) (seconds / SECONDS_PER_DAY);
+        final int time = (int) (seconds % SECONDS_PER_DAY);
+
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        final int z = days + 719468;
+        final int era = z / 146097;
+        final int doe = z - era * 146097;
+        final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final int mp = (5 * doy + 2) / 153;
+        final int day = doy - (153 * mp + 2) / 5 + 1;
+        final int month = mp < 10 ? mp + 3 : mp - 9;
+        final int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        reserve(22);
+        buf[pos++] = '"';
+        digits(year / 100);
+        digits(year % 100);
+        buf[pos++] = '-';
+        digits(month);
+        buf[pos++] = '-';
+        digits(day);
+        buf[pos++] = 'T';
+        digits(time / 3600);
+        buf[pos++] = ':';
+        digits(time / 60 % 60);
+        buf[pos++] = ':';
+        digits(time % 60);
+        buf[pos++] = 'Z';
+        buf[pos++] = '"';
+        return this;
+    }
+
+    /**
+     * Writes string of {@link Checksum#toString()}.
+     */
+    BufferedJsonWriter checksumValue(@NotNull Checksum value) throws IOException {
+        if (value.length() > checksum.length) {
+            return value(value.toString());
+        }
+        writeDeferredName();
+        beforeValue();
+
+        write('"');
+        write(value.getShortAlgorithm());
+        write(':');
+        final int length = value.getValue(checksum, 0, checksum.length);
+        reserve(length * 2 + 1);
+        for (int i = 0; i < length; i++) {
+            final byte b = checksum[i];
+            buf[pos++] = HEX[b >> 4 & 0xf];
+            buf[pos++] = HEX[b & 0xf];
+        }
+        buf[pos++] = '"';
+        return this;
+    }
+
+    /**
+     * Writes string of {@code String.format("0x%h", value)}.
+     */
+    BufferedJsonWriter hexValue(int value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+
+        int digits = 1;
+        for (int i = value >>> 4; i != 0; i >>>= 4) {
+            digits++;
+        }
+        reserve(digits + 4);
+        buf[pos++] = '"';
+        buf[pos++] = '0';
+        buf[pos++] = 'x';
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = HEX[value & 0xf];
+            value >>>= 4;
+        }
+        pos += digits;
+        buf[pos++] = '"';
+        return this;
+    }
+
+    /**
+     * Passes everything buffered to writer and flushes it.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private BufferedJsonWriter open(int empty, char bracket) throws IOException {
+        beforeValue();
+        push(empty);
+        write(bracket);
+        return this;
+    }
+
+    private BufferedJsonWriter close(int empty, int nonempty, char bracket) throws IOException {
+        final int context = peek();
+        if (context != nonempty && context != empty) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        if (deferredName != null) {
+            throw new IllegalStateException("Dangling name: " + deferredName);
+        }
+        stackSize--;
+        if (context == nonempty) {
+            newline();
+        }
+        write(bracket);
+        return this;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private int peek() {
+        if (stackSize == 0) {
+            throw new IllegalStateException("JsonWriter is closed.");
+        }
+        return stack[stackSize - 1];
+    }
+
+    private void replaceTop(int scope) {
+        stack[stackSize - 1] = scope;
+    }
+
+    private void writeDeferredName() throws IOException {
+        if (deferredName != null) {
+            beforeName();
+            string(deferredName);
+            deferredName = null;
+        }
+    }
+
+    private void beforeName() throws IOException {
+        final int context = peek();
+        if (context == NONEMPTY_OBJECT) {
+            write(',');
+        } else if (context != EMPTY_OBJECT) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        newline();
+        replaceTop(DANGLING_NAME);
+    }
+
+    private void beforeValue() throws IOException {
+        switch (peek()) {
+            case NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("JSON must have only one top-level value.");
+
+            case EMPTY_DOCUMENT:
+                replaceTop(NONEMPTY_DOCUMENT);
+                break;
+
+            case EMPTY_ARRAY:
+                replaceTop(NONEMPTY_ARRAY);
+                newline();
+                break;
+
+            case NONEMPTY_ARRAY:
+                write(',');
+                newline();
+                break;
+
+            case DANGLING_NAME:
+                write(indent == null ? ":" : ": ");
+                replaceTop(NONEMPTY_OBJECT);
+                break;
+
+            default:
+                throw new IllegalStateException("Nesting problem.");
+        }
+    }
+
+    private void newline() throws IOException {
+        if (indent == null) {
+            return;
+        }
+        write('\n');
+        for (int i = 1; i < stackSize; i++) {
+            write(indent);
+        }
+    }
+
+    private void string(@NotNull String value) throws IOException {
+        write('"');
+        final int length = value.length();
+        int last = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            final String replacement;
+            if (c < 128) {
+                replacement = REPLACEMENTS[c];
+                if (replacement == null) {
+                    continue;
+                }
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            write(value, last, i);
+            write(replacement);
+            last = i + 1;
+        }
+        write(value, last, length);
+        write('"');
+    }
+
+    private void digits(int value) {
+        buf[pos++] = (char) ('0' + value / 10);
+        buf[pos++] = (char) ('0' + value % 10);
+    }
+
+    private void write(char c) throws IOException {
+        if (pos == buf.length) {
+            flushBuffer();
+        }
+        buf[pos++] = c;
+    }
+
+    private void write(@NotNull String s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+    private void write(@NotNull String s, int begin, int end) throws IOException {
+        final int length = end - begin;
+        if (length > buf.length - pos) {
+            flushBuffer();
+            if (length > buf.length) {
+                out.write(s, begin, length);
+                return;
+            }
+        }
+        s.getChars(begin, end, buf, pos);
+        pos += length;
+    }
+
+    /**
+     * Makes room for that many chars in buffer, up to {@link #MIN_BUFFER_SIZE}.
+     */
+    private void reserve(int length) throws IOException {
+        if (length > buf.length - pos) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
@@ -1,27 +1,41 @@
 package io.github.eterverda.playless.core.json;
 
-import com.google.gson.stream.JsonWriter;
-
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
 import io.github.eterverda.playless.common.Dist;
 import io.github.eterverda.playless.common.Link;
 import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.RepoDelta;
+import io.github.eterverda.playless.common.RepoManifest;
 import io.github.eterverda.playless.common.json.JsonConstants;
-import io.github.eterverda.playless.common.util.TimestampUtils;
+import io.github.eterverda.playless.core.DistComparator;
 
+/**
+ * Writes repository documents. Output is buffered and passed to writer once document is written,
+ * or by {@link #flush()} when just a part of document is written.
+ */
 public class JsonRepoDumper {
-    private final JsonWriter out;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final BufferedJsonWriter out;
 
     public JsonRepoDumper(OutputStream out) throws IOException {
-        this.out = new JsonWriter(new OutputStreamWriter(out));
+        this(new OutputStreamWriter(out, UTF_8));
+    }
+
+    public JsonRepoDumper(Writer out) {
+        this.out = new BufferedJsonWriter(out, BUFFER_SIZE);
     }
 
     public void setPrettyPrint(boolean pretty) {
@@ -39,22 +53,139 @@ public class JsonRepoDumper {
         out.flush();
     }
 
+    /**
+     * Writes repository with dists given in order they are written instead of dists of repository,
+     * so that they need not be held in memory, see {@link SortingRepoDumper}.
+     */
+    public void writeDecorated(Repo repo, Iterator<Dist> dists) throws IOException {
+        out.beginObject();
+
+        out.name(JsonConstants.DECOR_PLAYLESS_REPOSITORY_V1);
+        write(repo, dists);
+
+        out.endObject();
+
+        out.flush();
+    }
+
+    public void writeManifestDecorated(RepoManifest manifest) throws IOException {
+        out.beginObject();
+
+        out.name(JsonConstants.DECOR_PLAYLESS_MANIFEST_V1);
+        write(manifest);
+
+        out.endObject();
+
+        out.flush();
+    }
+
+    public void write(RepoManifest manifest) throws IOException {
+        out.beginObject();
+
+        if (manifest.seq != 0) {
+            out.name(JsonConstants.SEQ).value(manifest.seq);
+        }
+
+        writeMetaField(manifest.meta);
+
+        writeLinksField(manifest.links);
+
+        if (!manifest.shards.isEmpty()) {
+            out.name(JsonConstants.SHARDS);
+            out.beginArray();
+            for (RepoManifest.Shard shard : manifest.shards.values()) {
+                write(shard);
+            }
+            out.endArray();
+        }
+
+        out.endObject();
+    }
+
+    public void write(RepoManifest.Shard shard) throws IOException {
+        out.beginObject();
+        out.name(JsonConstants.APPLICATION_ID).value(shard.applicationId);
+        out.name(JsonConstants.HREF).value(shard.href);
+        out.name(JsonConstants.CHECKSUM).checksumValue(shard.checksum);
+        out.name(JsonConstants.SIZE).value(shard.size);
+        out.endObject();
+    }
+
+    public void writeDeltaDecorated(Collection<Dist> added, Collection<Dist> removed) throws IOException {
+        writeDeltaDecorated(RepoDelta.UNKNOWN, RepoDelta.UNKNOWN, added, removed);
+    }
+
+    public void writeDeltaDecorated(RepoDelta delta) throws IOException {
+        writeDeltaDecorated(delta.since, delta.seq, delta.added, delta.removed);
+    }
+
+    public void writeDeltaDecorated(long since, long seq, Collection<Dist> added, Collection<Dist> removed) throws IOException {
+        out.beginObject();
+
+        out.name(JsonConstants.DECOR_PLAYLESS_DELTA_V1);
+        writeDelta(since, seq, added, removed);
+
+        out.endObject();
+
+        out.flush();
+    }
+
+    public void writeDelta(long since, long seq, Collection<Dist> added, Collection<Dist> removed) throws IOException {
+        out.beginObject();
+
+        if (since != RepoDelta.UNKNOWN) {
+            out.name(JsonConstants.SINCE).value(since);
+        }
+        if (seq != RepoDelta.UNKNOWN) {
+            out.name(JsonConstants.SEQ).value(seq);
+        }
+
+        if (!removed.isEmpty()) {
+            out.name(JsonConstants.REMOVED);
+            writeDists(removed);
+        }
+        if (!added.isEmpty()) {
+            out.name(JsonConstants.ADDED);
+            writeDists(added);
+        }
+
+        out.endObject();
+    }
+
+    private void writeDists(Collection<Dist> collection) throws IOException {
+        final Dist[] dists = collection.toArray(new Dist[collection.size()]);
+        Arrays.sort(dists, DistComparator.INSTANCE);
+
+        out.beginArray();
+        for (Dist dist : dists) {
+            writeDist(dist);
+        }
+        out.endArray();
+    }
+
     public void write(Repo repo) throws IOException {
+        final Dist[] dists = repo.dists.toArray(new Dist[repo.dists.size()]);
+        Arrays.sort(dists, DistComparator.INSTANCE);
+
+        write(repo, Arrays.asList(dists).iterator());
+    }
+
+    private void write(Repo repo, Iterator<Dist> dists) throws IOException {
         out.beginObject();
 
+        if (repo.seq != 0) {
+            out.name(JsonConstants.SEQ).value(repo.seq);
+        }
+
         writeMetaField(repo.meta);
 
         writeLinksField(repo.links);
 
-        if (!repo.dists.isEmpty()) {
+        if (dists.hasNext()) {
             out.name(JsonConstants.DISTRIBUTIONS);
             out.beginArray();
-
-            final Dist[] dists = repo.dists.toArray(new Dist[repo.dists.size()]);
-            Arrays.sort(dists, DistComparator.INSTANCE);
-
-            for (Dist dist : dists) {
-                write(dist);
+            while (dists.hasNext()) {
+                writeDist(dists.next());
             }
             out.endArray();
         }
@@ -63,6 +194,19 @@ public class JsonRepoDumper {
     }
 
     public void write(Dist dist) throws IOException {
+        writeDist(dist);
+
+        out.flush();
+    }
+
+    /**
+     * Passes everything written so far to writer.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeDist(Dist dist) throws IOException {
         out.beginObject();
 
         out.name(JsonConstants.APPLICATION_ID).value(dist.applicationId);
@@ -78,8 +222,6 @@ public class JsonRepoDumper {
         writeLinksField(dist.links);
 
         out.endObject();
-
-        out.flush();
     }
 
     private void write(Dist.Version version) throws IOException {
@@ -87,13 +229,13 @@ public class JsonRepoDumper {
 
         out.name(JsonConstants.VERSION_CODE).value(version.versionCode);
         if (version.timestamp != Long.MIN_VALUE) {
-            out.name(JsonConstants.TIMESTAMP).value(TimestampUtils.zulu(version.timestamp));
+            out.name(JsonConstants.TIMESTAMP).timestampValue(version.timestamp);
         }
         if (version.fingerprint != null) {
-            out.name(JsonConstants.FINGERPRINT).value(version.fingerprint.toString());
+            out.name(JsonConstants.FINGERPRINT).checksumValue(version.fingerprint);
         }
         if (version.signatures != null) {
-            out.name(JsonConstants.SIGNATURES).value(version.signatures.toString());
+            out.name(JsonConstants.SIGNATURES).checksumValue(version.signatures);
         }
         if (version.debug) {
             out.name(JsonConstants.DEBUG).value(true);
@@ -122,7 +264,7 @@ public class JsonRepoDumper {
         }
 
         if (filter.usesGlEs > 0) {
-            out.name(JsonConstants.USES_GL_ES).value(String.format("0x%h", filter.usesGlEs));
+            out.name(JsonConstants.USES_GL_ES).hexValue(filter.usesGlEs);
         }
 
         out.name(JsonConstants.SUPPORTS_SCREENS);
@@ -203,25 +345,4 @@ public class JsonRepoDumper {
             out.endObject();
         }
     }
-
-    final static class DistComparator implements Comparator<Dist> {
-        final static Comparator<Dist> INSTANCE = new DistComparator();
-
-        @Override
-        public int compare(Dist a, Dist b) {
-            final String aa = a.applicationId;
-            final String ba = b.applicationId;
-            if (!aa.equals(ba)) {
-                return aa.compareTo(ba);
-            }
-            final int av = a.version.versionCode;
-            final int bv = b.version.versionCode;
-            if (av != bv) {
-                return av - bv;
-            }
-            final long at = a.version.timestamp / 1000;
-            final long bt = b.version.timestamp / 1000;
-            return (int) (at - bt);
-        }
-    }
 }
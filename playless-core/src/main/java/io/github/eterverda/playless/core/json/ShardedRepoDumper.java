@@ -0,0 +1,167 @@
+package io.github.eterverda.playless.core.json;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.RepoManifest;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Writes repository into directory as {@link #MANIFEST_FILENAME} and a shard per application
+ * named by {@link RepoManifest#shardFilename}. Shards do not carry sequence number, so shards of
+ * applications not changed are left as they are. Every file is moved in place atomically and
+ * manifest is moved the last, so that it never refers to shard not written yet. Shards of
+ * applications gone are deleted after that.
+ */
+public class ShardedRepoDumper {
+    public static final String MANIFEST_FILENAME = "manifest.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File dir;
+
+    private boolean pretty;
+
+    private int written;
+    private int unchanged;
+    private int deleted;
+
+    public ShardedRepoDumper(File dir) {
+        this.dir = dir;
+    }
+
+    public void setPrettyPrint(boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    @NotNull
+    public RepoManifest write(Repo repo) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        final Map<String, List<Dist>> applications = new TreeMap<>();
+        for (Dist dist : repo.dists) {
+            List<Dist> dists = applications.get(dist.applicationId);
+            if (dists == null) {
+                dists = new ArrayList<>();
+                applications.put(dist.applicationId, dists);
+            }
+            dists.add(dist);
+        }
+
+        final RepoManifest.Editor manifest = new RepoManifest.Editor();
+        final Set<String> filenames = new HashSet<>();
+        filenames.add(MANIFEST_FILENAME);
+
+        for (Map.Entry<String, List<Dist>> entry : applications.entrySet()) {
+            final Repo.Editor shard = new Repo.Editor();
+            for (Dist dist : entry.getValue()) {
+                shard.dist(dist);
+            }
+            final byte[] content = dump(shard.build());
+            final Checksum checksum = Checksum.sha1(content);
+            final String filename = RepoManifest.shardFilename(entry.getKey());
+
+            final File file = new File(dir, filename);
+            if (file.length() == content.length && checksum.equals(Checksum.sha1(file))) {
+                unchanged++;
+            } else {
+                write(file, content);
+                written++;
+            }
+            filenames.add(filename);
+            manifest.shard(new RepoManifest.Shard(entry.getKey(), filename, checksum, content.length));
+        }
+
+        for (Link link : repo.links) {
+            manifest.link(link);
+        }
+        for (Map.Entry<String, String> entry : repo.meta.entrySet()) {
+            manifest.meta(entry.getKey(), entry.getValue());
+        }
+        manifest.seq(repo.seq);
+
+        final RepoManifest result = manifest.build();
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final Writer writer = new OutputStreamWriter(content, UTF_8);
+        dumper(writer).writeManifestDecorated(result);
+        writer.flush();
+        write(new File(dir, MANIFEST_FILENAME), content.toByteArray());
+
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (isShard(file.getName()) && !filenames.contains(file.getName()) && file.delete()) {
+                    deleted++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    @NotNull
+    private byte[] dump(@NotNull Repo shard) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final Writer writer = new OutputStreamWriter(result, UTF_8);
+        dumper(writer).writeDecorated(shard);
+        writer.flush();
+        return result.toByteArray();
+    }
+
+    @NotNull
+    private JsonRepoDumper dumper(@NotNull Writer writer) {
+        final JsonRepoDumper result = new JsonRepoDumper(writer);
+        result.setPrettyPrint(pretty);
+        return result;
+    }
+
+    private static boolean isShard(@NotNull String filename) {
+        return filename.matches("[0-9a-fA-F]{40}\\.json");
+    }
+
+    private static void write(@NotNull File file, @NotNull byte[] content) throws IOException {
+        final File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(content);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+}
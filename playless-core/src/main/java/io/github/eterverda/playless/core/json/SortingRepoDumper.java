@@ -0,0 +1,254 @@
+package io.github.eterverda.playless.core.json;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.DistVisitor;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.json.JsonDistIterator;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.DistComparator;
+
+/**
+ * Writes repository taking dists in any order, and writes it just as
+ * {@link JsonRepoDumper#writeDecorated(Repo)} does for repository of those dists. Dists are
+ * sorted in runs of at most run size, every full run is spilled to temp file, and runs are
+ * merged while written, so that no more than a run of dists is held in memory.
+ * <p>
+ * Dists in tie by {@link DistComparator} are written in order they are taken, and dist equal to
+ * one taken before is dropped, as it is by {@link Repo}.
+ */
+@NotThreadSafe
+public final class SortingRepoDumper implements DistVisitor, Closeable {
+    public static final int DEFAULT_RUN_SIZE = 65536;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File tempDir;
+    private final int runSize;
+
+    private final Repo.Editor properties = new Repo.Editor();
+    private final List<Dist> run = new ArrayList<>();
+    private final List<File> runFiles = new ArrayList<>();
+
+    private boolean pretty;
+
+    public SortingRepoDumper(@NotNull File tempDir) {
+        this(tempDir, DEFAULT_RUN_SIZE);
+    }
+
+    public SortingRepoDumper(@NotNull File tempDir, int runSize) {
+        if (runSize < 1) {
+            throw new IllegalArgumentException("runSize < 1");
+        }
+        this.tempDir = tempDir;
+        this.runSize = runSize;
+    }
+
+    public void setPrettyPrint(boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    @Override
+    public void seq(long seq) {
+        properties.seq(seq);
+    }
+
+    @Override
+    public void meta(@NotNull String key, @NotNull String value) {
+        properties.meta(key, value);
+    }
+
+    @Override
+    public void link(@NotNull Link link) {
+        properties.link(link);
+    }
+
+    @Override
+    public void dist(@NotNull Dist dist) throws IOException {
+        run.add(dist);
+        if (run.size() >= runSize) {
+            spill();
+        }
+    }
+
+    /**
+     * @return number of runs spilled to temp files so far
+     */
+    public int getSpilled() {
+        return runFiles.size();
+    }
+
+    /**
+     * Writes repository of everything taken. Run not full yet is merged right from memory.
+     */
+    public void writeDecorated(@NotNull Writer out) throws IOException {
+        Collections.sort(run, DistComparator.INSTANCE);
+
+        final List<Reader> readers = new ArrayList<>(runFiles.size());
+        try {
+            final List<Iterator<Dist>> sources = new ArrayList<>(runFiles.size() + 1);
+            for (File runFile : runFiles) {
+                final Reader reader = new InputStreamReader(new FileInputStream(runFile), UTF_8);
+                readers.add(reader);
+                sources.add(JsonRepoFactory.getInstance().iterateDecorated(new GsonJsonReader(new com.google.gson.stream.JsonReader(reader)), new Repo.Editor()));
+            }
+            sources.add(run.iterator());
+
+            final JsonRepoDumper dumper = new JsonRepoDumper(out);
+            dumper.setPrettyPrint(pretty);
+            dumper.writeDecorated(properties.build(), new Merge(sources));
+
+        } catch (JsonDistIterator.IterationException e) {
+            throw e.getCause();
+
+        } finally {
+            for (Reader reader : readers) {
+                try {
+                    reader.close();
+
+                } catch (IOException ignore) {
+                    // read already
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes temp files of runs.
+     */
+    @Override
+    public void close() {
+        for (File runFile : runFiles) {
+            //noinspection ResultOfMethodCallIgnored
+            runFile.delete();
+        }
+        runFiles.clear();
+        run.clear();
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(run, DistComparator.INSTANCE);
+
+        final File runFile = File.createTempFile("playless-run", ".json", tempDir);
+        runFiles.add(runFile);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(runFile), UTF_8))) {
+            new JsonRepoDumper(out).writeDecorated(new Repo.Editor().build(), run.iterator());
+        }
+        run.clear();
+    }
+
+    /**
+     * K-way merge of sorted sources. Tie is broken by order of sources, which is order dists were
+     * taken in, and dists equal to one of the tie merged before are dropped.
+     */
+    private static final class Merge implements Iterator<Dist> {
+        private final PriorityQueue<Head> heads;
+        private final List<Dist> tie = new ArrayList<>();
+
+        private Dist next;
+
+        Merge(@NotNull List<Iterator<Dist>> sources) {
+            heads = new PriorityQueue<>(Math.max(1, sources.size()), Head.ORDER);
+            for (int i = 0; i < sources.size(); i++) {
+                final Iterator<Dist> source = sources.get(i);
+                if (source.hasNext()) {
+                    heads.add(new Head(source.next(), source, i));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !heads.isEmpty()) {
+                final Head head = heads.poll();
+                // the same dist from memory and from spilled run differs in timestamp otherwise
+                final Dist dist = truncateTimestamp(head.dist);
+                if (head.source.hasNext()) {
+                    head.dist = head.source.next();
+                    heads.add(head);
+                }
+
+                if (!tie.isEmpty() && DistComparator.INSTANCE.compare(tie.get(0), dist) != 0) {
+                    tie.clear();
+                }
+                if (!tie.contains(dist)) {
+                    tie.add(dist);
+                    next = dist;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Dist next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Dist result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @return dist as it is read back from spilled run, which has timestamp in seconds
+     */
+    @NotNull
+    private static Dist truncateTimestamp(@NotNull Dist dist) {
+        final long timestamp = dist.version.timestamp;
+        if (timestamp == Long.MIN_VALUE || timestamp % 1000 == 0) {
+            return dist;
+        }
+        final Dist.Editor result = dist.edit();
+        result.timestamp(timestamp / 1000 * 1000);
+        return result.build();
+    }
+
+    private static final class Head {
+        static final Comparator<Head> ORDER = new Comparator<Head>() {
+            @Override
+            public int compare(Head a, Head b) {
+                final int result = DistComparator.INSTANCE.compare(a.dist, b.dist);
+                return result != 0 ? result : a.index - b.index;
+            }
+        };
+
+        Dist dist;
+        final Iterator<Dist> source;
+        final int index;
+
+        Head(@NotNull Dist dist, @NotNull Iterator<Dist> source, int index) {
+            this.dist = dist;
+            this.source = source;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package io.github.eterverda.playless.core.util.apk;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Reads apk exactly once from start to end and collects everything ingestion needs from it:
+ * fingerprint of the whole file, signatures of its signers and fingerprints of requested entries.
+ * Signers are taken from APK Signing Block if there is one, otherwise from v1 signature files.
+ * <p/>
+ * Entries are requested before the scan, results are available after it. Scan is performed
+ * lazily on first access to results.
+ */
+@NotThreadSafe
+public final class ApkScanner {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+
+    private static final int BUFFER_SIZE = 0x10000;
+
+    private static final String NATIVE_CODE_PREFIX = "lib/";
+
+    @NotNull
+    private final File file;
+    @NotNull
+    private final Set<String> requestedEntries = new HashSet<>();
+    @NotNull
+    private final Set<String> requestedContents = new HashSet<>();
+
+    private boolean keepEntryContents;
+
+    private boolean scanned;
+    private boolean collectCertificates;
+    private Checksum fingerprint;
+    private Checksum signatures;
+    private final Map<String, Checksum> entries = new HashMap<>();
+    private final Map<String, byte[]> contents = new HashMap<>();
+    private final Set<String> nativeCode = new TreeSet<>();
+
+    public ApkScanner(@NotNull File file) {
+        this.file = file;
+    }
+
+    @NotNull
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Requests fingerprint of entry to be computed during scan.
+     */
+    public void requestEntry(@NotNull String entryName) {
+        if (scanned) {
+            throw new IllegalStateException("Cannot request " + entryName + " after " + file + " is scanned");
+        }
+        requestedEntries.add(entryName);
+        if (keepEntryContents) {
+            requestedContents.add(entryName);
+        }
+    }
+
+    /**
+     * Makes entries requested after this call keep their content too, as if they were requested
+     * with {@link #requestEntryContent(String)} as well.
+     */
+    public void setKeepEntryContents(boolean keepEntryContents) {
+        this.keepEntryContents = keepEntryContents;
+    }
+
+    /**
+     * Requests uncompressed content of entry to be kept in memory during scan. Intended for
+     * small entries like {@code AndroidManifest.xml}.
+     */
+    public void requestEntryContent(@NotNull String entryName) {
+        if (scanned) {
+            throw new IllegalStateException("Cannot request " + entryName + " after " + file + " is scanned");
+        }
+        requestedContents.add(entryName);
+    }
+
+    @NotNull
+    public Checksum getFingerprint() throws IOException {
+        scan();
+        return fingerprint;
+    }
+
+    @Nullable
+    public Checksum getSignatures() throws IOException {
+        scan();
+        return signatures;
+    }
+
+    /**
+     * @return fingerprint of requested entry or {@code null} if apk does not contain it.
+     */
+    @Nullable
+    public Checksum getEntryFingerprint(@NotNull String entryName) throws IOException {
+        if (!requestedEntries.contains(entryName)) {
+            throw new IllegalStateException("Entry " + entryName + " was not requested");
+        }
+        scan();
+        return entries.get(entryName);
+    }
+
+    /**
+     * @return content of requested entry or {@code null} if apk does not contain it.
+     */
+    @Nullable
+    public byte[] getEntryContent(@NotNull String entryName) throws IOException {
+        if (!requestedContents.contains(entryName)) {
+            throw new IllegalStateException("Entry content " + entryName + " was not requested");
+        }
+        scan();
+        return contents.get(entryName);
+    }
+
+    /**
+     * @return names of abis which have native libraries under {@code lib/}
+     */
+    @NotNull
+    public Set<String> getNativeCode() throws IOException {
+        scan();
+        return Collections.unmodifiableSet(nativeCode);
+    }
+
+    public void scan() throws IOException {
+        if (scanned) {
+            return;
+        }
+
+        final List<Certificate> certificates = new ArrayList<>();
+        final Checksum schemeSignatures;
+
+        final FileInputStream fileIn = new FileInputStream(file);
+        try (ScanInputStream in = new ScanInputStream(fileIn, sha1())) {
+            // positional reads, stream is not moved
+            schemeSignatures = ApkSigningBlock.loadSignatures(fileIn.getChannel());
+            collectCertificates = schemeSignatures == null;
+
+            final boolean complete = scanEntries(in, certificates, ApkSigningBlock.findOffset(fileIn.getChannel()));
+
+            in.drain();
+            fingerprint = Checksum.make(in.digest);
+
+            if (!complete) {
+                scanEntriesRandomly(certificates);
+            }
+        }
+
+        signatures = schemeSignatures != null ? schemeSignatures : xorSignatures(certificates);
+        scanned = true;
+    }
+
+    /**
+     * @param signingBlockOffset offset of APK Signing Block or -1 if there is none
+     * @return {@code false} if sequential scan faced something it is unable to skip over, or it
+     * has not stopped right at central directory or APK Signing Block, as when apk is truncated.
+     */
+    private boolean scanEntries(@NotNull ScanInputStream in, @NotNull List<Certificate> certificates, long signingBlockOffset) throws IOException {
+        int count = 0;
+        while (in.ensure(4) && in.peekInt() == LOCAL_HEADER_SIGNATURE) {
+            in.readInt();
+            in.readShort(); // version needed to extract
+            final int flags = in.readShort();
+            final int method = in.readShort();
+            in.readInt(); // modification time and date
+            in.readInt(); // crc-32
+            final long compressedSize = in.readInt() & 0xffffffffL;
+            in.readInt(); // uncompressed size
+            final int nameLength = in.readShort();
+            final int extraLength = in.readShort();
+            final String name = in.readString(nameLength);
+            in.skipFully(extraLength);
+
+            final boolean dataDescriptor = (flags & FLAG_DATA_DESCRIPTOR) != 0;
+            if (compressedSize == ZIP64_MAGIC) {
+                return false;
+            }
+
+            collectNativeCode(name);
+
+            final boolean signature = collectCertificates && isSignatureBlock(name);
+            final boolean content = signature || requestedContents.contains(name);
+
+            final MessageDigest entryDigest = requestedEntries.contains(name) ? sha1() : null;
+            final ByteArrayOutputStream contentBytes = content ? new ByteArrayOutputStream() : null;
+
+            final OutputStream out;
+            if (contentBytes != null) {
+                out = contentBytes;
+            } else if (entryDigest != null) {
+                out = new DigestOutputStream(entryDigest);
+            } else {
+                out = null;
+            }
+
+            switch (method) {
+                case ZipEntry.STORED:
+                    if (dataDescriptor) {
+                        return false;
+                    }
+                    in.copy(compressedSize, out);
+                    break;
+
+                case ZipEntry.DEFLATED:
+                    if (out == null && !dataDescriptor) {
+                        in.skipFully(compressedSize);
+                    } else {
+                        in.inflate(out);
+                    }
+                    break;
+
+                default:
+                    return false;
+            }
+
+            if (dataDescriptor) {
+                if (in.readInt() == DATA_DESCRIPTOR_SIGNATURE) {
+                    in.readInt(); // crc-32
+                }
+                in.readInt(); // compressed size
+                in.readInt(); // uncompressed size
+            }
+
+            if (contentBytes != null) {
+                final byte[] bytes = contentBytes.toByteArray();
+                if (entryDigest != null) {
+                    entryDigest.update(bytes);
+                }
+                if (signature) {
+                    certificates.addAll(loadCertificates(new ByteArrayInputStream(bytes)));
+                }
+                if (requestedContents.contains(name)) {
+                    contents.put(name, bytes);
+                }
+            }
+            if (entryDigest != null) {
+                entries.put(name, Checksum.make(entryDigest));
+            }
+            count++;
+        }
+        if (count == 0) {
+            return false;
+        }
+        return in.position() == signingBlockOffset || in.ensure(4) && in.peekInt() == CENTRAL_HEADER_SIGNATURE;
+    }
+
+    private void scanEntriesRandomly(@NotNull List<Certificate> certificates) throws IOException {
+        entries.clear();
+        contents.clear();
+        nativeCode.clear();
+        certificates.clear();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            for (String entryName : requestedEntries) {
+                final ZipEntry entry = zip.getEntry(entryName);
+                if (entry == null) {
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    entries.put(entryName, Checksum.sha1(in));
+                }
+            }
+            for (String entryName : requestedContents) {
+                final ZipEntry entry = zip.getEntry(entryName);
+                if (entry == null) {
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    contents.put(entryName, readFully(in));
+                }
+            }
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                final String entryName = entry.getName();
+                collectNativeCode(entryName);
+                if (collectCertificates && isSignatureBlock(entryName)) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        certificates.addAll(loadCertificates(in));
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectNativeCode(@NotNull String name) {
+        if (name.startsWith(NATIVE_CODE_PREFIX)) {
+            final int indexOfSlash = name.indexOf('/', NATIVE_CODE_PREFIX.length());
+            if (indexOfSlash > NATIVE_CODE_PREFIX.length()) {
+                nativeCode.add(name.substring(NATIVE_CODE_PREFIX.length(), indexOfSlash));
+            }
+        }
+    }
+
+    @NotNull
+    private static byte[] readFully(@NotNull InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isSignatureBlock(@NotNull String name) {
+        return name.startsWith("META-INF/") && name.indexOf('/', 9) == -1 &&
+                (name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC"));
+    }
+
+    @NotNull
+    private static Collection<? extends Certificate> loadCertificates(@NotNull InputStream in) throws IOException {
+        try {
+            return CertificateFactory.getInstance("X.509").generateCertificates(in);
+
+        } catch (CertificateException e) {
+            throw new IOException("Cannot read signature block", e);
+        }
+    }
+
+    @Nullable
+    private static Checksum xorSignatures(@NotNull List<Certificate> certificates) {
+        try {
+            Checksum signatures = null;
+            for (Certificate certificate : certificates) {
+                final Checksum signature = Checksum.sha1(certificate.getEncoded());
+                signatures = Checksum.xor(signatures, signature);
+            }
+            return signatures;
+
+        } catch (CertificateEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @NotNull
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance(Checksum.ALGORITHM_SHA_1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-1 should be always available");
+        }
+    }
+
+    /**
+     * Buffered stream that digests every byte read from underlying stream exactly once, no matter
+     * whether the byte was consumed, skipped or handed over to inflater.
+     */
+    private static final class ScanInputStream extends InputStream {
+        @NotNull
+        private final InputStream in;
+        @NotNull
+        final MessageDigest digest;
+
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+        private long filled;
+
+        private final byte[] scratch = new byte[BUFFER_SIZE];
+
+        ScanInputStream(@NotNull InputStream in, @NotNull MessageDigest digest) {
+            this.in = in;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buf[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            final int n = Math.min(len, limit - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean fill() throws IOException {
+            if (pos < limit) {
+                return true;
+            }
+            final int n = in.read(buf);
+            if (n == -1) {
+                return false;
+            }
+            digest.update(buf, 0, n);
+            filled += n;
+            pos = 0;
+            limit = n;
+            return true;
+        }
+
+        /**
+         * Makes sure at least {@code count} bytes are buffered, returns {@code false} on premature end of file.
+         */
+        boolean ensure(int count) throws IOException {
+            if (limit - pos >= count) {
+                return true;
+            }
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+            while (limit < count) {
+                final int n = in.read(buf, limit, buf.length - limit);
+                if (n == -1) {
+                    return false;
+                }
+                digest.update(buf, limit, n);
+                filled += n;
+                limit += n;
+            }
+            return true;
+        }
+
+        /**
+         * @return offset in file of the next byte to be read
+         */
+        long position() {
+            return filled - (limit - pos);
+        }
+
+        int peekInt() {
+            return (buf[pos] & 0xff) | (buf[pos + 1] & 0xff) << 8 | (buf[pos + 2] & 0xff) << 16 | (buf[pos + 3] & 0xff) << 24;
+        }
+
+        int readInt() throws IOException {
+            if (!ensure(4)) {
+                throw new EOFException();
+            }
+            final int result = peekInt();
+            pos += 4;
+            return result;
+        }
+
+        int readShort() throws IOException {
+            if (!ensure(2)) {
+                throw new EOFException();
+            }
+            final int result = (buf[pos] & 0xff) | (buf[pos + 1] & 0xff) << 8;
+            pos += 2;
+            return result;
+        }
+
+        @NotNull
+        String readString(int length) throws IOException {
+            final byte[] bytes = new byte[length];
+            int off = 0;
+            while (off < length) {
+                final int n = read(bytes, off, length - off);
+                if (n == -1) {
+                    throw new EOFException();
+                }
+                off += n;
+            }
+            return new String(bytes, "UTF-8");
+        }
+
+        void skipFully(long count) throws IOException {
+            copy(count, null);
+        }
+
+        void copy(long count, @Nullable OutputStream out) throws IOException {
+            while (count > 0) {
+                if (!fill()) {
+                    throw new EOFException();
+                }
+                final int n = (int) Math.min(count, limit - pos);
+                if (out != null) {
+                    out.write(buf, pos, n);
+                }
+                pos += n;
+                count -= n;
+            }
+        }
+
+        void inflate(@Nullable OutputStream out) throws IOException {
+            final Inflater inflater = new Inflater(true);
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        if (!fill()) {
+                            throw new EOFException();
+                        }
+                        inflater.setInput(buf, pos, limit - pos);
+                        pos = limit;
+                    }
+                    final int n = inflater.inflate(scratch);
+                    if (n > 0 && out != null) {
+                        out.write(scratch, 0, n);
+                    }
+                    if (n == 0 && inflater.needsDictionary()) {
+                        throw new IOException("Unexpected deflate dictionary");
+                    }
+                }
+                pos = limit - inflater.getRemaining();
+
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+
+            } finally {
+                inflater.end();
+            }
+        }
+
+        void drain() throws IOException {
+            pos = limit;
+            while (fill()) {
+                pos = limit;
+            }
+        }
+    }
+
+    private static final class DigestOutputStream extends OutputStream {
+        @NotNull
+        private final MessageDigest digest;
+
+        DigestOutputStream(@NotNull MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    }
+}
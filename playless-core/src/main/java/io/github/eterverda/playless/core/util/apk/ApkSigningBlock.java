@@ -0,0 +1,195 @@
+package io.github.eterverda.playless.core.util.apk;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Reads signers of APK Signature Scheme v2 and v3 from APK Signing Block, which is located right
+ * before zip central directory. Only a few small reads from the end of file are made, signatures
+ * are not verified.
+ */
+public final class ApkSigningBlock {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+
+    private static final byte[] MAGIC = {'A', 'P', 'K', ' ', 'S', 'i', 'g', ' ', 'B', 'l', 'o', 'c', 'k', ' ', '4', '2'};
+    private static final int FOOTER_SIZE = 8 + 16;
+    private static final int PAIR_HEADER_SIZE = 8 + 4;
+
+    public static final int SIGNATURE_SCHEME_V2_BLOCK_ID = 0x7109871a;
+    public static final int SIGNATURE_SCHEME_V3_BLOCK_ID = 0xf05368c0;
+
+    private ApkSigningBlock() {
+    }
+
+    /**
+     * @return xor of sha1 of signers' certificates the same way v1 signatures are combined, or
+     * {@code null} if apk has neither v2 nor v3 signature. v2 is preferred as v3 may have rotated
+     * signing key, which v1 and v2 do not have.
+     */
+    @Nullable
+    public static Checksum loadSignatures(@NotNull File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return loadSignatures(in.getChannel());
+        }
+    }
+
+    @Nullable
+    public static Checksum loadSignatures(@NotNull FileChannel channel) throws IOException {
+        final long blockStart = findOffset(channel);
+        if (blockStart == -1) {
+            return null;
+        }
+        final long blockSize = read(channel, blockStart, 8).getLong();
+
+        ByteBuffer v2 = null;
+        ByteBuffer v3 = null;
+
+        long position = blockStart + 8;
+        final long pairsEnd = blockStart + 8 + blockSize - FOOTER_SIZE;
+        while (position + PAIR_HEADER_SIZE <= pairsEnd) {
+            final ByteBuffer header = read(channel, position, PAIR_HEADER_SIZE);
+            final long pairSize = header.getLong();
+            final int id = header.getInt();
+            if (pairSize < 4 || pairSize > pairsEnd - position - 8 || pairSize > Integer.MAX_VALUE) {
+                throw new IOException("Malformed APK signing block pair at " + position);
+            }
+            final int valueSize = (int) (pairSize - 4);
+            if (id == SIGNATURE_SCHEME_V2_BLOCK_ID) {
+                v2 = read(channel, position + PAIR_HEADER_SIZE, valueSize);
+
+            } else if (id == SIGNATURE_SCHEME_V3_BLOCK_ID) {
+                v3 = read(channel, position + PAIR_HEADER_SIZE, valueSize);
+            }
+            position += 8 + pairSize;
+        }
+
+        final ByteBuffer scheme = v2 != null ? v2 : v3;
+        if (scheme == null) {
+            return null;
+        }
+        try {
+            return xorSignerCertificates(scheme);
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed APK signature scheme block", e);
+        }
+    }
+
+    /**
+     * @return offset of APK Signing Block, which is right before central directory, or -1 if
+     * there is no such block
+     */
+    public static long findOffset(@NotNull FileChannel channel) throws IOException {
+        final long centralDirectoryOffset = findCentralDirectoryOffset(channel);
+        if (centralDirectoryOffset < FOOTER_SIZE + 8) {
+            return -1;
+        }
+
+        final ByteBuffer footer = read(channel, centralDirectoryOffset - FOOTER_SIZE, FOOTER_SIZE);
+        final long blockSize = footer.getLong();
+        final byte[] magic = new byte[MAGIC.length];
+        footer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            return -1;
+        }
+        final long blockStart = centralDirectoryOffset - blockSize - 8;
+        if (blockSize < FOOTER_SIZE || blockStart < 0 || read(channel, blockStart, 8).getLong() != blockSize) {
+            throw new IOException("Malformed APK signing block");
+        }
+        return blockStart;
+    }
+
+    /**
+     * v2 and v3 signers both start with signed data, which starts with digests followed by
+     * certificates.
+     */
+    @Nullable
+    private static Checksum xorSignerCertificates(@NotNull ByteBuffer scheme) {
+        Checksum signatures = null;
+
+        final ByteBuffer signers = lengthPrefixed(scheme);
+        while (signers.hasRemaining()) {
+            final ByteBuffer signer = lengthPrefixed(signers);
+            final ByteBuffer signedData = lengthPrefixed(signer);
+            lengthPrefixed(signedData); // digests
+            final ByteBuffer certificates = lengthPrefixed(signedData);
+            while (certificates.hasRemaining()) {
+                final ByteBuffer certificate = lengthPrefixed(certificates);
+                final byte[] encoded = new byte[certificate.remaining()];
+                certificate.get(encoded);
+                signatures = Checksum.xor(signatures, Checksum.sha1(encoded));
+            }
+        }
+        return signatures;
+    }
+
+    @NotNull
+    private static ByteBuffer lengthPrefixed(@NotNull ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Length " + length + " exceeds remaining " + buffer.remaining());
+        }
+        final ByteBuffer result = buffer.slice();
+        result.order(ByteOrder.LITTLE_ENDIAN);
+        result.limit(length);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+
+    /**
+     * @return offset of central directory or -1 if there is no end of central directory record
+     * or it points to zip64 one.
+     */
+    private static long findCentralDirectoryOffset(@NotNull FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size < EOCD_SIZE) {
+            return -1;
+        }
+        // usually there is no comment
+        final ByteBuffer eocd = read(channel, size - EOCD_SIZE, EOCD_SIZE);
+        if (eocd.getInt(0) == EOCD_SIGNATURE && eocd.getShort(20) == 0) {
+            final long offset = eocd.getInt(16) & 0xffffffffL;
+            return offset == ZIP64_MAGIC ? -1 : offset;
+        }
+
+        final int tailSize = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT_SIZE);
+        final ByteBuffer tail = read(channel, size - tailSize, tailSize);
+
+        for (int at = tailSize - EOCD_SIZE; at >= 0; at--) {
+            if (tail.getInt(at) == EOCD_SIGNATURE && at + EOCD_SIZE + (tail.getShort(at + 20) & 0xffff) == tailSize) {
+                final long offset = tail.getInt(at + 16) & 0xffffffffL;
+                return offset == ZIP64_MAGIC ? -1 : offset;
+            }
+        }
+        return -1;
+    }
+
+    @NotNull
+    private static ByteBuffer read(@NotNull FileChannel channel, long position, int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,298 @@
+package io.github.eterverda.playless.core.util.apk;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Pull parser of android binary xml (the format of compiled {@code AndroidManifest.xml}). Only
+ * elements and their attributes are reported, text and namespaces are skipped.
+ */
+@NotThreadSafe
+public final class BinaryXmlParser {
+    public static final int START_TAG = 2;
+    public static final int END_TAG = 3;
+    public static final int END_DOCUMENT = 1;
+
+    public static final int TYPE_NULL = 0x00;
+    public static final int TYPE_REFERENCE = 0x01;
+    public static final int TYPE_STRING = 0x03;
+    public static final int TYPE_INT_DEC = 0x10;
+    public static final int TYPE_INT_HEX = 0x11;
+    public static final int TYPE_INT_BOOLEAN = 0x12;
+
+    private static final int CHUNK_STRING_POOL = 0x0001;
+    private static final int CHUNK_XML = 0x0003;
+    private static final int CHUNK_XML_RESOURCE_MAP = 0x0180;
+    private static final int CHUNK_XML_START_ELEMENT = 0x0102;
+    private static final int CHUNK_XML_END_ELEMENT = 0x0103;
+
+    private static final int STRING_POOL_UTF8 = 1 << 8;
+
+    private static final int NO_INDEX = 0xffffffff;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+    @NotNull
+    private final byte[] data;
+    private final int end;
+    private int pos;
+
+    private String[] strings = {};
+    private int[] resourceIds = {};
+
+    private int depth;
+    private String name;
+    private int attributeCount;
+    private int[] attributeNamespaces = new int[8];
+    private int[] attributeNames = new int[8];
+    private int[] attributeRawValues = new int[8];
+    private int[] attributeTypes = new int[8];
+    private int[] attributeData = new int[8];
+
+    public BinaryXmlParser(@NotNull byte[] data) throws IOException {
+        this.data = data;
+
+        if (data.length < 8 || readShort(0) != CHUNK_XML) {
+            throw new IOException("Not a binary xml");
+        }
+        pos = readShort(2);
+        end = Math.min(data.length, readInt(4));
+    }
+
+    /**
+     * @return one of {@link #START_TAG}, {@link #END_TAG} or {@link #END_DOCUMENT}
+     */
+    public int next() throws IOException {
+        if (name != null && attributeCount == -1) {
+            depth--;
+        }
+        name = null;
+
+        while (pos + 8 <= end) {
+            final int chunkStart = pos;
+            final int type = readShort(chunkStart);
+            final int headerSize = readShort(chunkStart + 2);
+            final int size = readInt(chunkStart + 4);
+            if (size < 8 || chunkStart + size > end) {
+                throw new IOException("Malformed chunk at " + chunkStart);
+            }
+            pos = chunkStart + size;
+
+            switch (type) {
+                case CHUNK_STRING_POOL:
+                    readStringPool(chunkStart);
+                    break;
+
+                case CHUNK_XML_RESOURCE_MAP:
+                    readResourceMap(chunkStart + headerSize, chunkStart + size);
+                    break;
+
+                case CHUNK_XML_START_ELEMENT:
+                    readStartElement(chunkStart + headerSize);
+                    depth++;
+                    return START_TAG;
+
+                case CHUNK_XML_END_ELEMENT:
+                    name = string(readInt(chunkStart + headerSize + 4));
+                    attributeCount = -1;
+                    return END_TAG;
+
+                default:
+                    break;
+            }
+        }
+        return END_DOCUMENT;
+    }
+
+    /**
+     * @return depth of current element, outermost element has depth of 1
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Nullable
+    public String getName() {
+        return name;
+    }
+
+    public int getAttributeCount() {
+        return Math.max(attributeCount, 0);
+    }
+
+    @Nullable
+    public String getAttributeNamespace(int index) {
+        return string(attributeNamespaces[index]);
+    }
+
+    @Nullable
+    public String getAttributeName(int index) {
+        return string(attributeNames[index]);
+    }
+
+    /**
+     * @return resource id of attribute name, like {@code android.R.attr.versionCode}, or 0 if
+     * the name has none
+     */
+    public int getAttributeNameResource(int index) {
+        final int name = attributeNames[index];
+        return name >= 0 && name < resourceIds.length ? resourceIds[name] : 0;
+    }
+
+    public int getAttributeType(int index) {
+        return attributeTypes[index];
+    }
+
+    /**
+     * @return string value of attribute either raw or typed, {@code null} if attribute has
+     * non-string typed value, references to resources including.
+     */
+    @Nullable
+    public String getAttributeStringValue(int index) {
+        final String raw = string(attributeRawValues[index]);
+        if (raw != null) {
+            return raw;
+        }
+        return attributeTypes[index] == TYPE_STRING ? string(attributeData[index]) : null;
+    }
+
+    public int getAttributeIntValue(int index) {
+        return attributeData[index];
+    }
+
+    /**
+     * Finds attribute the way aapt does for attributes without resource id, like
+     * {@code package} of {@code manifest}. Attributes which have resource id are not matched.
+     *
+     * @return index of attribute with given name or -1 if there is no such attribute
+     */
+    public int indexOfAttribute(@Nullable String namespace, @NotNull String name) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (getAttributeNameResource(i) == 0 && name.equals(getAttributeName(i)) &&
+                    (namespace == null || namespace.equals(getAttributeNamespace(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds attribute by resource id of its name the way aapt does, so that attributes with
+     * obfuscated or stripped names are still found.
+     *
+     * @return index of attribute with given resource id or -1 if there is no such attribute
+     */
+    public int indexOfAttribute(int resourceId) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (getAttributeNameResource(i) == resourceId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void readStartElement(int ext) throws IOException {
+        name = string(readInt(ext + 4));
+
+        final int attributeStart = readShort(ext + 8);
+        final int attributeSize = readShort(ext + 10);
+        final int count = readShort(ext + 12);
+
+        if (count > attributeNames.length) {
+            attributeNamespaces = new int[count];
+            attributeNames = new int[count];
+            attributeRawValues = new int[count];
+            attributeTypes = new int[count];
+            attributeData = new int[count];
+        }
+
+        for (int i = 0, at = ext + attributeStart; i < count; i++, at += attributeSize) {
+            if (at + 20 > end) {
+                throw new IOException("Malformed attribute at " + at);
+            }
+            attributeNamespaces[i] = readInt(at);
+            attributeNames[i] = readInt(at + 4);
+            attributeRawValues[i] = readInt(at + 8);
+            attributeTypes[i] = data[at + 15] & 0xff;
+            attributeData[i] = readInt(at + 16);
+        }
+        attributeCount = count;
+    }
+
+    /**
+     * Resource map gives resource ids of the first strings of pool, which are attribute names.
+     */
+    private void readResourceMap(int from, int to) throws IOException {
+        final int[] resourceIds = new int[(to - from) / 4];
+        for (int i = 0; i < resourceIds.length; i++) {
+            resourceIds[i] = readInt(from + i * 4);
+        }
+        this.resourceIds = resourceIds;
+    }
+
+    private void readStringPool(int chunk) throws IOException {
+        final int count = readInt(chunk + 8);
+        final int flags = readInt(chunk + 16);
+        final int stringsStart = chunk + readInt(chunk + 20);
+        final boolean utf8 = (flags & STRING_POOL_UTF8) != 0;
+
+        final String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            final int at = stringsStart + readInt(chunk + readShort(chunk + 2) + i * 4);
+            strings[i] = utf8 ? readUtf8String(at) : readUtf16String(at);
+        }
+        this.strings = strings;
+    }
+
+    @NotNull
+    private String readUtf8String(int at) throws IOException {
+        // utf-16 length goes first, it is not needed
+        at += (data[at] & 0x80) != 0 ? 2 : 1;
+
+        int length = data[at++] & 0xff;
+        if ((length & 0x80) != 0) {
+            length = (length & 0x7f) << 8 | data[at++] & 0xff;
+        }
+        check(at + length);
+        return new String(data, at, length, UTF_8);
+    }
+
+    @NotNull
+    private String readUtf16String(int at) throws IOException {
+        int length = readShort(at);
+        at += 2;
+        if ((length & 0x8000) != 0) {
+            length = (length & 0x7fff) << 16 | readShort(at);
+            at += 2;
+        }
+        check(at + length * 2);
+        return new String(data, at, length * 2, UTF_16LE);
+    }
+
+    @Nullable
+    private String string(int index) {
+        return index == NO_INDEX || index < 0 || index >= strings.length ? null : strings[index];
+    }
+
+    private int readShort(int at) throws IOException {
+        check(at + 2);
+        return (data[at] & 0xff) | (data[at + 1] & 0xff) << 8;
+    }
+
+    private int readInt(int at) throws IOException {
+        check(at + 4);
+        return (data[at] & 0xff) | (data[at + 1] & 0xff) << 8 | (data[at + 2] & 0xff) << 16 | (data[at + 3] & 0xff) << 24;
+    }
+
+    private void check(int limit) throws IOException {
+        if (limit > data.length) {
+            throw new IOException("Unexpected end of binary xml");
+        }
+    }
+}
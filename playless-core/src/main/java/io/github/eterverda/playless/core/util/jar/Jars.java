@@ -12,14 +12,23 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import io.github.eterverda.playless.core.io.Streams;
+import io.github.eterverda.playless.core.util.apk.ApkSigningBlock;
 import io.github.eterverda.util.checksum.Checksum;
 
 public class Jars {
     private Jars() {
     }
 
+    /**
+     * @return signatures of v2/v3 signers or, if there are none, of v1 ones verified by {@link JarFile}
+     */
     @Nullable
     public static Checksum loadSignatures(@NotNull File file) throws IOException {
+        final Checksum schemeSignatures = ApkSigningBlock.loadSignatures(file);
+        if (schemeSignatures != null) {
+            return schemeSignatures;
+        }
+
         final Certificate[] certificates;
         try (JarFile jar = new JarFile(file)) {
             final JarEntry androidManifest = jar.getJarEntry("AndroidManifest.xml");
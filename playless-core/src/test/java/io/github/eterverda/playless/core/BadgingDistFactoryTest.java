@@ -0,0 +1,51 @@
+package io.github.eterverda.playless.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class BadgingDistFactoryTest {
+    private static final String PACKAGE = "package: name='com.example.my_app' versionCode='42' versionName='4.2-beta' platformBuildVersionName='5.0.1-1624448'";
+
+    @Test
+    public void attributeName() {
+        Assert.assertEquals("com.example.my_app", BadgingDistFactory.attribute(PACKAGE, 8, "name"));
+    }
+
+    @Test
+    public void attributeVersionName() {
+        Assert.assertEquals("4.2-beta", BadgingDistFactory.attribute(PACKAGE, 8, "versionName"));
+    }
+
+    @Test
+    public void attributeAbsent() {
+        Assert.assertNull(BadgingDistFactory.attribute(PACKAGE, 8, "Name"));
+    }
+
+    @Test
+    public void quotedWithQuotes() {
+        Assert.assertEquals("Don't panic", BadgingDistFactory.quoted("application-label:'Don't panic'", 18));
+    }
+
+    @Test
+    public void quotedAbsent() {
+        Assert.assertNull(BadgingDistFactory.quoted("application-debuggable", 0));
+    }
+
+    @Test
+    public void listSpaces() {
+        Assert.assertEquals(Arrays.asList("small", "normal"), BadgingDistFactory.list("supports-screens: 'small' 'normal'", 17));
+    }
+
+    @Test
+    public void listCommas() {
+        Assert.assertEquals(Arrays.asList("300/240", "400/240"), BadgingDistFactory.list("compatible-screens:'300/240','400/240'", 19));
+    }
+
+    @Test
+    public void listEmpty() {
+        Assert.assertEquals(Collections.<String>emptyList(), BadgingDistFactory.list("native-code:", 12));
+    }
+}
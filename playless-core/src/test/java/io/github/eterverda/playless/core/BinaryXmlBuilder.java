@@ -0,0 +1,226 @@
+package io.github.eterverda.playless.core;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles xml into android binary xml the way aapt does, but only to the extent needed by tests.
+ * Android attribute names go first in string pool and get resource ids from resource map.
+ */
+final class BinaryXmlBuilder {
+    private static final String[] ATTRIBUTE_NAMES = {
+            "label", "name", "debuggable", "screenOrientation", "minSdkVersion", "versionCode", "versionName",
+            "reqTouchScreen", "reqKeyboardType", "reqHardKeyboard", "targetSdkVersion", "maxSdkVersion",
+            "glEsVersion", "smallScreens", "required", "screenSize", "screenDensity", "requiresSmallestWidthDp"};
+    private static final int[] ATTRIBUTE_IDS = {
+            0x01010001, 0x01010003, 0x0101000f, 0x0101001e, 0x0101020c, 0x0101021b, 0x0101021c,
+            0x01010227, 0x01010228, 0x01010229, 0x01010270, 0x01010271,
+            0x01010281, 0x01010284, 0x0101028e, 0x010102ca, 0x010102cb, 0x01010364};
+
+    private static final int TYPE_REFERENCE = 0x01;
+    private static final int TYPE_STRING = 0x03;
+    private static final int TYPE_INT_DEC = 0x10;
+    private static final int TYPE_INT_HEX = 0x11;
+    private static final int TYPE_INT_BOOLEAN = 0x12;
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+    private final List<String> open = new ArrayList<>();
+
+    private String element;
+    private final List<int[]> attributes = new ArrayList<>();
+
+    private final int namespace;
+    private final int prefix;
+
+    private boolean obfuscated;
+
+    BinaryXmlBuilder() {
+        for (String name : ATTRIBUTE_NAMES) {
+            string(name);
+        }
+        prefix = string("android");
+        namespace = string(ManifestDistFactory.ANDROID_NAMESPACE);
+    }
+
+    /**
+     * Renames android attributes in string pool the way shrinkers do, resource ids are kept.
+     */
+    BinaryXmlBuilder obfuscate() {
+        obfuscated = true;
+        return this;
+    }
+
+    BinaryXmlBuilder start(String name) {
+        flush();
+        element = name;
+        open.add(name);
+        return this;
+    }
+
+    BinaryXmlBuilder end() {
+        flush();
+        final String name = open.remove(open.size() - 1);
+        writeShort(nodes, 0x0103);
+        writeShort(nodes, 16);
+        writeInt(nodes, 24);
+        writeInt(nodes, 1);
+        writeInt(nodes, -1);
+        writeInt(nodes, -1);
+        writeInt(nodes, string(name));
+        return this;
+    }
+
+    BinaryXmlBuilder plain(String name, String value) {
+        attributes.add(new int[]{-1, string(name), string(value), TYPE_STRING, string(value)});
+        return this;
+    }
+
+    BinaryXmlBuilder attr(String name, String value) {
+        attributes.add(new int[]{namespace, string(name), string(value), TYPE_STRING, string(value)});
+        return this;
+    }
+
+    BinaryXmlBuilder attr(String name, int value) {
+        attributes.add(new int[]{namespace, string(name), -1, TYPE_INT_DEC, value});
+        return this;
+    }
+
+    BinaryXmlBuilder hex(String name, int value) {
+        attributes.add(new int[]{namespace, string(name), -1, TYPE_INT_HEX, value});
+        return this;
+    }
+
+    BinaryXmlBuilder ref(String name, int resourceId) {
+        attributes.add(new int[]{namespace, string(name), -1, TYPE_REFERENCE, resourceId});
+        return this;
+    }
+
+    BinaryXmlBuilder bool(String name, boolean value) {
+        attributes.add(new int[]{namespace, string(name), -1, TYPE_INT_BOOLEAN, value ? -1 : 0});
+        return this;
+    }
+
+    byte[] build() {
+        flush();
+        if (!open.isEmpty()) {
+            throw new IllegalStateException("Unclosed " + open);
+        }
+
+        final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final List<Integer> offsets = new ArrayList<>();
+        for (String string : strings.keySet()) {
+            if (obfuscated && offsets.size() < ATTRIBUTE_NAMES.length) {
+                string = Integer.toString(offsets.size(), Character.MAX_RADIX);
+            }
+            offsets.add(data.size());
+            writeShort(data, string.length());
+            for (char c : string.toCharArray()) {
+                writeShort(data, c);
+            }
+            writeShort(data, 0);
+        }
+        while (data.size() % 4 != 0) {
+            data.write(0);
+        }
+        writeShort(pool, 0x0001);
+        writeShort(pool, 28);
+        writeInt(pool, 28 + offsets.size() * 4 + data.size());
+        writeInt(pool, offsets.size());
+        writeInt(pool, 0);
+        writeInt(pool, 0);
+        writeInt(pool, 28 + offsets.size() * 4);
+        writeInt(pool, 0);
+        for (int offset : offsets) {
+            writeInt(pool, offset);
+        }
+        pool.write(data.toByteArray(), 0, data.size());
+
+        final ByteArrayOutputStream resourceMap = new ByteArrayOutputStream();
+        writeShort(resourceMap, 0x0180);
+        writeShort(resourceMap, 8);
+        writeInt(resourceMap, 8 + ATTRIBUTE_IDS.length * 4);
+        for (int id : ATTRIBUTE_IDS) {
+            writeInt(resourceMap, id);
+        }
+
+        final ByteArrayOutputStream namespaceStart = namespaceChunk(0x0100);
+        final ByteArrayOutputStream namespaceEnd = namespaceChunk(0x0101);
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        writeShort(result, 0x0003);
+        writeShort(result, 8);
+        writeInt(result, 8 + pool.size() + resourceMap.size() + namespaceStart.size() + nodes.size() + namespaceEnd.size());
+        result.write(pool.toByteArray(), 0, pool.size());
+        result.write(resourceMap.toByteArray(), 0, resourceMap.size());
+        result.write(namespaceStart.toByteArray(), 0, namespaceStart.size());
+        result.write(nodes.toByteArray(), 0, nodes.size());
+        result.write(namespaceEnd.toByteArray(), 0, namespaceEnd.size());
+        return result.toByteArray();
+    }
+
+    private ByteArrayOutputStream namespaceChunk(int type) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeShort(out, type);
+        writeShort(out, 16);
+        writeInt(out, 24);
+        writeInt(out, 1);
+        writeInt(out, -1);
+        writeInt(out, prefix);
+        writeInt(out, namespace);
+        return out;
+    }
+
+    private void flush() {
+        if (element == null) {
+            return;
+        }
+        writeShort(nodes, 0x0102);
+        writeShort(nodes, 16);
+        writeInt(nodes, 16 + 20 + attributes.size() * 20);
+        writeInt(nodes, 1);
+        writeInt(nodes, -1);
+        writeInt(nodes, -1);
+        writeInt(nodes, string(element));
+        writeShort(nodes, 20);
+        writeShort(nodes, 20);
+        writeShort(nodes, attributes.size());
+        writeShort(nodes, 0);
+        writeShort(nodes, 0);
+        writeShort(nodes, 0);
+        for (int[] attribute : attributes) {
+            writeInt(nodes, attribute[0]);
+            writeInt(nodes, attribute[1]);
+            writeInt(nodes, attribute[2]);
+            writeShort(nodes, 8);
+            nodes.write(0);
+            nodes.write(attribute[3]);
+            writeInt(nodes, attribute[4]);
+        }
+        element = null;
+        attributes.clear();
+    }
+
+    private int string(String string) {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write(value >> 8 & 0xff);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value & 0xffff);
+        writeShort(out, value >> 16 & 0xffff);
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.eterverda.playless.core;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class BlobCollectorTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlobStore blobs;
+
+    private final Checksum apk = Checksum.sha1("apk".getBytes(Charset.forName("UTF-8")));
+    private final Checksum icon = Checksum.sha1("icon".getBytes(Charset.forName("UTF-8")));
+    private final Checksum garbage = Checksum.sha1("garbage".getBytes(Charset.forName("UTF-8")));
+
+    @Before
+    public void setUp() throws IOException {
+        blobs = new BlobStore(folder.getRoot());
+        blobs.store("apk".getBytes("UTF-8"), apk, "app.apk");
+        blobs.store("icon".getBytes("UTF-8"), icon, "icon.png");
+        blobs.store("garbage".getBytes("UTF-8"), garbage, "old.apk");
+
+        // also dump cache and others live there
+        Assert.assertTrue(new File(folder.getRoot(), ".playless/dump-cache").mkdirs());
+    }
+
+    @Test
+    public void unreferencedAreRemoved() throws IOException {
+        age(apk, "app.apk");
+        age(icon, "icon.png");
+        age(garbage, "old.apk");
+
+        final BlobCollector collector = new BlobCollector(folder.getRoot());
+        collector.mark(dist());
+        collector.sweep(4, HOUR, true, null);
+
+        Assert.assertEquals(3, collector.getBlobs());
+        Assert.assertEquals(1, collector.getUnreferenced());
+        Assert.assertTrue(blobs.contains(apk, "app.apk"));
+        Assert.assertTrue(blobs.contains(icon, "icon.png"));
+        Assert.assertFalse(blobs.contains(garbage, "old.apk"));
+        Assert.assertFalse(blobs.getFile(garbage, "old.apk").getParentFile().exists());
+        Assert.assertTrue(new File(folder.getRoot(), ".playless/dump-cache").isDirectory());
+    }
+
+    @Test
+    public void youngAreKept() throws IOException {
+        final BlobCollector collector = new BlobCollector(folder.getRoot());
+        collector.mark(dist());
+        collector.sweep(4, HOUR, true, null);
+
+        Assert.assertEquals(1, collector.getYoung());
+        Assert.assertEquals(0, collector.getUnreferenced());
+        Assert.assertTrue(blobs.contains(garbage, "old.apk"));
+    }
+
+    @Test
+    public void dryRunRemovesNothing() throws IOException {
+        age(garbage, "old.apk");
+
+        final BlobCollector collector = new BlobCollector(folder.getRoot());
+        collector.mark(dist());
+        collector.sweep(1, HOUR, false, null);
+
+        Assert.assertEquals(1, collector.getUnreferenced());
+        Assert.assertTrue(blobs.contains(garbage, "old.apk"));
+    }
+
+    @Test
+    public void reusedAreKept() throws IOException {
+        age(garbage, "old.apk");
+        // published again after its dist was removed, not committed yet
+        Assert.assertFalse(blobs.store("garbage".getBytes("UTF-8"), garbage, "old.apk"));
+
+        final BlobCollector collector = new BlobCollector(folder.getRoot());
+        collector.mark(dist());
+        collector.sweep(1, HOUR, true, null);
+
+        Assert.assertEquals(0, collector.getUnreferenced());
+        Assert.assertTrue(blobs.contains(garbage, "old.apk"));
+    }
+
+    @Test
+    public void removingOneKeepsNoOtherOfDirectory() throws IOException {
+        blobs.store("garbage".getBytes("UTF-8"), garbage, "older.apk");
+        age(garbage, "old.apk");
+        age(garbage, "older.apk");
+
+        final BlobCollector collector = new BlobCollector(folder.getRoot());
+        collector.mark(dist());
+        collector.sweep(1, HOUR, true, null);
+
+        Assert.assertEquals(2, collector.getUnreferenced());
+        Assert.assertFalse(blobs.getFile(garbage, "old.apk").getParentFile().exists());
+    }
+
+    private Dist dist() {
+        final Dist.Editor dist = new Dist.Editor();
+        dist.applicationId("com.example");
+        dist.versionCode(1);
+        dist.fingerprint(apk);
+        dist.link(Dist.LINK_REL_ICON, BlobStore.path(icon, "icon.png"));
+        return dist.build();
+    }
+
+    private void age(Checksum fingerprint, String filename) {
+        final File file = blobs.getFile(fingerprint, filename);
+        final long old = System.currentTimeMillis() - 2 * HOUR;
+        Assert.assertTrue(file.setLastModified(old));
+        Assert.assertTrue(file.getParentFile().setLastModified(old));
+    }
+}
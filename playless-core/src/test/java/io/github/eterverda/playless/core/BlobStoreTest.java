@@ -0,0 +1,59 @@
+package io.github.eterverda.playless.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+public class BlobStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pathMatchesLayout() throws IOException {
+        final String path = BlobStore.path(Checksum.sha1("some".getBytes("UTF-8")), "some.apk");
+
+        Assert.assertTrue(path, path.matches("\\.playless/[a-z2-7]{2}/[a-z2-7]{30}/some\\.apk"));
+    }
+
+    @Test
+    public void linkedBlob() throws IOException {
+        final File source = source("linked");
+        final BlobStore blobs = new BlobStore(folder.newFolder("repo"));
+
+        Assert.assertTrue(blobs.store(source, Checksum.sha1(source), "some.apk"));
+        Assert.assertFalse(blobs.store(source, Checksum.sha1(source), "some.apk"));
+
+        final File blob = blobs.getFile(Checksum.sha1(source), "some.apk");
+        Assert.assertTrue(Files.isSameFile(source.toPath(), blob.toPath()));
+    }
+
+    @Test
+    public void copiedBlob() throws IOException {
+        final File source = source("copied");
+        final BlobStore blobs = new BlobStore(folder.newFolder("repo"));
+        blobs.setLinking(false);
+
+        Assert.assertTrue(blobs.store(source, Checksum.sha1(source), "some.apk"));
+
+        final File blob = blobs.getFile(Checksum.sha1(source), "some.apk");
+        Assert.assertFalse(Files.isSameFile(source.toPath(), blob.toPath()));
+        Assert.assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(blob.toPath()));
+        Assert.assertEquals(1, blob.getParentFile().list().length);
+    }
+
+    private File source(String content) throws IOException {
+        final File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+        return file;
+    }
+}
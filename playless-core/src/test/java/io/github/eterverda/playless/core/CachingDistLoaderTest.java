@@ -0,0 +1,137 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class CachingDistLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CountingDistLoader counting;
+    private File cacheDir;
+    private File apk;
+
+    @Before
+    public void setUp() throws IOException {
+        counting = new CountingDistLoader();
+        cacheDir = new File(folder.getRoot(), "cache");
+        apk = folder.newFile("some.apk");
+        write(apk, "some");
+    }
+
+    @Test
+    public void unchangedIsHit() throws IOException {
+        final Dist loaded = new CachingDistLoader(counting, cacheDir, "test").load(apk);
+
+        final CachingDistLoader loader = new CachingDistLoader(counting, cacheDir, "test");
+        final Dist cached = loader.load(apk);
+
+        Assert.assertEquals(1, counting.loads);
+        Assert.assertEquals(1, loader.getHits());
+        Assert.assertEquals(0, loader.getMisses());
+        Assert.assertEquals(loaded, cached);
+        Assert.assertEquals(loaded.meta, cached.meta);
+    }
+
+    @Test
+    public void changedIsMiss() throws IOException {
+        new CachingDistLoader(counting, cacheDir, "test").load(apk);
+        write(apk, "other");
+
+        final CachingDistLoader loader = new CachingDistLoader(counting, cacheDir, "test");
+        final Dist reloaded = loader.load(apk);
+
+        Assert.assertEquals(2, counting.loads);
+        Assert.assertEquals(0, loader.getHits());
+        Assert.assertEquals(1, loader.getMisses());
+        Assert.assertEquals(Checksum.sha1("other".getBytes("UTF-8")), reloaded.version.fingerprint);
+    }
+
+    @Test
+    public void otherVariantIsMiss() throws IOException {
+        new CachingDistLoader(counting, cacheDir, "test").load(apk);
+        new CachingDistLoader(counting, cacheDir, "other").load(apk);
+
+        Assert.assertEquals(2, counting.loads);
+    }
+
+    @Test
+    public void brokenIsMiss() throws IOException {
+        new CachingDistLoader(counting, cacheDir, "test").load(apk);
+        for (File entry : cacheDir.listFiles()) {
+            final String identity = Files.readAllLines(entry.toPath(), Charset.forName("UTF-8")).get(0);
+            write(entry, identity + "\n{]");
+        }
+        final CachingDistLoader loader = new CachingDistLoader(counting, cacheDir, "test");
+        loader.load(apk);
+
+        Assert.assertEquals(1, loader.getMisses());
+        Assert.assertEquals(2, counting.loads);
+    }
+
+    @Test
+    public void missingIconIsMiss() throws IOException {
+        final BlobStore icons = new BlobStore(folder.newFolder("repo"));
+        final DistLoader iconic = new DistLoader() {
+            @NotNull
+            @Override
+            public Dist load(@NotNull File file) throws IOException {
+                final Checksum icon = Checksum.sha1("icon".getBytes("UTF-8"));
+                icons.store("icon".getBytes("UTF-8"), icon, "icon.png");
+                final Dist.Editor dist = counting.load(file).edit();
+                dist.link(Dist.LINK_REL_ICON, BlobStore.path(icon, "icon.png"));
+                return dist.build();
+            }
+        };
+        new CachingDistLoader(iconic, cacheDir, "test", icons).load(apk);
+        new CachingDistLoader(iconic, cacheDir, "test", icons).load(apk);
+        Assert.assertEquals(1, counting.loads);
+
+        // collected as referenced by no index
+        final File icon = icons.getFile(Checksum.sha1("icon".getBytes("UTF-8")), "icon.png");
+        Assert.assertTrue(icon.delete());
+
+        final CachingDistLoader loader = new CachingDistLoader(iconic, cacheDir, "test", icons);
+        loader.load(apk);
+
+        Assert.assertEquals(1, loader.getMisses());
+        Assert.assertEquals(2, counting.loads);
+        Assert.assertTrue(icon.isFile());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    private static final class CountingDistLoader implements DistLoader {
+        int loads;
+
+        @NotNull
+        @Override
+        public Dist load(@NotNull File file) throws IOException {
+            loads++;
+
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId("com.example." + file.getName().replace(".apk", ""));
+            dist.versionCode(loads);
+            dist.meta(Dist.META_VERSION_NAME, "1.0-\u00fcn\u00efcode");
+            dist.fingerprint(Checksum.sha1(Files.readAllBytes(file.toPath())));
+            return dist.build();
+        }
+    }
+}
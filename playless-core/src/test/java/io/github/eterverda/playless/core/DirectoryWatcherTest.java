@@ -0,0 +1,46 @@
+package io.github.eterverda.playless.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+public class DirectoryWatcherTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 30000)
+    public void burstIsSingleBatch() throws IOException, InterruptedException {
+        try (DirectoryWatcher watcher = new DirectoryWatcher(folder.getRoot(), ".apk", 500)) {
+            for (int i = 0; i < 300; i++) {
+                folder.newFile(i + ".apk");
+            }
+            folder.newFile("ignored.txt");
+
+            final Set<File> files = watcher.take();
+
+            Assert.assertNotNull(files);
+            Assert.assertEquals(300, files.size());
+            Assert.assertTrue(files.contains(new File(folder.getRoot(), "299.apk")));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void deletedIsReported() throws IOException, InterruptedException {
+        final File apk = folder.newFile("some.apk");
+        try (DirectoryWatcher watcher = new DirectoryWatcher(folder.getRoot(), ".apk", 100)) {
+            Assert.assertEquals(1, watcher.list().size());
+            Assert.assertTrue(apk.delete());
+
+            final Set<File> files = watcher.take();
+
+            Assert.assertNotNull(files);
+            Assert.assertTrue(files.contains(apk));
+            Assert.assertEquals(0, watcher.list().size());
+        }
+    }
+}
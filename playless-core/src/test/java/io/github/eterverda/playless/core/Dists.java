@@ -0,0 +1,33 @@
+package io.github.eterverda.playless.core;
+
+import java.nio.charset.Charset;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Dists for tests. Dist is told apart by application id and version code, its fingerprint, link
+ * and meta are made of them too.
+ */
+public final class Dists {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Dists() {
+    }
+
+    public static Dist dist(String applicationId, int versionCode) {
+        return editor(applicationId, versionCode).build();
+    }
+
+    public static Dist.Editor editor(String applicationId, int versionCode) {
+        final Dist.Editor dist = new Dist.Editor();
+        dist.applicationId(applicationId);
+        dist.versionCode(versionCode);
+        dist.fingerprint(Checksum.sha1((applicationId + versionCode).getBytes(UTF_8)));
+        dist.minSdkVersion(9);
+        dist.supportsScreen("normal");
+        dist.link("download", applicationId + versionCode + ".apk");
+        dist.meta("label", applicationId);
+        return dist;
+    }
+}
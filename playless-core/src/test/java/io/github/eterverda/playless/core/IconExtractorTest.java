@@ -0,0 +1,45 @@
+package io.github.eterverda.playless.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+public class IconExtractorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameIconIsWrittenOnce() throws IOException {
+        final byte[] content = "icon".getBytes("UTF-8");
+        final Checksum fingerprint = Checksum.sha1(content);
+        final BlobStore blobs = new BlobStore(folder.getRoot());
+        final IconExtractor extractor = new IconExtractor(blobs);
+
+        extractor.extract(fingerprint, content, "icon.png");
+        extractor.extract(fingerprint, content, "icon.png");
+
+        Assert.assertEquals(2, extractor.getIcons());
+        Assert.assertEquals(1, extractor.getUnique());
+        Assert.assertEquals(1, extractor.getWritten());
+        Assert.assertArrayEquals(content, Files.readAllBytes(blobs.getFile(fingerprint, "icon.png").toPath()));
+    }
+
+    @Test
+    public void existingIconIsNotRewritten() throws IOException {
+        final byte[] content = "icon".getBytes("UTF-8");
+        final BlobStore blobs = new BlobStore(folder.getRoot());
+        new IconExtractor(blobs).extract(Checksum.sha1(content), content, "icon.png");
+
+        final IconExtractor extractor = new IconExtractor(blobs);
+        extractor.extract(Checksum.sha1(content), content, "icon.png");
+
+        Assert.assertEquals(1, extractor.getUnique());
+        Assert.assertEquals(0, extractor.getWritten());
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.core.aapt.Aapt;
+
+/**
+ * Checks that in-process manifest parsing gives the same dists as {@code aapt dump badging} does.
+ * Each {@code badging/<name>.apk} is checked in next to {@code badging/<name>.txt} holding its
+ * badging, re-record it with {@code aapt dump badging <name>.apk > <name>.txt} when aapt changes.
+ * Test apks have no {@code resources.arsc}, so there are no icons and no localized labels.
+ */
+public class ManifestDistFactoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void wombat() throws IOException {
+        assertParity("wombat");
+    }
+
+    @Test
+    public void obfuscatedAttributeNames() throws IOException {
+        assertParity("wombat-obfuscated");
+    }
+
+    @Test
+    public void camera() throws IOException {
+        assertParity("camera");
+    }
+
+    @Test
+    public void legacy() throws IOException {
+        assertParity("legacy");
+    }
+
+    @Test
+    public void versionNameReferenceFallsBackToVersionCode() throws IOException {
+        final byte[] manifest = new BinaryXmlBuilder()
+                .start("manifest").plain("package", "com.example.wombat").attr("versionCode", 7).ref("versionName", 0x7f040001)
+                .end()
+                .build();
+
+        final Dist dist = new InitialDistFactory(null).load(makeApk(manifest));
+        Assert.assertEquals(7, dist.version.versionCode);
+        Assert.assertEquals("7", dist.meta.get(Dist.META_VERSION_NAME));
+    }
+
+    private void assertParity(String name) throws IOException {
+        final File apk = folder.newFile(name + ".apk");
+        try (InputStream in = ManifestDistFactoryTest.class.getResourceAsStream("badging/" + name + ".apk")) {
+            Files.copy(in, apk.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        final Dist expected = new InitialDistFactory(new RecordedAapt(name)).load(apk);
+        final Dist actual = new InitialDistFactory(null).load(apk);
+
+        Assert.assertTrue("expected " + expected + " but was " + actual, expected.equalsIgnoreMeta(actual));
+        Assert.assertEquals(expected.filter.nativeCode, actual.filter.nativeCode);
+        Assert.assertEquals(expected.meta.get(Dist.META_VERSION_NAME), actual.meta.get(Dist.META_VERSION_NAME));
+    }
+
+    private File makeApk(byte[] manifest, String... libs) throws IOException {
+        final File apk = folder.newFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk))) {
+            out.putNextEntry(new ZipEntry(InitialDistFactory.ANDROID_MANIFEST));
+            out.write(manifest);
+            out.closeEntry();
+
+            for (String lib : libs) {
+                out.putNextEntry(new ZipEntry(lib));
+                out.write(lib.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        }
+        return apk;
+    }
+
+    /**
+     * Answers with badging recorded for the apk instead of running aapt.
+     */
+    private static final class RecordedAapt implements Aapt {
+        private final String name;
+
+        RecordedAapt(String name) {
+            this.name = name;
+        }
+
+        @NotNull
+        @Override
+        public String dumpBadging(@NotNull File apk) throws IOException {
+            try (InputStream in = ManifestDistFactoryTest.class.getResourceAsStream("badging/" + name + ".txt")) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buf = new byte[8192];
+                int len;
+                while ((len = in.read(buf)) != -1) {
+                    out.write(buf, 0, len);
+                }
+                return out.toString("UTF-8");
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.github.eterverda.playless.common.Dist;
+
+public class ParallelDistLoaderTest {
+    private static final int FILES = 4;
+
+    @Test
+    public void resultFollowsFilesWhenLoadsCompleteInReverse() throws IOException {
+        final ReverseDistLoader loader = new ReverseDistLoader(FILES);
+
+        final List<Dist> dists = new ParallelDistLoader(loader, FILES).loadAll(files(FILES));
+
+        Assert.assertEquals(Arrays.asList(3, 2, 1, 0), loader.completed);
+        Assert.assertEquals(expected(0, 1, 2, 3), dists);
+    }
+
+    @Test
+    public void failuresAreLeftOut() throws IOException {
+        final List<File> files = files(FILES);
+        final Map<File, IOException> failures = new HashMap<>();
+
+        final List<Dist> dists = new ParallelDistLoader(new FailingDistLoader("app2"), FILES).loadAll(files, failures);
+
+        Assert.assertEquals(expected(0, 1, 3), dists);
+        Assert.assertEquals(Collections.singleton(files.get(2)), failures.keySet());
+    }
+
+    @Test
+    public void failureFailsBatchWithoutFailures() {
+        for (int jobs : new int[]{1, FILES}) {
+            try {
+                new ParallelDistLoader(new FailingDistLoader("app2"), jobs).loadAll(files(FILES));
+                Assert.fail();
+
+            } catch (IOException expected) {
+                Assert.assertEquals("app2", expected.getMessage());
+            }
+        }
+    }
+
+    private static List<File> files(int count) {
+        final List<File> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new File("app" + i + ".apk"));
+        }
+        return result;
+    }
+
+    private static List<Dist> expected(int... versionCodes) {
+        final List<Dist> result = new ArrayList<>(versionCodes.length);
+        for (int versionCode : versionCodes) {
+            result.add(Dists.dist("com.example", versionCode));
+        }
+        return result;
+    }
+
+    private static int versionCode(@NotNull File file) {
+        final String name = file.getName();
+        return Integer.parseInt(name.substring("app".length(), name.length() - ".apk".length()));
+    }
+
+    /**
+     * Every file but the last one waits for the next one to be loaded.
+     */
+    private static final class ReverseDistLoader implements DistLoader {
+        private final CountDownLatch[] loaded;
+        final List<Integer> completed = Collections.synchronizedList(new ArrayList<Integer>());
+
+        ReverseDistLoader(int count) {
+            loaded = new CountDownLatch[count];
+            for (int i = 0; i < count; i++) {
+                loaded[i] = new CountDownLatch(1);
+            }
+        }
+
+        @NotNull
+        @Override
+        public Dist load(@NotNull File file) throws IOException {
+            final int versionCode = versionCode(file);
+            try {
+                if (versionCode + 1 < loaded.length && !loaded[versionCode + 1].await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("app" + (versionCode + 1) + " is not loaded");
+                }
+
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            completed.add(versionCode);
+            loaded[versionCode].countDown();
+            return Dists.dist("com.example", versionCode);
+        }
+    }
+
+    private static final class FailingDistLoader implements DistLoader {
+        private final String failing;
+
+        FailingDistLoader(String failing) {
+            this.failing = failing;
+        }
+
+        @NotNull
+        @Override
+        public Dist load(@NotNull File file) throws IOException {
+            if (file.getName().equals(failing + ".apk")) {
+                throw new IOException(failing);
+            }
+            return Dists.dist("com.example", versionCode(file));
+        }
+    }
+}
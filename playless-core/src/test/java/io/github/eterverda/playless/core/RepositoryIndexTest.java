@@ -0,0 +1,305 @@
+package io.github.eterverda.playless.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.RepoDelta;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.json.GsonJsonReader;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class RepositoryIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Repository repository;
+
+    private final Dist first = Dists.dist("com.example.first", 1);
+    private final Dist second = Dists.dist("com.example.second", 1);
+    private final Dist third = Dists.dist("com.example.second", 2);
+
+    @Before
+    public void setUp() throws PlaylessRepositoryException {
+        repository = Repository.init(folder.getRoot());
+    }
+
+    @Test
+    public void commitIsPersisted() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+
+        final RepositoryIndex reopened = RepositoryIndex.open(repository);
+        Assert.assertEquals(index.getRepo().dists, reopened.getRepo().dists);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, third)), reopened.getRepo().dists);
+    }
+
+    @Test
+    public void commitAppendsOnlyDelta() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.compact();
+        final long baseLength = index.getFile().length();
+
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+
+        Assert.assertEquals(baseLength, index.getFile().length());
+        Assert.assertEquals(1, Files.readAllLines(index.getLogFile().toPath(), Charset.forName("UTF-8")).size());
+    }
+
+    @Test
+    public void compactionKeepsIndex() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+
+        Assert.assertTrue(index.compact());
+
+        Assert.assertEquals(0, index.getLogFile().length());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, third)), RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test
+    public void interruptedCommitIsCutOff() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Collections.singletonList(first), Collections.<Dist>emptyList());
+        final long committed = index.getLogFile().length();
+
+        try (FileOutputStream out = new FileOutputStream(index.getLogFile(), true)) {
+            out.write("{\"playless-delta-v1\":{\"added\":[{\"applicationId\":".getBytes("UTF-8"));
+        }
+
+        final RepositoryIndex reopened = RepositoryIndex.open(repository);
+        Assert.assertEquals(Collections.singleton(first), reopened.getRepo().dists);
+        Assert.assertEquals(committed, reopened.getLogFile().length());
+
+        reopened.commit(Collections.singletonList(second), Collections.<Dist>emptyList());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, second)), RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test
+    public void logAppliedTwiceIsHarmless() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+        index.commit(Collections.singletonList(second), Collections.singletonList(first));
+        final byte[] log = Files.readAllBytes(index.getLogFile().toPath());
+
+        // as if compaction was interrupted after base is replaced
+        index.compact();
+        try (FileOutputStream out = new FileOutputStream(index.getLogFile())) {
+            out.write(log);
+        }
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList(second, third)), RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test
+    public void lookupsFollowCommits() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+
+        Assert.assertEquals(Collections.singleton(third), index.byApplicationId("com.example.second"));
+        Assert.assertEquals(Collections.<Dist>emptySet(), index.byVersion("com.example.second", 1));
+        Assert.assertEquals(Collections.singleton(third), index.byFingerprint(fingerprint(third)));
+        Assert.assertEquals(Collections.<Dist>emptySet(), index.byFingerprint(fingerprint(second)));
+    }
+
+    @Test
+    public void lookupsApplyLogToBinaryBase() throws IOException {
+        RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.compact();
+
+        index = RepositoryIndex.open(repository);
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+        Assert.assertEquals(2, index.size());
+        Assert.assertTrue(index.contains(first));
+        Assert.assertFalse(index.contains(second));
+        Assert.assertEquals(Collections.singleton(third), index.byApplicationId("com.example.second"));
+        Assert.assertEquals(Collections.<Dist>emptySet(), index.byFingerprint(fingerprint(second)));
+
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(Collections.singleton(second), index.byVersion("com.example.second", 1));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, second, third)), index.getRepo().dists);
+
+        index.commit(Collections.<Dist>emptyList(), Collections.singletonList(third));
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, second)), index.getRepo().dists);
+        Assert.assertEquals(index.getRepo().dists, RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test
+    public void readerAppliesLogToBinaryBase() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.compact();
+        Assert.assertTrue(index.getBinaryFile().isFile());
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+
+        final RepositoryIndexReader reader = RepositoryIndex.read(repository, RepositoryIndex.NAME);
+        Assert.assertEquals(Collections.singleton(third), reader.byApplicationId("com.example.second"));
+        Assert.assertEquals(Collections.singleton(first), reader.byVersion("com.example.first", 1));
+        Assert.assertEquals(Collections.<Dist>emptySet(), reader.byVersion("com.example.first", 2));
+        Assert.assertEquals(Collections.singleton(first), reader.byFingerprint(fingerprint(first)));
+        Assert.assertEquals(Collections.<Dist>emptySet(), reader.byFingerprint(fingerprint(second)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, third)), reader.all());
+        Assert.assertEquals(reader.all(), RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test
+    public void seqSurvivesCompaction() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+        index.compact();
+        index.commit(Collections.singletonList(second), Collections.<Dist>emptyList());
+
+        Assert.assertEquals(3, index.getSeq());
+        Assert.assertEquals(3, RepositoryIndex.open(repository).getSeq());
+        Assert.assertEquals(3, RepositoryIndex.read(repository, RepositoryIndex.NAME).getSeq());
+        Assert.assertNull(index.diff(1));
+    }
+
+    @Test
+    public void diffBringsCachedRepoUpToDate() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Arrays.asList(first, second), Collections.<Dist>emptyList());
+        final Repo cached = index.getRepo();
+
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+        index.commit(Collections.singletonList(second), Collections.singletonList(third));
+
+        final RepoDelta diff = RepositoryIndex.open(repository).diff(cached.seq);
+        assert diff != null;
+        Assert.assertEquals(Collections.singleton(second), diff.added);
+        Assert.assertEquals(Collections.singleton(third), diff.removed);
+
+        final StringWriter json = new StringWriter();
+        new JsonRepoDumper(json).writeDeltaDecorated(diff);
+        final Repo updated = JsonRepoFactory.getInstance().applyDeltaDecorated(
+                new GsonJsonReader(new com.google.gson.stream.JsonReader(new StringReader(json.toString()))), cached);
+
+        Assert.assertEquals(index.getRepo().dists, updated.dists);
+        Assert.assertEquals(3, updated.seq);
+    }
+
+    @Test
+    public void commitsOfOtherWritersAreCaughtUp() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        final RepositoryIndex other = RepositoryIndex.open(repository);
+
+        index.commit(Collections.singletonList(first), Collections.<Dist>emptyList());
+        other.commit(Collections.singletonList(second), Collections.<Dist>emptyList());
+        other.compact();
+        index.commit(Collections.singletonList(third), Collections.singletonList(second));
+
+        Assert.assertEquals(3, index.getSeq());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, third)), index.getRepo().dists);
+        Assert.assertEquals(index.getRepo().dists, RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test
+    public void staleCompactionIsDropped() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        final RepositoryIndex other = RepositoryIndex.open(repository);
+
+        index.commit(Collections.singletonList(first), Collections.<Dist>emptyList());
+        other.commit(Collections.singletonList(second), Collections.<Dist>emptyList());
+        Assert.assertTrue(other.compact());
+        Assert.assertFalse(index.compact());
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList(first, second)), RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test
+    public void transactionIsPreparedAgainWhenIndexChanges() throws IOException {
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        final RepositoryIndex other = RepositoryIndex.open(repository);
+        final int[] prepared = new int[1];
+
+        Assert.assertTrue(index.commit(new RepositoryIndex.Transaction() {
+            @Override
+            public boolean prepare(@NotNull Collection<Dist> added, @NotNull Collection<Dist> removed) throws IOException {
+                if (prepared[0]++ == 0) {
+                    other.commit(Collections.singletonList(second), Collections.<Dist>emptyList());
+                }
+                removed.addAll(index.byApplicationId("com.example.second"));
+                added.add(third);
+                return true;
+            }
+        }));
+
+        Assert.assertEquals(2, prepared[0]);
+        Assert.assertEquals(Collections.singleton(third), RepositoryIndex.open(repository).getRepo().dists);
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentWritersLoseNothing() throws Exception {
+        final int writers = 4;
+        final int commits = 25;
+        final ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                final int writer = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        final RepositoryIndex index = RepositoryIndex.open(repository);
+                        for (int j = 0; j < commits; j++) {
+                            index.commit(Collections.singletonList(Dists.dist("com.example.writer" + writer, j)), Collections.<Dist>emptyList());
+                            if (j % 10 == 0) {
+                                index.compact();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        Assert.assertEquals(writers * commits, index.getSeq());
+        Assert.assertEquals(writers * commits, index.getRepo().dists.size());
+        Assert.assertEquals(index.getRepo().dists, RepositoryIndex.read(repository, RepositoryIndex.NAME).all());
+    }
+
+    private static Checksum fingerprint(Dist dist) {
+        final Checksum fingerprint = dist.version.fingerprint;
+        assert fingerprint != null;
+        return fingerprint;
+    }
+}
@@ -0,0 +1,128 @@
+package io.github.eterverda.playless.core.aapt;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Aapt2DaemonTest {
+    private static final Pattern PACKAGE = Pattern.compile("package: name='com.example.stub' versionCode='([0-9]+)' versionName='([0-9]+)'.*", Pattern.DOTALL);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File aapt2;
+    private File apk;
+
+    @Before
+    public void setUp() throws IOException {
+        aapt2 = folder.newFile("aapt2");
+        try (InputStream in = getClass().getResourceAsStream("aapt2-stub.sh");
+             FileOutputStream out = new FileOutputStream(aapt2)) {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        Assert.assertTrue(aapt2.setExecutable(true));
+
+        apk = folder.newFile("some.apk");
+    }
+
+    @Test
+    public void sameProcessDumpsMany() throws IOException {
+        try (Aapt2Daemon daemon = new Aapt2Daemon(aapt2)) {
+            final Matcher first = match(daemon.dumpBadging(apk));
+            final Matcher second = match(daemon.dumpBadging(apk));
+
+            Assert.assertEquals("1", first.group(1));
+            Assert.assertEquals("2", second.group(1));
+            Assert.assertEquals(first.group(2), second.group(2));
+        }
+    }
+
+    @Test
+    public void errorKeepsDaemonRunning() throws IOException {
+        try (Aapt2Daemon daemon = new Aapt2Daemon(aapt2)) {
+            try {
+                daemon.dumpBadging(new File(folder.getRoot(), "missing.apk"));
+                Assert.fail();
+
+            } catch (IOException expected) {
+                Assert.assertFalse(daemon.isBroken());
+            }
+            Assert.assertEquals("2", match(daemon.dumpBadging(apk)).group(1));
+            Assert.assertEquals("3", match(daemon.dumpBadging(apk)).group(1));
+        }
+    }
+
+    @Test
+    public void outputLargerThanPipeIsReadWhole() throws IOException {
+        final File large = folder.newFile("some-large.apk");
+        try (Aapt2Daemon daemon = new Aapt2Daemon(aapt2)) {
+            final String badging = daemon.dumpBadging(large);
+            Assert.assertTrue(badging.endsWith("number3999'\n"));
+            Assert.assertEquals("2", match(daemon.dumpBadging(apk)).group(1));
+        }
+    }
+
+    @Test
+    public void closedDaemonFails() throws IOException {
+        final Aapt2Daemon daemon = new Aapt2Daemon(aapt2);
+        daemon.close();
+        try {
+            daemon.dumpBadging(apk);
+            Assert.fail();
+
+        } catch (IOException expected) {
+            Assert.assertTrue(daemon.isBroken());
+        }
+    }
+
+    @Test
+    public void poolStartsNoMoreThanSize() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (final Aapt2DaemonPool pool = new Aapt2DaemonPool(aapt2, 2)) {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return pool.dumpBadging(apk);
+                    }
+                }));
+            }
+            final Set<String> processes = new HashSet<>();
+            for (Future<String> future : futures) {
+                processes.add(match(future.get()).group(2));
+            }
+            Assert.assertTrue(processes.size() <= 2);
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Matcher match(String badging) {
+        final Matcher matcher = PACKAGE.matcher(badging);
+        Assert.assertTrue(badging, matcher.matches());
+        return matcher;
+    }
+}
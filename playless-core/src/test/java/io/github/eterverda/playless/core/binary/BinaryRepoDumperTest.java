@@ -0,0 +1,124 @@
+package io.github.eterverda.playless.core.binary;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.binary.BinaryRepoReader;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.Dists;
+import io.github.eterverda.playless.core.json.GsonJsonReader;
+import io.github.eterverda.playless.core.json.JsonRepoDumper;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class BinaryRepoDumperTest {
+    @Test
+    public void sameAsJson() throws IOException {
+        // json is the reference, so whatever it does not keep is dropped before comparison
+        final Repo expected = json(json(repo()));
+        final BinaryRepoReader reader = new BinaryRepoReader(ByteBuffer.wrap(binary(expected)));
+        final Repo actual = reader.load();
+
+        Assert.assertEquals(expected.dists, actual.dists);
+        Assert.assertEquals(expected.links, actual.links);
+        Assert.assertEquals(expected.meta, actual.meta);
+        Assert.assertEquals(json(expected), json(actual));
+    }
+
+    @Test
+    public void distsAreReadLazily() throws IOException {
+        final Repo repo = json(json(repo()));
+        final BinaryRepoReader reader = new BinaryRepoReader(ByteBuffer.wrap(binary(repo)));
+
+        Assert.assertEquals(3, reader.size());
+        Assert.assertEquals("com.example.first", reader.applicationId(0));
+        Assert.assertEquals("com.example.second", reader.applicationId(2));
+        Assert.assertEquals(2, reader.versionCode(2));
+        Assert.assertTrue(repo.dists.contains(reader.dist(1)));
+    }
+
+    @Test
+    public void distsAreLookedUp() throws IOException {
+        final Repo repo = json(json(repo()));
+        final BinaryRepoReader reader = new BinaryRepoReader(ByteBuffer.wrap(binary(repo)));
+
+        Assert.assertEquals(2, reader.byApplicationId("com.example.second").size());
+        Assert.assertEquals(0, reader.byApplicationId("com.example").size());
+        Assert.assertEquals(0, reader.byApplicationId("com.example.third").size());
+        Assert.assertEquals(1, reader.byVersion("com.example.second", 2).size());
+        Assert.assertEquals(0, reader.byVersion("com.example.first", 2).size());
+        Assert.assertEquals(Collections.singletonList(reader.dist(2)), reader.byFingerprint(Checksum.sha1(new byte[]{1, 2, 3})));
+        Assert.assertEquals(0, reader.byFingerprint(Checksum.sha1(new byte[]{4, 5, 6})).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void jsonIsRejected() throws IOException {
+        new BinaryRepoReader(ByteBuffer.wrap(json(repo()).getBytes("UTF-8")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void version1IsRejected() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(binary(repo()));
+        buffer.putShort(4, (short) 1);
+        new BinaryRepoReader(buffer);
+    }
+
+    private static Repo repo() {
+        final Repo.Editor repo = new Repo.Editor();
+        repo.dist(Dists.dist("com.example.first", 1));
+        repo.dist(Dists.dist("com.example.second", 1));
+
+        final Dist.Editor full = new Dist.Editor();
+        full.applicationId("com.example.second");
+        full.versionCode(2);
+        full.timestamp(1400000000123L);
+        full.debug(true);
+        full.fingerprint(Checksum.sha1(new byte[]{1, 2, 3}));
+        full.signatures(Checksum.sha1(new byte[]{4, 5, 6}));
+        full.minSdkVersion(9);
+        full.maxSdkVersion(21);
+        full.requiresSmallestWidthDp(600);
+        full.usesGlEs(0x20000);
+        full.supportsScreen("large");
+        full.supportsScreen("xlarge");
+        full.compatibleScreen("large/xhdpi");
+        full.supportsGlTexture("GL_OES_compressed_ETC1_RGB8_texture");
+        full.usesFeature("android.hardware.camera");
+        full.usesLibrary("com.google.android.maps");
+        full.nativeCode("armeabi-v7a");
+        full.nativeCode("x86");
+        full.usesConfiguration(-1, 1, -1, 2, 3);
+        full.link("download", "com.example.second-2.apk");
+        full.meta("label", "\u0412\u0442\u043e\u0440\u043e\u0439");
+        repo.dist(full.build());
+
+        repo.link(new Link("self", "http://example.com/index.json"));
+        repo.meta("name", "example");
+        return repo.build();
+    }
+
+    private static byte[] binary(Repo repo) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryRepoDumper(out).write(repo);
+        return out.toByteArray();
+    }
+
+    private static String json(Repo repo) throws IOException {
+        final StringWriter out = new StringWriter();
+        new JsonRepoDumper(out).writeDecorated(repo);
+        return out.toString();
+    }
+
+    private static Repo json(String json) throws IOException {
+        return JsonRepoFactory.getInstance().loadDecorated(new GsonJsonReader(new com.google.gson.stream.JsonReader(new StringReader(json))));
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.eterverda.playless.core.http;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.BlobStore;
+import io.github.eterverda.playless.core.Repository;
+import io.github.eterverda.playless.core.RepositoryIndex;
+import io.github.eterverda.playless.core.json.GsonJsonReader;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class RepositoryServerTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Repository repository;
+    private RepositoryServer server;
+
+    private final byte[] apk = "0123456789abcdef".getBytes(UTF_8);
+    private final Checksum fingerprint = Checksum.sha1(apk);
+
+    @Before
+    public void setUp() throws Exception {
+        repository = Repository.init(folder.getRoot());
+        new BlobStore(repository.getRootDir()).store(apk, fingerprint, "app.apk");
+
+        final Dist.Editor dist = new Dist.Editor();
+        dist.applicationId("com.example");
+        dist.versionCode(1);
+        dist.fingerprint(fingerprint);
+        dist.link("download", BlobStore.path(fingerprint, "app.apk"));
+        RepositoryIndex.open(repository).commit(Collections.singletonList(dist.build()), Collections.<Dist>emptyList());
+
+        server = new RepositoryServer(repository, new InetSocketAddress("127.0.0.1", 0), 2);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void blobIsImmutable() throws IOException {
+        final HttpURLConnection connection = open(BlobStore.path(fingerprint, "app.apk"));
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertArrayEquals(apk, read(connection.getInputStream()));
+        Assert.assertEquals('"' + BlobStore.base32(fingerprint) + '"', connection.getHeaderField("ETag"));
+        Assert.assertTrue(connection.getHeaderField("Cache-Control").contains("immutable"));
+
+        final HttpURLConnection revalidated = open(BlobStore.path(fingerprint, "app.apk"));
+        revalidated.setRequestProperty("If-None-Match", connection.getHeaderField("ETag"));
+        Assert.assertEquals(304, revalidated.getResponseCode());
+    }
+
+    @Test
+    public void blobIsResumed() throws IOException {
+        final HttpURLConnection connection = open(BlobStore.path(fingerprint, "app.apk"));
+        connection.setRequestProperty("Range", "bytes=10-");
+        Assert.assertEquals(206, connection.getResponseCode());
+        Assert.assertEquals("bytes 10-15/16", connection.getHeaderField("Content-Range"));
+        Assert.assertArrayEquals(Arrays.copyOfRange(apk, 10, 16), read(connection.getInputStream()));
+
+        final HttpURLConnection unsatisfiable = open(BlobStore.path(fingerprint, "app.apk"));
+        unsatisfiable.setRequestProperty("Range", "bytes=16-");
+        Assert.assertEquals(416, unsatisfiable.getResponseCode());
+    }
+
+    @Test
+    public void indexFollowsCommits() throws IOException {
+        final HttpURLConnection connection = open(RepositoryIndex.FILENAME);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+        final String etag = connection.getHeaderField("ETag");
+        Assert.assertEquals(1, load(new GZIPInputStream(connection.getInputStream())).dists.size());
+
+        final Dist.Editor dist = new Dist.Editor();
+        dist.applicationId("com.example.other");
+        dist.versionCode(1);
+        RepositoryIndex.open(repository).commit(Collections.singletonList(dist.build()), Collections.<Dist>emptyList());
+
+        final HttpURLConnection updated = open(RepositoryIndex.FILENAME);
+        updated.setRequestProperty("Accept-Encoding", "gzip");
+        updated.setRequestProperty("If-None-Match", etag);
+        Assert.assertEquals(200, updated.getResponseCode());
+        Assert.assertEquals(2, load(new GZIPInputStream(updated.getInputStream())).dists.size());
+
+        final HttpURLConnection plain = open(RepositoryIndex.FILENAME);
+        Assert.assertEquals(2, load(plain.getInputStream()).dists.size());
+    }
+
+    @Test
+    public void diffIsServedSince() throws IOException {
+        final Repo cached = load(open(RepositoryIndex.FILENAME).getInputStream());
+
+        final Dist.Editor dist = new Dist.Editor();
+        dist.applicationId("com.example.other");
+        dist.versionCode(1);
+        final RepositoryIndex index = RepositoryIndex.open(repository);
+        index.commit(Collections.singletonList(dist.build()), Collections.<Dist>emptyList());
+
+        final HttpURLConnection diff = open(RepositoryIndex.FILENAME + "?since=" + cached.seq);
+        Assert.assertEquals(200, diff.getResponseCode());
+        final Repo updated = applyDelta(diff.getInputStream(), cached);
+        Assert.assertEquals(index.getRepo().dists, updated.dists);
+        Assert.assertEquals(index.getSeq(), updated.seq);
+
+        Assert.assertEquals(400, open(RepositoryIndex.FILENAME + "?since=first").getResponseCode());
+
+        dist.applicationId("com.example.third");
+        index.commit(Collections.singletonList(dist.build()), Collections.<Dist>emptyList());
+        index.compact();
+        final HttpURLConnection compacted = open(RepositoryIndex.FILENAME + "?since=" + cached.seq);
+        Assert.assertEquals(index.getRepo().dists, load(compacted.getInputStream()).dists);
+    }
+
+    @Test
+    public void internalsAreHidden() throws IOException {
+        Assert.assertEquals(404, open(".playless/root").getResponseCode());
+        Assert.assertEquals(404, open(RepositoryIndex.LOG_FILENAME).getResponseCode());
+        Assert.assertEquals(404, open(".playless/../.playless/root").getResponseCode());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        final InetSocketAddress address = server.getAddress();
+        final URL url = new URL("http", address.getHostString(), address.getPort(), "/" + path);
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                result.write(buffer, 0, count);
+            }
+            return result.toByteArray();
+
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Repo applyDelta(InputStream in, Repo cached) throws IOException {
+        try (Reader reader = new InputStreamReader(in, UTF_8)) {
+            return JsonRepoFactory.getInstance().applyDeltaDecorated(new GsonJsonReader(new com.google.gson.stream.JsonReader(reader)), cached);
+        }
+    }
+
+    private static Repo load(InputStream in) throws IOException {
+        try (Reader reader = new InputStreamReader(in, UTF_8)) {
+            return JsonRepoFactory.getInstance().loadDecorated(new GsonJsonReader(new com.google.gson.stream.JsonReader(reader)));
+        }
+    }
+}
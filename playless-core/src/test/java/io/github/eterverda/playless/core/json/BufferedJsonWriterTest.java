@@ -0,0 +1,98 @@
+package io.github.eterverda.playless.core.json;
+
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import io.github.eterverda.playless.common.util.TimestampUtils;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class BufferedJsonWriterTest {
+    private static final String[] STRINGS = {"", "plain", "q\"uo\\te", "\t\b\n\r\f\u0000\u001f\u007f", "<&>='", "\u00e9\u2028\u2029\ud83d\ude00"};
+
+    @Test
+    public void writesWhatGsonWrites() throws IOException {
+        for (String indent : new String[]{"", "  "}) {
+            final StringWriter expected = new StringWriter();
+            final JsonWriter gson = new JsonWriter(expected);
+            gson.setIndent(indent);
+
+            final StringWriter actual = new StringWriter();
+            final BufferedJsonWriter writer = new BufferedJsonWriter(actual, BufferedJsonWriter.MIN_BUFFER_SIZE);
+            writer.setIndent(indent);
+
+            gson.beginObject();
+            writer.beginObject();
+            gson.name("empty").beginArray().endArray().name("nested").beginArray().beginObject().endObject().beginArray();
+            writer.name("empty").beginArray().endArray().name("nested").beginArray().beginObject().endObject().beginArray();
+            for (String string : STRINGS) {
+                gson.value(string);
+                writer.value(string);
+            }
+            // longer than buffer
+            final String longString = new String(new char[BufferedJsonWriter.MIN_BUFFER_SIZE * 3]).replace('\0', 'x') + STRINGS[3];
+            gson.value(longString);
+            writer.value(longString);
+            gson.endArray().endArray();
+            writer.endArray().endArray();
+            for (long value : new long[]{0, 7, -7, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+                gson.name("n" + value).value(value);
+                writer.name("n" + value).value(value);
+            }
+            gson.name("true").value(true).name("false").value(false);
+            writer.name("true").value(true).name("false").value(false);
+            gson.endObject();
+            writer.endObject();
+            writer.flush();
+
+            Assert.assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    @Test
+    public void formatsLikeStrings() throws IOException {
+        final Random random = new Random(7);
+        final StringWriter expected = new StringWriter();
+        final StringWriter actual = new StringWriter();
+        final BufferedJsonWriter writer = new BufferedJsonWriter(actual, BufferedJsonWriter.MIN_BUFFER_SIZE);
+        expected.write('[');
+        writer.beginArray();
+
+        for (long timestamp : new long[]{0, 999, 1000, 86399999, 951782400000L, 253402300799999L}) {
+            append(expected, TimestampUtils.zulu(timestamp));
+            writer.timestampValue(timestamp);
+        }
+        for (int i = 0; i < 1000; i++) {
+            final long timestamp = (random.nextLong() >>> 1) % 253402300800000L;
+            append(expected, TimestampUtils.zulu(timestamp));
+            writer.timestampValue(timestamp);
+        }
+        for (int value : new int[]{1, 0xf, 0x10, 0x20000, 0x30001, Integer.MAX_VALUE, -1}) {
+            append(expected, String.format("0x%h", value));
+            writer.hexValue(value);
+        }
+        for (int i = 0; i < 16; i++) {
+            final Checksum checksum = Checksum.sha1(new byte[]{(byte) i});
+            append(expected, checksum.toString());
+            writer.checksumValue(checksum);
+        }
+
+        expected.write(']');
+        writer.endArray();
+        writer.flush();
+
+        Assert.assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static void append(StringWriter out, String value) {
+        if (out.getBuffer().length() > 1) {
+            out.write(',');
+        }
+        out.write('"' + value + '"');
+    }
+}
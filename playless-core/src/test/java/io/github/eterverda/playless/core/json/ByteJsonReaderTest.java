@@ -0,0 +1,104 @@
+package io.github.eterverda.playless.core.json;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.json.ByteJsonReader;
+import io.github.eterverda.playless.common.json.JsonConstants;
+import io.github.eterverda.playless.common.json.JsonReader;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+
+/**
+ * Checks that {@link ByteJsonReader} reads what gson reads, the rest is tested in common.
+ */
+public class ByteJsonReaderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] STRINGS = {"", "plain", "q\"uo\\te/", "\t\b\n\r\f\u0000\u001f", "\u00e9\u0416\u2028\u2029\ud83d\ude00"};
+
+    @Test
+    public void readsWhatGsonReads() throws IOException {
+        final Repo.Editor editor = new Repo.Editor();
+        for (int i = 0; i < STRINGS.length; i++) {
+            final Dist.Editor dist = new Dist.Editor();
+            dist.applicationId("com.example.app" + i);
+            dist.versionCode(Integer.MAX_VALUE - i);
+            dist.timestamp(1400000000000L + i);
+            dist.minSdkVersion(9);
+            dist.usesGlEs(0x20000);
+            dist.debug(i % 2 == 0);
+            dist.usesFeature("android.hardware.touchscreen");
+            dist.link("download", STRINGS[i] + ".apk");
+            dist.meta(STRINGS[i], STRINGS[STRINGS.length - 1 - i]);
+            editor.dist(dist.build());
+        }
+        editor.meta("name", STRINGS[STRINGS.length - 1]);
+        editor.link("self", "index.json");
+        editor.seq(Long.MAX_VALUE);
+        final Repo repo = editor.build();
+
+        for (boolean pretty : new boolean[]{false, true}) {
+            final StringWriter out = new StringWriter();
+            final JsonRepoDumper dumper = new JsonRepoDumper(out);
+            dumper.setPrettyPrint(pretty);
+            dumper.writeDecorated(repo);
+            final String json = out.toString();
+
+            final Repo expected = JsonRepoFactory.getInstance().loadDecorated(gson(json));
+            final byte[] bytes = json.getBytes(UTF_8);
+            final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+
+            for (ByteJsonReader reader : new ByteJsonReader[]{new ByteJsonReader(bytes), new ByteJsonReader(direct)}) {
+                final Repo actual = JsonRepoFactory.getInstance().loadDecorated(reader);
+                Assert.assertEquals(expected.dists, actual.dists);
+                Assert.assertEquals(expected.links, actual.links);
+                Assert.assertEquals(expected.meta, actual.meta);
+                Assert.assertEquals(expected.seq, actual.seq);
+            }
+        }
+    }
+
+    @Test
+    public void readsValuesLikeGson() throws IOException {
+        final String json = "\ufeff {\"a\" : [1, -2, \"3\", 4.0, 5e1, 12345678901],\n\"applicationId\":\"\\u0041\\u00e9\"," +
+                "\"b\":true, \"c\":false, \"skipped\": {\"x\": [null, {\"y\": \"]}\\\"\"}, []], \"z\": 1.5}, \"d\": null}";
+        for (JsonReader reader : new JsonReader[]{gson(json.substring(1)), new ByteJsonReader(json.getBytes(UTF_8))}) {
+            reader.beginObject();
+            Assert.assertEquals("a", reader.nextName());
+            reader.beginArray();
+            Assert.assertEquals(1, reader.nextInt());
+            Assert.assertEquals(-2, reader.nextInt());
+            Assert.assertEquals(3, reader.nextInt());
+            Assert.assertEquals(4, reader.nextInt());
+            Assert.assertEquals(50, reader.nextInt());
+            Assert.assertEquals("12345678901", reader.nextString());
+            Assert.assertFalse(reader.hasNext());
+            reader.endArray();
+            Assert.assertEquals(JsonConstants.APPLICATION_ID, reader.nextName());
+            Assert.assertEquals("A\u00e9", reader.nextString());
+            Assert.assertEquals("b", reader.nextName());
+            Assert.assertTrue(reader.nextBoolean());
+            Assert.assertEquals("c", reader.nextName());
+            Assert.assertFalse(reader.nextBoolean());
+            Assert.assertEquals("skipped", reader.nextName());
+            reader.skipValue();
+            Assert.assertEquals("d", reader.nextName());
+            reader.skipValue();
+            Assert.assertFalse(reader.hasNext());
+            reader.endObject();
+        }
+    }
+
+    private static GsonJsonReader gson(String content) {
+        return new GsonJsonReader(new com.google.gson.stream.JsonReader(new StringReader(content)));
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.eterverda.playless.core.json;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.DistSelector;
+import io.github.eterverda.playless.common.DistVisitor;
+import io.github.eterverda.playless.common.Link;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.json.JsonDistFactory;
+import io.github.eterverda.playless.common.json.JsonDistIterator;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.Dists;
+
+public class JsonDistIteratorTest {
+    private final Dist first = Dists.dist("com.example.first", 1);
+    private final Dist second = Dists.dist("com.example.second", 1);
+    private final Dist third = Dists.dist("com.example.second", 2);
+
+    @Test
+    public void propertiesAreVisitedBeforeDists() throws IOException {
+        final Recorder recorder = new Recorder();
+        final JsonDistIterator iterator = JsonRepoFactory.getInstance().iterateDecorated(json(dump(repo(first, second, third))), recorder);
+
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals(Arrays.asList("seq 7", "meta name example", "link self index.json"), recorder.events);
+
+        final List<Dist> dists = new ArrayList<>();
+        while (iterator.hasNext()) {
+            dists.add(iterator.next());
+        }
+        Assert.assertEquals(Arrays.asList(first, second, third), dists);
+        Assert.assertEquals(3, recorder.events.size());
+
+        try {
+            iterator.next();
+            Assert.fail();
+
+        } catch (NoSuchElementException ignore) {
+            // iteration is over
+        }
+    }
+
+    @Test
+    public void visitReadsWhatLoadReads() throws IOException {
+        final Repo repo = repo(first, second, third);
+        final Repo.Editor visited = new Repo.Editor();
+        JsonRepoFactory.getInstance().visitDecorated(json(dump(repo)), visited);
+
+        final Repo loaded = JsonRepoFactory.getInstance().loadDecorated(json(dump(repo)));
+        Assert.assertEquals(loaded.dists, visited.build().dists);
+        Assert.assertEquals(loaded.links, visited.build().links);
+        Assert.assertEquals(loaded.meta, visited.build().meta);
+        Assert.assertEquals(loaded.seq, visited.build().seq);
+    }
+
+    @Test
+    public void emptyRepositoryHasNoDists() throws IOException {
+        final Recorder recorder = new Recorder();
+        final JsonDistIterator iterator = JsonRepoFactory.getInstance().iterateDecorated(json(dump(new Repo.Editor().build())), recorder);
+
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertTrue(recorder.events.isEmpty());
+    }
+
+    @Test
+    public void justSelectedAreBuilt() throws IOException {
+        final List<String> asked = new ArrayList<>();
+        final DistSelector selector = new DistSelector() {
+            @Override
+            public boolean selectsApplication(@NotNull String applicationId) {
+                asked.add(applicationId);
+                return applicationId.equals("com.example.second");
+            }
+
+            @Override
+            public boolean selectsVersion(@NotNull String applicationId, int versionCode) {
+                asked.add(applicationId + " " + versionCode);
+                return versionCode > 1;
+            }
+        };
+
+        final Dist[] dists = JsonDistFactory.getInstance().loadDecorated(json(dump(repo(first, second, third))), selector);
+
+        Assert.assertArrayEquals(new Dist[]{third}, dists);
+        Assert.assertEquals(Arrays.asList(
+                "com.example.first",
+                "com.example.second", "com.example.second 1",
+                "com.example.second", "com.example.second 2"), asked);
+    }
+
+    private static Repo repo(Dist... dists) {
+        final Repo.Editor repo = new Repo.Editor();
+        for (Dist dist : dists) {
+            repo.dist(dist);
+        }
+        repo.link("self", "index.json");
+        repo.meta("name", "example");
+        repo.seq(7);
+        return repo.build();
+    }
+
+    private static String dump(Repo repo) throws IOException {
+        final StringWriter result = new StringWriter();
+        new JsonRepoDumper(result).writeDecorated(repo);
+        return result.toString();
+    }
+
+    private static GsonJsonReader json(String content) {
+        return new GsonJsonReader(new com.google.gson.stream.JsonReader(new StringReader(content)));
+    }
+
+    private static final class Recorder implements DistVisitor {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void seq(long seq) {
+            events.add("seq " + seq);
+        }
+
+        @Override
+        public void meta(@NotNull String key, @NotNull String value) {
+            events.add("meta " + key + " " + value);
+        }
+
+        @Override
+        public void link(@NotNull Link link) {
+            events.add("link " + link.rel() + " " + link.href());
+        }
+
+        @Override
+        public void dist(@NotNull Dist dist) {
+            events.add("dist " + dist.applicationId);
+        }
+    }
+}
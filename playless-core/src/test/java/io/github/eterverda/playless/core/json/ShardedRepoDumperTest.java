@@ -0,0 +1,87 @@
+package io.github.eterverda.playless.core.json;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.RepoManifest;
+import io.github.eterverda.playless.common.json.JsonRepoFactory;
+import io.github.eterverda.playless.core.Dists;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class ShardedRepoDumperTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Dist first = Dists.dist("com.example.first", 1);
+    private final Dist second = Dists.dist("com.example.second", 1);
+    private final Dist third = Dists.dist("com.example.second", 2);
+
+    @Test
+    public void shardHoldsDistsOfApplication() throws IOException {
+        final File dir = folder.getRoot();
+        new ShardedRepoDumper(dir).write(repo(first, second, third));
+
+        final RepoManifest manifest = JsonRepoFactory.getInstance().loadManifestDecorated(json(read(new File(dir, ShardedRepoDumper.MANIFEST_FILENAME))));
+        Assert.assertEquals(7, manifest.seq);
+        Assert.assertEquals(2, manifest.shards.size());
+
+        final RepoManifest.Shard shard = manifest.shard("com.example.second");
+        assert shard != null;
+        Assert.assertEquals(RepoManifest.shardFilename("com.example.second"), shard.href);
+
+        final byte[] content = read(new File(dir, shard.href));
+        Assert.assertEquals(shard.size, content.length);
+        Assert.assertEquals(shard.checksum, Checksum.sha1(content));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(second, third)), JsonRepoFactory.getInstance().loadDecorated(json(content)).dists);
+    }
+
+    @Test
+    public void onlyChangedShardsAreWritten() throws IOException {
+        final File dir = folder.getRoot();
+        new ShardedRepoDumper(dir).write(repo(first, second));
+
+        final ShardedRepoDumper dumper = new ShardedRepoDumper(dir);
+        dumper.write(repo(third));
+
+        Assert.assertEquals(0, dumper.getUnchanged());
+        Assert.assertEquals(1, dumper.getWritten());
+        Assert.assertEquals(1, dumper.getDeleted());
+        Assert.assertFalse(new File(dir, RepoManifest.shardFilename("com.example.first")).exists());
+
+        final ShardedRepoDumper again = new ShardedRepoDumper(dir);
+        again.write(repo(third));
+
+        Assert.assertEquals(1, again.getUnchanged());
+        Assert.assertEquals(0, again.getWritten());
+    }
+
+    private static Repo repo(Dist... dists) {
+        final Repo.Editor repo = new Repo.Editor();
+        for (Dist dist : dists) {
+            repo.dist(dist);
+        }
+        repo.seq(7);
+        return repo.build();
+    }
+
+    private static byte[] read(File file) throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static GsonJsonReader json(byte[] content) {
+        return new GsonJsonReader(new com.google.gson.stream.JsonReader(new InputStreamReader(new ByteArrayInputStream(content), Charset.forName("UTF-8"))));
+    }
+}
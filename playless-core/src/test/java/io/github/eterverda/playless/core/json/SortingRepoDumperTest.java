@@ -0,0 +1,107 @@
+package io.github.eterverda.playless.core.json;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.core.Dists;
+import io.github.eterverda.util.checksum.Checksum;
+
+public class SortingRepoDumperTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergedRunsAreWrittenAsRepo() throws IOException {
+        final List<Dist> dists = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // dists 35 apart tie, just fingerprints differ
+            dists.add(dist("com.example.app" + i % 7, i % 5, i));
+        }
+        dists.add(dists.get(42));
+        Collections.shuffle(dists, new Random(7));
+
+        final Repo.Editor repo = new Repo.Editor();
+        repo.seq(7);
+        repo.meta("name", "example");
+        repo.link("self", "index.json");
+
+        final File tempDir = folder.newFolder();
+        final StringWriter actual = new StringWriter();
+        try (SortingRepoDumper dumper = new SortingRepoDumper(tempDir, 16)) {
+            dumper.seq(7);
+            dumper.meta("name", "example");
+            dumper.link(repo.build().links.iterator().next());
+            for (Dist dist : dists) {
+                repo.dist(dist);
+                dumper.dist(dist);
+            }
+            dumper.writeDecorated(actual);
+
+            Assert.assertEquals(6, dumper.getSpilled());
+        }
+
+        final StringWriter expected = new StringWriter();
+        new JsonRepoDumper(expected).writeDecorated(repo.build());
+
+        Assert.assertEquals(expected.toString(), actual.toString());
+        Assert.assertArrayEquals(new String[0], tempDir.list());
+    }
+
+    @Test
+    public void distStraddlingSpillIsWrittenOnce() throws IOException {
+        final Dist.Editor editor = Dists.editor("com.example.app", 1);
+        editor.timestamp(1400000000123L);
+        final Dist straddling = editor.build();
+
+        final Repo.Editor repo = new Repo.Editor();
+        final StringWriter actual = new StringWriter();
+        try (SortingRepoDumper dumper = new SortingRepoDumper(folder.newFolder(), 2)) {
+            for (Dist dist : Arrays.asList(straddling, dist("com.example.other", 1, 1), straddling)) {
+                repo.dist(dist);
+                dumper.dist(dist);
+            }
+            dumper.writeDecorated(actual);
+
+            Assert.assertEquals(1, dumper.getSpilled());
+        }
+
+        final StringWriter expected = new StringWriter();
+        new JsonRepoDumper(expected).writeDecorated(repo.build());
+
+        Assert.assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void emptyRepoIsWritten() throws IOException {
+        final StringWriter actual = new StringWriter();
+        try (SortingRepoDumper dumper = new SortingRepoDumper(folder.getRoot(), 16)) {
+            dumper.writeDecorated(actual);
+        }
+
+        final StringWriter expected = new StringWriter();
+        new JsonRepoDumper(expected).writeDecorated(new Repo.Editor().build());
+
+        Assert.assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static Dist dist(String applicationId, int versionCode, int i) {
+        final Dist.Editor dist = Dists.editor(applicationId, versionCode);
+        dist.timestamp(1400000000000L);
+        dist.fingerprint(Checksum.sha1(new byte[]{(byte) i}));
+        dist.meta("upload", Integer.toString(i));
+        return dist.build();
+    }
+}
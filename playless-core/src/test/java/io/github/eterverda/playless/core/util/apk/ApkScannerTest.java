@@ -0,0 +1,203 @@
+package io.github.eterverda.playless.core.util.apk;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import io.github.eterverda.playless.core.util.jar.Jars;
+import io.github.eterverda.util.checksum.Checksum;
+
+/**
+ * Apks are rebuilt from {@code signed.apk}, which is made by {@code jar -cfM} and signed by
+ * {@code jarsigner} with a self-signed key. V1 signature covers contents of entries only, so it
+ * survives rebuilding with other compression as long as {@code META-INF} is copied too.
+ */
+public class ApkScannerTest {
+    private static final String MANIFEST = "AndroidManifest.xml";
+    private static final String DEX = "classes.dex";
+    private static final String DATA = "res/raw/data.txt";
+    private static final String MISSING = "resources.arsc";
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deflatedWithDataDescriptor() throws IOException {
+        final File apk = rebuild(ZipEntry.DEFLATED, true, false);
+        Assert.assertTrue((localFlags(apk) & 0x08) != 0);
+
+        assertScannedLikeZipFile(apk);
+    }
+
+    @Test
+    public void stored() throws IOException {
+        final File apk = rebuild(ZipEntry.STORED, true, false);
+        Assert.assertEquals(0, localFlags(apk) & 0x08);
+
+        assertScannedLikeZipFile(apk);
+    }
+
+    @Test
+    public void zip64FallsBackToZipFile() throws IOException {
+        final File apk = rebuild(ZipEntry.STORED, true, true);
+
+        assertScannedLikeZipFile(apk);
+    }
+
+    @Test
+    public void signedAsJarsignerMadeIt() throws IOException {
+        final File apk = folder.newFile();
+        copyFixture(apk);
+
+        assertScannedLikeZipFile(apk);
+    }
+
+    @Test
+    public void unsigned() throws IOException {
+        for (boolean zip64 : new boolean[]{false, true}) {
+            final File apk = rebuild(zip64 ? ZipEntry.STORED : ZipEntry.DEFLATED, false, zip64);
+            Assert.assertNull(Jars.loadSignatures(apk));
+
+            assertScannedLikeZipFile(apk);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedRightAfterEntry() throws IOException {
+        final File apk = rebuild(ZipEntry.DEFLATED, true, false);
+        final byte[] bytes = Files.readAllBytes(apk.toPath());
+        final ByteBuffer eocd = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(EOCD_SIGNATURE, eocd.getInt(bytes.length - EOCD_SIZE));
+        Files.write(apk.toPath(), Arrays.copyOf(bytes, eocd.getInt(bytes.length - EOCD_SIZE + 16)));
+
+        new ApkScanner(apk).scan();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notRequestedEntry() throws IOException {
+        final ApkScanner scanner = new ApkScanner(rebuild(ZipEntry.DEFLATED, false, false));
+        scanner.requestEntryContent(MANIFEST);
+
+        scanner.getEntryFingerprint(MANIFEST);
+    }
+
+    private static void assertScannedLikeZipFile(File apk) throws IOException {
+        final ApkScanner scanner = new ApkScanner(apk);
+        scanner.requestEntry(DEX);
+        scanner.requestEntry(MISSING);
+        scanner.requestEntryContent(MANIFEST);
+        scanner.setKeepEntryContents(true);
+        scanner.requestEntry(DATA);
+
+        Assert.assertEquals(Checksum.sha1(apk), scanner.getFingerprint());
+        Assert.assertEquals(Jars.loadSignatures(apk), scanner.getSignatures());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("armeabi-v7a", "x86")), scanner.getNativeCode());
+
+        try (ZipFile zip = new ZipFile(apk)) {
+            Assert.assertEquals(Checksum.sha1(read(zip, DEX)), scanner.getEntryFingerprint(DEX));
+            Assert.assertEquals(Checksum.sha1(read(zip, DATA)), scanner.getEntryFingerprint(DATA));
+            Assert.assertArrayEquals(read(zip, MANIFEST), scanner.getEntryContent(MANIFEST));
+            Assert.assertArrayEquals(read(zip, DATA), scanner.getEntryContent(DATA));
+        }
+        Assert.assertNull(scanner.getEntryFingerprint(MISSING));
+    }
+
+    /**
+     * Copies entries of fixture into new apk compressed by given method. Zip64 apk has sizes of
+     * its first local header moved to zip64 extra field, as if they did not fit, it has to be stored.
+     */
+    private File rebuild(int method, boolean signed, boolean zip64) throws IOException {
+        final File fixture = folder.newFile();
+        copyFixture(fixture);
+
+        final File apk = folder.newFile();
+        try (ZipFile zip = new ZipFile(fixture);
+             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk))) {
+            boolean first = true;
+            for (ZipEntry source : Collections.list(zip.entries())) {
+                if (!signed && source.getName().startsWith("META-INF/")) {
+                    continue;
+                }
+                final byte[] content = read(zip, source.getName());
+                final ZipEntry entry = new ZipEntry(source.getName());
+                entry.setMethod(method);
+                if (method == ZipEntry.STORED) {
+                    final CRC32 crc = new CRC32();
+                    crc.update(content);
+                    entry.setCrc(crc.getValue());
+                    entry.setSize(content.length);
+                    entry.setCompressedSize(content.length);
+                }
+                if (zip64 && first) {
+                    entry.setExtra(zip64Extra(content.length));
+                }
+                first = false;
+                out.putNextEntry(entry);
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+        if (zip64) {
+            final byte[] bytes = Files.readAllBytes(apk.toPath());
+            final ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            Assert.assertEquals(LOCAL_HEADER_SIGNATURE, header.getInt(0));
+            Assert.assertEquals(ZipEntry.STORED, header.getShort(8));
+            header.putInt(18, 0xffffffff);
+            header.putInt(22, 0xffffffff);
+            Files.write(apk.toPath(), bytes);
+        }
+        return apk;
+    }
+
+    private void copyFixture(File target) throws IOException {
+        try (InputStream in = ApkScannerTest.class.getResourceAsStream("signed.apk")) {
+            Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] zip64Extra(long size) {
+        return ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort((short) ZIP64_EXTRA_ID).putShort((short) 16).putLong(size).putLong(size).array();
+    }
+
+    private static int localFlags(File apk) throws IOException {
+        final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(apk.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(LOCAL_HEADER_SIGNATURE, header.getInt(0));
+        return header.getShort(6);
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.eterverda.playless.core.util.apk;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import io.github.eterverda.util.checksum.Checksum;
+
+public class ApkSigningBlockTest {
+    private static final int VERITY_PADDING_BLOCK_ID = 0x42726577;
+
+    private static final byte[] CERTIFICATE_1 = {0x30, 0x01, 0x01};
+    private static final byte[] CERTIFICATE_2 = {0x30, 0x01, 0x02};
+    private static final byte[] CERTIFICATE_3 = {0x30, 0x01, 0x03};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unsigned() throws IOException {
+        Assert.assertNull(ApkSigningBlock.loadSignatures(makeApk(null)));
+    }
+
+    @Test
+    public void v2() throws IOException {
+        final byte[] block = block(
+                ApkSigningBlock.SIGNATURE_SCHEME_V2_BLOCK_ID, signers(signer(CERTIFICATE_1, CERTIFICATE_2), signer(CERTIFICATE_3)));
+
+        final Checksum expected = Checksum.sha1(CERTIFICATE_1).xor(Checksum.sha1(CERTIFICATE_2)).xor(Checksum.sha1(CERTIFICATE_3));
+        Assert.assertEquals(expected, ApkSigningBlock.loadSignatures(makeApk(block)));
+    }
+
+    @Test
+    public void v3() throws IOException {
+        final byte[] block = block(
+                VERITY_PADDING_BLOCK_ID, new byte[4096],
+                ApkSigningBlock.SIGNATURE_SCHEME_V3_BLOCK_ID, signers(signer(CERTIFICATE_3)));
+
+        Assert.assertEquals(Checksum.sha1(CERTIFICATE_3), ApkSigningBlock.loadSignatures(makeApk(block)));
+    }
+
+    @Test
+    public void v2PreferredToV3() throws IOException {
+        final byte[] block = block(
+                ApkSigningBlock.SIGNATURE_SCHEME_V2_BLOCK_ID, signers(signer(CERTIFICATE_1)),
+                ApkSigningBlock.SIGNATURE_SCHEME_V3_BLOCK_ID, signers(signer(CERTIFICATE_3)));
+
+        Assert.assertEquals(Checksum.sha1(CERTIFICATE_1), ApkSigningBlock.loadSignatures(makeApk(block)));
+    }
+
+    @Test
+    public void otherBlocksOnly() throws IOException {
+        Assert.assertNull(ApkSigningBlock.loadSignatures(makeApk(block(VERITY_PADDING_BLOCK_ID, new byte[16]))));
+    }
+
+    @Test
+    public void zipComment() throws IOException {
+        final File apk = makeApk(block(ApkSigningBlock.SIGNATURE_SCHEME_V2_BLOCK_ID, signers(signer(CERTIFICATE_2))), "some comment");
+
+        Assert.assertEquals(Checksum.sha1(CERTIFICATE_2), ApkSigningBlock.loadSignatures(apk));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformed() throws IOException {
+        final byte[] signers = signers(signer(CERTIFICATE_1));
+        signers[0] = 0x7f;
+        ApkSigningBlock.loadSignatures(makeApk(block(ApkSigningBlock.SIGNATURE_SCHEME_V2_BLOCK_ID, signers)));
+    }
+
+    @Test
+    public void scannerPrefersSigningBlock() throws IOException {
+        final ApkScanner scanner = new ApkScanner(makeApk(block(ApkSigningBlock.SIGNATURE_SCHEME_V2_BLOCK_ID, signers(signer(CERTIFICATE_1)))));
+
+        Assert.assertEquals(Checksum.sha1(CERTIFICATE_1), scanner.getSignatures());
+    }
+
+    /**
+     * Makes zip with a single entry and puts signing block before its central directory.
+     */
+    private File makeApk(byte[] block) throws IOException {
+        return makeApk(block, null);
+    }
+
+    private File makeApk(byte[] block, String comment) throws IOException {
+        final File apk = folder.newFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk))) {
+            if (comment != null) {
+                out.setComment(comment);
+            }
+            out.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+            out.write(new byte[]{3, 0, 8, 0});
+            out.closeEntry();
+        }
+        if (block == null) {
+            return apk;
+        }
+
+        final byte[] zip = Files.readAllBytes(apk.toPath());
+        final int commentLength = comment == null ? 0 : comment.length();
+        final ByteBuffer eocd = ByteBuffer.wrap(zip, zip.length - commentLength - 22, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+        final int centralDirectoryOffset = eocd.getInt(16);
+        eocd.putInt(16, centralDirectoryOffset + block.length);
+
+        try (FileOutputStream out = new FileOutputStream(apk)) {
+            out.write(zip, 0, centralDirectoryOffset);
+            out.write(block);
+            out.write(zip, centralDirectoryOffset, zip.length - centralDirectoryOffset);
+        }
+        return apk;
+    }
+
+    private static byte[] block(Object... idsAndValues) {
+        final ByteArrayOutputStream pairs = new ByteArrayOutputStream();
+        for (int i = 0; i < idsAndValues.length; i += 2) {
+            final byte[] value = (byte[]) idsAndValues[i + 1];
+            pairs.write(longBytes(4 + value.length), 0, 8);
+            pairs.write(intBytes((Integer) idsAndValues[i]), 0, 4);
+            pairs.write(value, 0, value.length);
+        }
+        final long size = pairs.size() + 8 + 16;
+
+        final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        block.write(longBytes(size), 0, 8);
+        block.write(pairs.toByteArray(), 0, pairs.size());
+        block.write(longBytes(size), 0, 8);
+        final byte[] magic = "APK Sig Block 42".getBytes();
+        block.write(magic, 0, magic.length);
+        return block.toByteArray();
+    }
+
+    private static byte[] signers(byte[]... signers) {
+        return lengthPrefixed(lengthPrefixed(signers));
+    }
+
+    private static byte[] signer(byte[]... certificates) {
+        final byte[] signedData = concat(
+                lengthPrefixed(lengthPrefixed(concat(intBytes(0x0103), lengthPrefixed(new byte[32])))),
+                lengthPrefixed(lengthPrefixed(certificates)),
+                lengthPrefixed());
+        return concat(
+                lengthPrefixed(signedData),
+                lengthPrefixed(lengthPrefixed(concat(intBytes(0x0103), lengthPrefixed(new byte[64])))),
+                lengthPrefixed(new byte[]{0x30, 0x00}));
+    }
+
+    /**
+     * @return each value prefixed by its length
+     */
+    private static byte[] lengthPrefixed(byte[]... values) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] value : values) {
+            out.write(intBytes(value.length), 0, 4);
+            out.write(value, 0, value.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... values) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] value : values) {
+            out.write(value, 0, value.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array();
+    }
+}
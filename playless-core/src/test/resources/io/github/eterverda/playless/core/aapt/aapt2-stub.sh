@@ -0,0 +1,33 @@
+#!/bin/sh
+# Stand-in for aapt2 daemon speaking its protocol: Ready goes to stdout, output of command goes to
+# stdout, while diagnostics, Error of failed command and Done of every command go to stderr.
+# Badging of existing file reports number of command as versionCode and process id as
+# versionName, file named *-large.apk gets output larger than pipe buffer, anything else fails.
+[ "$1" = daemon ] || exit 2
+echo Ready
+n=0
+while read command; do
+    args=
+    while read arg && [ -n "$arg" ]; do
+        args="$args $arg"
+    done
+    n=$((n + 1))
+    set -- $args
+    if [ "$command" = dump ] && [ "$1" = badging ] && [ -f "$2" ]; then
+        echo "package: name='com.example.stub' versionCode='$n' versionName='$$' platformBuildVersionName=''"
+        echo "sdkVersion:'15'"
+        case "$2" in
+            *-large.apk)
+                i=0
+                while [ $i -lt 4000 ]; do
+                    echo "uses-feature: name='com.example.feature.with.rather.long.name.number$i'"
+                    i=$((i + 1))
+                done
+                ;;
+        esac
+    else
+        echo "error: cannot $command $*" >&2
+        echo Error >&2
+    fi
+    echo Done >&2
+done
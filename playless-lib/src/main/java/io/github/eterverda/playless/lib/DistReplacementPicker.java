@@ -3,11 +3,18 @@ package io.github.eterverda.playless.lib;
 import android.content.Context;
 import android.content.pm.PackageManager;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+
 import io.github.eterverda.playless.common.Dist;
+import io.github.eterverda.playless.common.DistSelector;
+import io.github.eterverda.playless.common.Repo;
+import io.github.eterverda.playless.common.json.JsonDistFactory;
+import io.github.eterverda.playless.common.json.JsonReader;
 
-public class DistReplacementPicker {
+public class DistReplacementPicker implements DistSelector {
     private final String applicationId;
     private final DistFilterChecker matcher;
     private final int versionCode;
@@ -23,6 +30,42 @@ public class DistReplacementPicker {
         }
     }
 
+    /**
+     * @return application id to pick {@link io.github.eterverda.playless.common.RepoManifest.Shard} by
+     */
+    public String getApplicationId() {
+        return applicationId;
+    }
+
+    /**
+     * @param shard shard of manifest picked by {@link #getApplicationId()}
+     */
+    @Nullable
+    public Dist bestMyReplacement(Repo shard) {
+        return bestMyReplacement(shard.dists.toArray(new Dist[shard.dists.size()]));
+    }
+
+    /**
+     * Reads just dists of this application newer than installed one, others are skipped without
+     * being built.
+     *
+     * @param shard shard of manifest picked by {@link #getApplicationId()} or whole repository
+     */
+    @Nullable
+    public Dist bestMyReplacement(JsonReader shard) throws IOException {
+        return bestMyReplacement(JsonDistFactory.getInstance().loadDecorated(shard, this));
+    }
+
+    @Override
+    public boolean selectsApplication(@NotNull String applicationId) {
+        return applicationId.equals(this.applicationId);
+    }
+
+    @Override
+    public boolean selectsVersion(@NotNull String applicationId, int versionCode) {
+        return versionCode > this.versionCode && applicationId.equals(this.applicationId);
+    }
+
     @Nullable
     public Dist bestMyReplacement(Dist... candidates) {
         int bestVersionCode = versionCode;